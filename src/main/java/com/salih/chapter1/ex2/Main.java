@@ -3,21 +3,28 @@ package com.salih.chapter1.ex2;
 public class Main {
 
 	/**
-	 * Demonstrates <b>Thread Safety</b> by using a synchronized shared object to prevent Race Conditions.
+	 * Demonstrates <b>Thread Safety</b> by guarding a shared object with a lock to prevent Race Conditions.
 	 * <p>
 	 * <b>The Scenario:</b>
 	 * Just like the previous example, two threads (Thread A and Thread B) share a single
 	 * {@code ThreadSafeCounter} instance. Both attempt to increment it 10,000 times simultaneously.
 	 * </p>
 	 * <p>
-	 * <b>The Solution (Intrinsic Locks):</b>
-	 * Unlike the first example, this counter uses the {@code synchronized} keyword.
+	 * <b>The Solution (Mutual Exclusion):</b>
+	 * Unlike the first example, this counter holds a lock around every access. It is an explicit
+	 * {@link com.salih.chapter2.locks.ProbedLock} rather than the intrinsic lock {@code synchronized} would take; both
+	 * exclude other threads in the same way, and this one can also report how long threads wait for it.
 	 * This converts the "Read-Modify-Write" sequence into a single <b>Atomic</b> operation.
 	 * </p>
 	 * <p>
+	 * Because of that lock, this chapter-1 demo depends on {@code com.salih.chapter2.locks}, and running it registers
+	 * a JMX MBean for the counter's lock ({@code com.salih:type=Lock,name="ThreadSafeCounter"}), visible in JConsole
+	 * while the threads run.
+	 * </p>
+	 * <p>
 	 * <b>How it works:</b>
 	 * <ul>
-	 * <li>When Thread A calls {@code increment()}, it automatically acquires the <b>Intrinsic Lock</b> (Monitor) of the counter object.</li>
+	 * <li>When Thread A calls {@code increment()}, it acquires the counter's <b>Lock</b>.</li>
 	 * <li>If Thread B tries to call {@code increment()} at the same time, it sees the lock is taken.</li>
 	 * <li>Thread B is forced to <b>Block</b> (wait) until Thread A finishes and releases the lock.</li>
 	 * </ul>
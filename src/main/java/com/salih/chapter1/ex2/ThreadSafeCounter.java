@@ -1,13 +1,33 @@
 package com.salih.chapter1.ex2;
 
+import com.salih.chapter2.locks.ProbedLock;
+
+/**
+ * A counter whose every access holds the same lock.
+ * <p>
+ * The lock is a {@link ProbedLock} rather than the object's intrinsic lock ({@code synchronized}): it excludes
+ * other threads in exactly the same way, but can also report how long they spent waiting for it.
+ * </p>
+ */
 public class ThreadSafeCounter {
+	private final ProbedLock lock = new ProbedLock("ThreadSafeCounter");
 	private int count = 0;
 
-	public synchronized void increment() {
-		count++;
+	public void increment() {
+		lock.lock();
+		try {
+			count++;
+		} finally {
+			lock.unlock();
+		}
 	}
 
-	public synchronized int getValue() {
-		return count;
+	public int getValue() {
+		lock.lock();
+		try {
+			return count;
+		} finally {
+			lock.unlock();
+		}
 	}
 }
@@ -0,0 +1,34 @@
+package com.salih.chapter1.ex3;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A lock-free counter built on a <b>Compare-And-Swap</b> retry loop.
+ * <p>
+ * <b>How it works:</b>
+ * Read the current value, then ask the CPU to store {@code value + 1} <i>only if</i> the counter still holds
+ * {@code value}. If another thread got there first, the CAS fails and we simply retry with the fresh value.
+ * No thread ever blocks, and no update is lost.
+ * </p>
+ * <p>
+ * <b>The Limit:</b>
+ * Every increment still targets the same cache line. Under heavy contention most CAS attempts fail and the line
+ * bounces between cores, so throughput stops growing (and can even drop) as threads are added.
+ * </p>
+ */
+public class CasCounter implements SharedCounter {
+	private final AtomicLong value = new AtomicLong();
+
+	@Override
+	public void increment() {
+		long current;
+		do {
+			current = value.get();
+		} while (!value.compareAndSet(current, current + 1));
+	}
+
+	@Override
+	public long get() {
+		return value.get();
+	}
+}
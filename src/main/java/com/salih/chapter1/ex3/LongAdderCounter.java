@@ -0,0 +1,26 @@
+package com.salih.chapter1.ex3;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A counter backed by {@link LongAdder}, the JDK's answer to contended counters.
+ * <p>
+ * <b>How it works:</b>
+ * It starts as a single CAS'd value. When a CAS fails because of contention, it grows an array of padded cells
+ * and spreads threads across them, so concurrent increments mostly touch different cache lines.
+ * {@link #get()} adds up all the cells, which makes reads slower and not an atomic snapshot.
+ * </p>
+ */
+public class LongAdderCounter implements SharedCounter {
+	private final LongAdder value = new LongAdder();
+
+	@Override
+	public void increment() {
+		value.increment();
+	}
+
+	@Override
+	public long get() {
+		return value.sum();
+	}
+}
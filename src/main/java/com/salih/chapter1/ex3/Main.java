@@ -0,0 +1,143 @@
+package com.salih.chapter1.ex3;
+
+import com.salih.chapter1.ex1.Counter;
+import com.salih.chapter1.ex2.ThreadSafeCounter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+public class Main {
+	private static final long RUN_MILLIS = Long.getLong("counter.runMillis", 200);
+
+	/**
+	 * Sweeps every {@link SharedCounter} implementation across increasing thread counts.
+	 * <p>
+	 * <b>The Scenario:</b>
+	 * The first two examples used two threads and a fixed number of increments. Here, for each thread count
+	 * (1, 2, 4, ... up to twice the number of cores) and each counter, the threads increment as fast as they can
+	 * for {@code counter.runMillis} milliseconds while a separate reader thread keeps calling {@code get()}.
+	 * </p>
+	 * <p>
+	 * <b>What it reports:</b>
+	 * <ul>
+	 * <li><b>Mops/s:</b> millions of increments per second across all writer threads.</li>
+	 * <li><b>Lost:</b> increments that never showed up in the final value. Only the racy counter from
+	 * Example 1 should ever lose any.</li>
+	 * <li><b>Stale:</b> the worst gap the reader saw between {@code get()} and the increments the writers had
+	 * actually completed. The sharded counter trades a bigger gap for cheaper reads.</li>
+	 * </ul>
+	 * </p>
+	 * <p>
+	 * <b>The Result:</b>
+	 * The locked counter and the CAS counter flatten out (or get slower) as soon as several cores fight
+	 * over one cache line, while the striped counters keep scaling.
+	 * </p>
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		System.out.println("Running Example 3");
+		Map<String, Supplier<SharedCounter>> counters = new LinkedHashMap<>();
+		counters.put("racy (ex1)", RacyCounter::new);
+		counters.put("probed-lock (ex2)", LockedCounter::new);
+		counters.put("cas", CasCounter::new);
+		counters.put("long-adder", LongAdderCounter::new);
+		counters.put("padded-cells", PaddedCellCounter::new);
+		counters.put("sharded", () -> new ShardedCounter(Runtime.getRuntime().availableProcessors(), TimeUnit.MILLISECONDS.toNanos(1)));
+
+		int maxThreads = 2 * Runtime.getRuntime().availableProcessors();
+		System.out.printf("%-20s %8s %10s %12s %12s%n", "counter", "threads", "Mops/s", "lost", "stale");
+		for (int threads = 1; threads <= maxThreads; threads <<= 1) {
+			for (Map.Entry<String, Supplier<SharedCounter>> entry : counters.entrySet()) {
+				run(entry.getKey(), entry.getValue().get(), threads);
+			}
+		}
+	}
+
+	private static void run(String name, SharedCounter counter, int threads) throws InterruptedException {
+		AtomicLong completed = new AtomicLong();
+		CountDownLatch start = new CountDownLatch(1);
+		Thread[] writers = new Thread[threads];
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(RUN_MILLIS);
+		for (int t = 0; t < threads; t++) {
+			writers[t] = new Thread(() -> {
+				awaitQuietly(start);
+				while (System.nanoTime() < deadline) {
+					// Batches keep the nanoTime() call from dominating the measurement.
+					for (int k = 0; k < 1024; k++) {
+						counter.increment();
+					}
+					completed.addAndGet(1024);
+				}
+			});
+			writers[t].start();
+		}
+
+		long[] maxStale = new long[1];
+		Thread reader = new Thread(() -> {
+			awaitQuietly(start);
+			while (System.nanoTime() < deadline) {
+				// Snapshot "completed" before reading, so any gap is genuinely unseen work.
+				long done = completed.get();
+				long seen = counter.get();
+				maxStale[0] = Math.max(maxStale[0], done - seen);
+				Thread.onSpinWait();
+			}
+		});
+		reader.start();
+
+		long began = System.nanoTime();
+		start.countDown();
+		for (Thread writer : writers) {
+			writer.join();
+		}
+		long elapsed = System.nanoTime() - began;
+		reader.join();
+
+		long total = completed.get();
+		// An approximate read may still be serving a cached total, so count lost updates against the exact sum.
+		long last = counter instanceof ShardedCounter ? ((ShardedCounter) counter).exact() : counter.get();
+		double mops = total * 1e3 / elapsed;
+		System.out.printf("%-20s %8d %10.1f %12d %12d%n", name, threads, mops, total - last, maxStale[0]);
+	}
+
+	private static void awaitQuietly(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/** Adapts the unsynchronized {@link Counter} from Example 1. */
+	private static final class RacyCounter implements SharedCounter {
+		private final Counter delegate = new Counter();
+
+		@Override
+		public void increment() {
+			delegate.increment();
+		}
+
+		@Override
+		public long get() {
+			return delegate.getValue();
+		}
+	}
+
+	/** Adapts the {@link ThreadSafeCounter} from Example 2, which guards its count with a {@code ProbedLock}. */
+	private static final class LockedCounter implements SharedCounter {
+		private final ThreadSafeCounter delegate = new ThreadSafeCounter();
+
+		@Override
+		public void increment() {
+			delegate.increment();
+		}
+
+		@Override
+		public long get() {
+			return delegate.getValue();
+		}
+	}
+}
@@ -0,0 +1,65 @@
+package com.salih.chapter1.ex3;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * A counter where every thread owns a private, cache-line-padded cell.
+ * <p>
+ * <b>How it works:</b>
+ * <ul>
+ * <li>The first time a thread increments, it gets its own {@link Cell} through a {@link ThreadLocal}.</li>
+ * <li>Only that thread ever writes the cell (<b>Single Writer</b>), so an increment needs no CAS: a plain read,
+ * add, and an ordered store ({@code lazySet}) that readers will eventually see.</li>
+ * <li>The cell is surrounded by unused {@code long} fields so that two threads' cells never share a 64-byte
+ * cache line. Without that padding, writing "your own" cell would still invalidate your neighbour's line
+ * (<b>False Sharing</b>).</li>
+ * <li>{@link #get()} sums every cell ever created, including those of threads that have finished.</li>
+ * </ul>
+ * </p>
+ */
+public class PaddedCellCounter implements SharedCounter {
+	private final Queue<Cell> cells = new ConcurrentLinkedQueue<>();
+	private final ThreadLocal<Cell> own = ThreadLocal.withInitial(this::register);
+
+	@Override
+	public void increment() {
+		own.get().increment();
+	}
+
+	@Override
+	public long get() {
+		long sum = 0;
+		for (Cell cell : cells) {
+			sum += cell.value;
+		}
+		return sum;
+	}
+
+	private Cell register() {
+		Cell cell = new Cell();
+		cells.add(cell);
+		return cell;
+	}
+
+	@SuppressWarnings("unused")
+	private static class LeftPadding {
+		long p01, p02, p03, p04, p05, p06, p07;
+	}
+
+	private static class Value extends LeftPadding {
+		volatile long value;
+	}
+
+	@SuppressWarnings("unused")
+	private static final class Cell extends Value {
+		private static final AtomicLongFieldUpdater<Value> VALUE = AtomicLongFieldUpdater.newUpdater(Value.class, "value");
+
+		long p11, p12, p13, p14, p15, p16, p17;
+
+		void increment() {
+			VALUE.lazySet(this, value + 1);
+		}
+	}
+}
@@ -0,0 +1,76 @@
+package com.salih.chapter1.ex3;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter split into a fixed number of shards, with a cheap <b>approximate read</b>.
+ * <p>
+ * <b>How it works:</b>
+ * <ul>
+ * <li>Each thread hashes to one of {@code shards} slots in an {@link AtomicLongArray}. Slots are spaced
+ * {@value #STRIDE} longs apart, so neighbouring shards never share a cache line.</li>
+ * <li>Threads that land on the same shard still use an atomic add, so no update is ever lost.</li>
+ * <li>{@link #get()} re-sums the shards at most once per {@code refreshNanos}; in between it returns the
+ * cached total. Reads become almost free, at the price of being up to {@code refreshNanos} stale.
+ * {@link #exact()} always sums.</li>
+ * </ul>
+ * </p>
+ */
+public class ShardedCounter implements SharedCounter {
+	private static final int STRIDE = 16;
+
+	private final AtomicLongArray shards;
+	private final int mask;
+	private final long refreshNanos;
+	private volatile Snapshot snapshot;
+
+	public ShardedCounter(int shards, long refreshNanos) {
+		int size = Integer.highestOneBit(Math.max(1, shards - 1)) << 1;
+		this.shards = new AtomicLongArray(size * STRIDE);
+		this.mask = size - 1;
+		this.refreshNanos = refreshNanos;
+	}
+
+	@Override
+	public void increment() {
+		int shard = mix(Thread.currentThread().getId()) & mask;
+		shards.getAndIncrement(shard * STRIDE);
+	}
+
+	@Override
+	public long get() {
+		Snapshot current = snapshot;
+		long now = System.nanoTime();
+		if (current != null && now - current.takenAt < refreshNanos) {
+			return current.total;
+		}
+		// Racing refreshes are harmless: each publishes a total that was valid when it was summed.
+		long total = exact();
+		snapshot = new Snapshot(total, now);
+		return total;
+	}
+
+	public long exact() {
+		long total = 0;
+		for (int k = 0; k <= mask; k++) {
+			total += shards.get(k * STRIDE);
+		}
+		return total;
+	}
+
+	private static int mix(long id) {
+		long h = id * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	/** Immutable, so it can be published safely through a single volatile write. */
+	private static final class Snapshot {
+		final long total;
+		final long takenAt;
+
+		Snapshot(long total, long takenAt) {
+			this.total = total;
+			this.takenAt = takenAt;
+		}
+	}
+}
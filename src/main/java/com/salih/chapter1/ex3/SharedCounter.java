@@ -0,0 +1,16 @@
+package com.salih.chapter1.ex3;
+
+/**
+ * A counter that many threads increment concurrently.
+ * <p>
+ * Implementations differ in what {@link #get()} promises: {@link CasCounter} always returns the exact current
+ * value, the striped ones return a sum that may miss increments still in flight, and {@link ShardedCounter}
+ * may deliberately return a slightly stale value to make reads cheaper.
+ * </p>
+ */
+public interface SharedCounter {
+
+	void increment();
+
+	long get();
+}
@@ -0,0 +1,259 @@
+package com.salih.chapter2;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Factoring engine for numbers that do not fit in a {@code long}.
+ * <p>
+ * It runs the same tiers as {@link LongFactoring} (trial division, Miller-Rabin, Pollard-Brent) on
+ * {@link BigInteger}s, and hands every piece that drops below 2<sup>64</sup> back to the allocation-free engine.
+ * </p>
+ * <p>
+ * <b>Note:</b> the result is always correct, but Pollard rho needs about {@code sqrt(p)} steps to find a factor
+ * {@code p}. A product of two 100-bit primes is therefore out of reach; that takes a quadratic or number field sieve.
+ * </p>
+ * <p>
+ * <b>Parallel mode:</b>
+ * A single rho walk is inherently sequential, but walks with different constants {@code c} are independent.
+ * For composites of at least {@code parallelThresholdBits} bits, one walk per {@link ForkJoinPool#commonPool()}
+ * worker is forked. The first walk to find a divisor publishes it, and the others notice and stop.
+ * Below the threshold nothing is forked, so small inputs pay no coordination overhead.
+ * </p>
+ */
+enum BigFactoring {
+	;
+
+	private static final BigInteger LONG_LIMIT = BigInteger.ONE.shiftLeft(64);
+
+	/** The first 13 prime bases make Miller-Rabin deterministic below about 3.3 * 10<sup>24</sup>. */
+	private static final int[] DETERMINISTIC_BASES = { 2, 3, 5, 7, 11, 13, 17, 19, 23, 29, 31, 37, 41 };
+	private static final int DETERMINISTIC_BIT_LENGTH = 81;
+	private static final int RANDOM_ROUNDS = 16;
+
+	/**
+	 * Appends the prime factors of {@code n > 1} to {@code out}, in no particular order. Composites of at least
+	 * {@code parallelThresholdBits} bits are split with parallel rho walks; pass {@link Integer#MAX_VALUE} to stay
+	 * sequential.
+	 */
+	static void factor(BigInteger n, List<BigInteger> out, int parallelThresholdBits) {
+		factor(n, out::add, parallelThresholdBits, Deadline.NONE);
+	}
+
+	/**
+	 * Same as {@link #factor(BigInteger, List, int)}, checking {@code deadline} during trial division and between
+	 * rho batches, and handing each prime to {@code out} the moment it is found, including the primes of a cofactor
+	 * small enough for {@link LongFactoring}. If the deadline expires, {@code out} has been given every prime found
+	 * so far.
+	 */
+	static void factor(BigInteger n, Consumer<BigInteger> out, int parallelThresholdBits, Deadline deadline) {
+		for (int k = 0; k < SmallPrimes.PRIMES.length; k++) {
+			if (n.compareTo(LONG_LIMIT) < 0) {
+				break;
+			}
+			if ((k & 63) == 0) {
+				deadline.check();
+			}
+			int p = SmallPrimes.PRIMES[k];
+			BigInteger prime = BigInteger.valueOf(p);
+			BigInteger[] qr = n.divideAndRemainder(prime);
+			while (qr[1].signum() == 0) {
+				out.accept(prime);
+				n = qr[0];
+				qr = n.divideAndRemainder(prime);
+			}
+		}
+		if (!n.equals(BigInteger.ONE)) {
+			split(n, out, parallelThresholdBits, deadline);
+		}
+	}
+
+	static boolean isProbablePrime(BigInteger n) {
+		if (n.compareTo(LONG_LIMIT) < 0) {
+			return LongFactoring.isPrime(n.longValue());
+		}
+		if (!n.testBit(0)) {
+			return false;
+		}
+
+		BigInteger nMinusOne = n.subtract(BigInteger.ONE);
+		int s = nMinusOne.getLowestSetBit();
+		BigInteger d = nMinusOne.shiftRight(s);
+
+		for (int base : DETERMINISTIC_BASES) {
+			if (isWitness(BigInteger.valueOf(base), n, nMinusOne, d, s)) {
+				return false;
+			}
+		}
+		if (n.bitLength() > DETERMINISTIC_BIT_LENGTH) {
+			for (int i = 0; i < RANDOM_ROUNDS; i++) {
+				if (isWitness(randomBelow(nMinusOne), n, nMinusOne, d, s)) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/** Fully factors an {@code n} that has no factors below {@link SmallPrimes#LIMIT}. */
+	private static void split(BigInteger n, Consumer<BigInteger> out, int parallelThresholdBits, Deadline deadline) {
+		if (n.compareTo(LONG_LIMIT) < 0) {
+			LongFactoring.factor(n.longValue(), new long[LongFactoring.MAX_FACTORS], deadline,
+					factor -> out.accept(LongFactoring.toBigInteger(factor)));
+			return;
+		}
+		if (isProbablePrime(n)) {
+			out.accept(n);
+			return;
+		}
+		BigInteger d = n.bitLength() >= parallelThresholdBits
+				? findFactorInParallel(n, deadline)
+				: findFactor(n, 1, 1, null, deadline);
+		split(d, out, parallelThresholdBits, deadline);
+		split(n.divide(d), out, parallelThresholdBits, deadline);
+	}
+
+	/**
+	 * Tries {@code c = first, first + stride, ...} until a walk succeeds. Returns {@code null} if another walk
+	 * published a divisor into {@code found} first.
+	 */
+	private static BigInteger findFactor(BigInteger n, long first, long stride, AtomicReference<BigInteger> found,
+			Deadline deadline) {
+		for (long c = first; ; c += stride) {
+			BigInteger d = brent(n, BigInteger.valueOf(c), found, deadline);
+			if (d == null) {
+				return null;
+			}
+			if (!d.equals(n)) {
+				return d;
+			}
+		}
+	}
+
+	private static BigInteger findFactorInParallel(BigInteger n, Deadline deadline) {
+		AtomicReference<BigInteger> found = new AtomicReference<>();
+		int walks = Math.max(2, ForkJoinPool.getCommonPoolParallelism());
+		Walk[] tasks = new Walk[walks];
+		for (int w = 0; w < walks; w++) {
+			tasks[w] = new Walk(n, w + 1, walks, found, deadline);
+		}
+		RecursiveAction.invokeAll(tasks);
+		return found.get();
+	}
+
+	/** One of several rho walks racing to split the same number; the first success wins. */
+	private static final class Walk extends RecursiveAction {
+		private final BigInteger n;
+		private final long first;
+		private final long stride;
+		private final AtomicReference<BigInteger> found;
+		private final Deadline deadline;
+
+		Walk(BigInteger n, long first, long stride, AtomicReference<BigInteger> found, Deadline deadline) {
+			this.n = n;
+			this.first = first;
+			this.stride = stride;
+			this.found = found;
+			this.deadline = deadline;
+		}
+
+		@Override
+		protected void compute() {
+			BigInteger d = findFactor(n, first, stride, found, deadline);
+			if (d != null) {
+				found.compareAndSet(null, d);
+			}
+		}
+	}
+
+	/**
+	 * One Pollard-Brent walk; see {@link LongFactoring} for the {@code long} version of the same loop.
+	 * Every {@code m} steps, in the advance and backtrack loops as well as between batches, it checks {@code found}
+	 * (if given) and returns {@code null} once another walk has succeeded, and checks {@code deadline}, which throws
+	 * once it has expired. The advance alone doubles with every round, so checking only between batches would leave a
+	 * losing walk running for as long as the winner took.
+	 */
+	private static BigInteger brent(BigInteger n, BigInteger c, AtomicReference<BigInteger> found,
+			Deadline deadline) {
+		BigInteger y = BigInteger.TWO;
+		BigInteger x = y;
+		BigInteger ys = y;
+		BigInteger q = BigInteger.ONE;
+		BigInteger g = BigInteger.ONE;
+		int m = 128;
+
+		for (long r = 1; g.equals(BigInteger.ONE); r <<= 1) {
+			x = y;
+			for (long i = 0; i < r; i++) {
+				if (i % m == 0 && lost(found, deadline)) {
+					return null;
+				}
+				y = step(y, c, n);
+			}
+			for (long k = 0; k < r && g.equals(BigInteger.ONE); k += m) {
+				if (lost(found, deadline)) {
+					return null;
+				}
+				ys = y;
+				long limit = Math.min(m, r - k);
+				for (long i = 0; i < limit; i++) {
+					y = step(y, c, n);
+					q = q.multiply(x.subtract(y).abs()).mod(n);
+				}
+				g = q.gcd(n);
+			}
+		}
+
+		if (g.equals(n)) {
+			long i = 0;
+			do {
+				if (i++ % m == 0 && lost(found, deadline)) {
+					return null;
+				}
+				ys = step(ys, c, n);
+				g = x.subtract(ys).abs().gcd(n);
+			} while (g.equals(BigInteger.ONE));
+		}
+		return g;
+	}
+
+	/** Whether another walk has already published a divisor; throws if {@code deadline} has expired. */
+	private static boolean lost(AtomicReference<BigInteger> found, Deadline deadline) {
+		if (found != null && found.get() != null) {
+			return true;
+		}
+		deadline.check();
+		return false;
+	}
+
+	private static BigInteger step(BigInteger y, BigInteger c, BigInteger n) {
+		return y.multiply(y).add(c).mod(n);
+	}
+
+	private static boolean isWitness(BigInteger a, BigInteger n, BigInteger nMinusOne, BigInteger d, int s) {
+		BigInteger x = a.modPow(d, n);
+		if (x.equals(BigInteger.ONE) || x.equals(nMinusOne)) {
+			return false;
+		}
+		for (int i = 1; i < s; i++) {
+			x = x.multiply(x).mod(n);
+			if (x.equals(nMinusOne)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static BigInteger randomBelow(BigInteger bound) {
+		BigInteger candidate;
+		do {
+			candidate = new BigInteger(bound.bitLength(), ThreadLocalRandom.current());
+		} while (candidate.compareTo(BigInteger.TWO) < 0 || candidate.compareTo(bound) >= 0);
+		return candidate;
+	}
+}
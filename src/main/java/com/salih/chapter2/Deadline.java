@@ -0,0 +1,61 @@
+package com.salih.chapter2;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A point in time after which a computation should give up, checked <b>cooperatively</b> by the code doing the work.
+ * <p>
+ * Java has no safe way to stop a running thread from the outside. Instead, the factoring loops call {@link #check()}
+ * between batches of work, and it throws {@link DeadlineExceededException} once the time is up or the thread has
+ * been interrupted. The cost is one {@link System#nanoTime()} per batch; {@link #NONE} costs nothing at all.
+ * </p>
+ * <p>
+ * Another thread can also end it early with {@link #cancel()}, for example when it notices that the client the
+ * result was for has disconnected.
+ * </p>
+ */
+public final class Deadline {
+	/** Never expires and ignores interrupts, which is how {@code factor()} has always behaved. */
+	public static final Deadline NONE = new Deadline(0, false);
+
+	private final long expiresAt;
+	private final boolean bounded;
+	private volatile boolean cancelled;
+
+	private Deadline(long expiresAt, boolean bounded) {
+		this.expiresAt = expiresAt;
+		this.bounded = bounded;
+	}
+
+	public static Deadline after(long amount, TimeUnit unit) {
+		return new Deadline(System.nanoTime() + unit.toNanos(amount), true);
+	}
+
+	public boolean isExpired() {
+		return bounded
+				&& (cancelled || System.nanoTime() - expiresAt >= 0 || Thread.currentThread().isInterrupted());
+	}
+
+	public long remaining(TimeUnit unit) {
+		return bounded ? unit.convert(Math.max(0, expiresAt - System.nanoTime()), TimeUnit.NANOSECONDS) : Long.MAX_VALUE;
+	}
+
+	/**
+	 * Makes this deadline expire now, for whichever thread checks it next.
+	 *
+	 * @throws UnsupportedOperationException on {@link #NONE}, which is shared and never expires
+	 */
+	public void cancel() {
+		if (!bounded) {
+			throw new UnsupportedOperationException("Deadline.NONE cannot be cancelled");
+		}
+		cancelled = true;
+	}
+
+	/** @throws DeadlineExceededException if the deadline has passed or the current thread is interrupted */
+	public void check() {
+		if (isExpired()) {
+			throw new DeadlineExceededException();
+		}
+	}
+}
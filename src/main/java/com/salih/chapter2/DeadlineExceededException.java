@@ -0,0 +1,12 @@
+package com.salih.chapter2;
+
+/**
+ * Thrown from inside a computation when its {@link Deadline} has passed. It is used for control flow, so it does not
+ * fill in a stack trace.
+ */
+public class DeadlineExceededException extends RuntimeException {
+
+	public DeadlineExceededException() {
+		super("deadline exceeded", null, false, false);
+	}
+}
@@ -0,0 +1,32 @@
+package com.salih.chapter2;
+
+import java.math.BigInteger;
+
+/**
+ * The outcome of factoring under a {@link Deadline}: the prime factors found, in ascending order, and the
+ * {@code cofactor} still to be factored. Their product is always the original number.
+ * <p>
+ * A complete factorization has a cofactor of 1. A partial one must never be cached as if it were the answer.
+ * </p>
+ */
+public final class Factorization {
+	private final BigInteger[] factors;
+	private final BigInteger cofactor;
+
+	public Factorization(BigInteger[] factors, BigInteger cofactor) {
+		this.factors = factors;
+		this.cofactor = cofactor;
+	}
+
+	public BigInteger[] factors() {
+		return factors;
+	}
+
+	public BigInteger cofactor() {
+		return cofactor;
+	}
+
+	public boolean isComplete() {
+		return cofactor.equals(BigInteger.ONE);
+	}
+}
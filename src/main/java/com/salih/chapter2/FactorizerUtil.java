@@ -5,15 +5,37 @@ import java.io.PrintWriter;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.salih.chapter2.encoding.FactorResult;
+import com.salih.chapter2.encoding.Format;
+import com.salih.chapter2.metrics.Stage;
 
 public enum FactorizerUtil {
 	;
 
+	/**
+	 * Composites of at least this many bits are split with parallel rho walks on the common
+	 * {@link java.util.concurrent.ForkJoinPool} when parallel mode is on ({@code factor.parallel.enabled}).
+	 * Only the {@link BigInteger} engine parallelizes, so values of 64 or less behave like 65.
+	 */
+	public static final int PARALLEL_THRESHOLD_BITS = Integer.getInteger("factor.parallel.thresholdBits", 96);
+	private static final boolean PARALLEL_ENABLED = Boolean.getBoolean("factor.parallel.enabled");
+
 	public static BigInteger extractFromRequest(ServletRequest req) {
-		String numParam = req.getParameter("number");
+		long start = System.nanoTime();
+		BigInteger number = parseNumber(req.getParameter("number"));
+		Stage.PARSE.recordSince(start);
+		return number;
+	}
+
+	/** Parses a decimal number, treating missing or malformed input as {@code 1} (which has no factors). */
+	public static BigInteger parseNumber(String numParam) {
 		if (numParam == null || numParam.isEmpty()) {
 			return BigInteger.ONE;
 		}
@@ -25,25 +47,204 @@ public enum FactorizerUtil {
 		}
 	}
 
+	/**
+	 * Returns the prime factors of {@code i} in ascending order, with multiplicity. Numbers below 2 have none.
+	 * <p>
+	 * Inputs below 2<sup>64</sup> go through the allocation-free {@link LongFactoring} engine; larger ones
+	 * through {@link BigFactoring}. Both use trial division by small primes, a Miller-Rabin primality shortcut and
+	 * Pollard-Brent rho for the remaining composites.
+	 * </p>
+	 */
 	public static BigInteger[] factor(BigInteger i) {
-		List<BigInteger> factors = new ArrayList<>();
-		long n = i.longValue();
+		return factor(i, PARALLEL_ENABLED ? PARALLEL_THRESHOLD_BITS : Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Same as {@link #factor(BigInteger)}, but always uses parallel rho walks for composites of at least
+	 * {@link #PARALLEL_THRESHOLD_BITS} bits, whether or not parallel mode is enabled globally.
+	 */
+	public static BigInteger[] factorInParallel(BigInteger i) {
+		return factor(i, PARALLEL_THRESHOLD_BITS);
+	}
+
+	/**
+	 * Factors {@code i} until {@code deadline} expires (or the thread is interrupted), whichever comes first.
+	 * If it expires, the result holds the prime factors found so far and the part of {@code i} left unfactored;
+	 * check {@link Factorization#isComplete()} before caching it.
+	 */
+	public static Factorization factor(BigInteger i, Deadline deadline) {
+		return factor(i, deadline, factor -> {
+		});
+	}
+
+	/**
+	 * Same as {@link #factor(BigInteger, Deadline)}, but also hands each prime factor to {@code onFactor} the moment
+	 * it is found, on the calling thread, whether it comes from trial division, a rho split, or the {@code long}
+	 * engine finishing off a small input or cofactor. Factors arrive in the order they are found, not ascending; the
+	 * returned result is sorted as usual. If {@code onFactor} throws, factoring stops and the exception propagates.
+	 */
+	public static Factorization factor(BigInteger i, Deadline deadline, Consumer<BigInteger> onFactor) {
+		long start = System.nanoTime();
+		List<BigInteger> found = new ArrayList<>();
+		Consumer<BigInteger> sink = factor -> {
+			found.add(factor);
+			onFactor.accept(factor);
+		};
+		try {
+			factorInto(i, sink, PARALLEL_ENABLED ? PARALLEL_THRESHOLD_BITS : Integer.MAX_VALUE, deadline);
+			return new Factorization(sorted(found), BigInteger.ONE);
+		} catch (DeadlineExceededException e) {
+			BigInteger cofactor = i;
+			for (BigInteger factor : found) {
+				cofactor = cofactor.divide(factor);
+			}
+			return new Factorization(sorted(found), cofactor);
+		} finally {
+			Stage.FACTOR.recordSince(start);
+		}
+	}
+
+	/**
+	 * Like {@link #factor(BigInteger)}, but gives up at {@code deadline}. Suitable as a cache loader: an expired
+	 * computation throws instead of returning something that could be cached.
+	 *
+	 * @throws DeadlineExceededException if the deadline expired first
+	 */
+	public static BigInteger[] factorWithin(BigInteger i, Deadline deadline) {
+		Factorization result = factor(i, deadline);
+		if (!result.isComplete()) {
+			throw new DeadlineExceededException();
+		}
+		return result.factors();
+	}
+
+	private static void factorInto(BigInteger i, Consumer<BigInteger> out, int parallelThresholdBits,
+			Deadline deadline) {
+		if (i.compareTo(BigInteger.TWO) < 0) {
+			return;
+		}
+		if (i.bitLength() > Long.SIZE) {
+			BigFactoring.factor(i, out, parallelThresholdBits, deadline);
+			return;
+		}
+		LongFactoring.factor(i.longValue(), new long[LongFactoring.MAX_FACTORS], deadline,
+				factor -> out.accept(LongFactoring.toBigInteger(factor)));
+	}
 
-		for (int j = 2; j <= n; j++) {
-			while (n % j == 0) {
-				factors.add(BigInteger.valueOf(j));
-				n /= j;
+	private static BigInteger[] sorted(List<BigInteger> factors) {
+		factors.sort(null);
+		return factors.toArray(new BigInteger[0]);
+	}
+
+	private static BigInteger[] factor(BigInteger i, int parallelThresholdBits) {
+		long start = System.nanoTime();
+		BigInteger[] factors = factorUntimed(i, parallelThresholdBits);
+		Stage.FACTOR.recordSince(start);
+		return factors;
+	}
+
+	private static BigInteger[] factorUntimed(BigInteger i, int parallelThresholdBits) {
+		if (i.compareTo(BigInteger.TWO) < 0) {
+			return new BigInteger[0];
+		}
+
+		if (i.bitLength() <= Long.SIZE) {
+			long[] factors = new long[LongFactoring.MAX_FACTORS];
+			int count = LongFactoring.factor(i.longValue(), factors);
+			BigInteger[] result = new BigInteger[count];
+			for (int k = 0; k < count; k++) {
+				result[k] = LongFactoring.toBigInteger(factors[k]);
 			}
+			return result;
 		}
 
+		List<BigInteger> factors = new ArrayList<>();
+		BigFactoring.factor(i, factors, parallelThresholdBits);
+		factors.sort(null);
 		return factors.toArray(new BigInteger[0]);
 	}
 
+	/**
+	 * The allocation-free fast path for numbers that fit in a {@code long}: the {@code number} parameter is parsed
+	 * straight into a primitive, factored into a reused buffer and written to the response as raw bytes.
+	 *
+	 * @return {@code false} if the parameter is missing, negative, malformed or too wide for a {@code long};
+	 * the caller must then fall back to {@link #extractFromRequest}, {@link #factor} and {@link #encodeIntoResponse}.
+	 */
+	public static boolean tryFactorLongInto(ServletRequest req, ServletResponse resp) throws IOException {
+		long start = System.nanoTime();
+		long n = LongFastPath.parseNonNegative(req.getParameter("number"));
+		if (n < 0) {
+			return false;
+		}
+		Stage.PARSE.recordSince(start);
+
+		LongFastPath buffers = LongFastPath.current();
+		start = System.nanoTime();
+		buffers.factor(n);
+		Stage.FACTOR.recordSince(start);
+
+		start = System.nanoTime();
+		int length = buffers.encode();
+		resp.setContentType("text/plain");
+		resp.setContentLength(length);
+		resp.getOutputStream().write(buffers.bytes(), 0, length);
+		Stage.ENCODE.recordSince(start);
+		return true;
+	}
+
 	public static void encodeIntoResponse(ServletResponse resp, BigInteger[] factors) throws IOException {
+		long start = System.nanoTime();
 		resp.setContentType("text/plain");
 		PrintWriter out = resp.getWriter();
 		out.print(getFactorsArrString(factors));
 		out.println();
+		Stage.ENCODE.recordSince(start);
+	}
+
+	/**
+	 * Writes a cached result in the format the client asked for ({@link Format#negotiate}). The body was encoded
+	 * when the result was first produced, so this is a single write with {@code Content-Length} and {@code ETag} set.
+	 */
+	public static void encodeIntoResponse(HttpServletRequest req, HttpServletResponse resp, FactorResult result)
+			throws IOException {
+		long start = System.nanoTime();
+		Format format = Format.negotiate(req.getHeader("Accept"));
+		byte[] body = result.body(format);
+		resp.setContentType(format.contentType());
+		resp.setHeader("ETag", result.etag(format));
+		resp.setHeader("Vary", "Accept");
+		resp.setContentLength(body.length);
+		resp.getOutputStream().write(body);
+		Stage.ENCODE.recordSince(start);
+	}
+
+	/**
+	 * Answers {@code 304 Not Modified} if the client's {@code If-None-Match} already names the representation of
+	 * {@code number} it would get. Since the tag depends only on the number and format, this needs no cache lookup
+	 * and no factoring.
+	 *
+	 * @return {@code true} if the response has been completed
+	 */
+	public static boolean respondIfNotModified(HttpServletRequest req, HttpServletResponse resp, BigInteger number) {
+		String ifNoneMatch = req.getHeader("If-None-Match");
+		if (ifNoneMatch == null) {
+			return false;
+		}
+		String etag = Format.negotiate(req.getHeader("Accept")).etag(number);
+		for (String candidate : ifNoneMatch.split(",")) {
+			String tag = candidate.trim();
+			if (tag.startsWith("W/")) {
+				tag = tag.substring(2);
+			}
+			if (tag.equals("*") || tag.equals(etag)) {
+				resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+				resp.setHeader("ETag", etag);
+				resp.setHeader("Vary", "Accept");
+				return true;
+			}
+		}
+		return false;
 	}
 
 	public static String getFactorsArrString(BigInteger[] factors) {
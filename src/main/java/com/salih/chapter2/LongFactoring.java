@@ -0,0 +1,312 @@
+package com.salih.chapter2;
+
+import java.math.BigInteger;
+import java.util.function.LongConsumer;
+
+/**
+ * Factoring engine for numbers that fit in 64 bits. Every {@code long} in here is treated as <b>unsigned</b>,
+ * so the full range up to 2<sup>64</sup> - 1 is covered without falling back to {@link BigInteger}.
+ * <p>
+ * <b>The tiers:</b>
+ * <ol>
+ * <li>If an {@link SpfTable} is configured and {@code n} is below its bound, nothing else is needed: the factors
+ * are read off the table in at most 32 lookups.</li>
+ * <li><b>Trial division</b> by the primes in {@link SmallPrimes}. Cheap, and removes most factors of typical inputs.</li>
+ * <li><b>Miller-Rabin</b> with a fixed set of bases that is deterministic for every 64-bit number, so a large prime
+ * is recognised after a handful of modular exponentiations instead of billions of divisions.</li>
+ * <li><b>Pollard rho (Brent's variant)</b> for what is left, which finds a factor {@code p} in roughly
+ * {@code sqrt(p)} steps.</li>
+ * </ol>
+ * </p>
+ * <p>
+ * All modular arithmetic uses <b>Montgomery multiplication</b> on {@code long}s, so nothing in here allocates.
+ * Montgomery form needs an odd modulus, which always holds once the factor 2 has been divided out.
+ * </p>
+ */
+enum LongFactoring {
+	;
+
+	/** Enough room for the factors of any 64-bit number: 2<sup>63</sup> has 63 of them. */
+	static final int MAX_FACTORS = 64;
+
+	private static final long[] MILLER_RABIN_BASES = { 2, 325, 9375, 28178, 450775, 9780504, 1795265022 };
+
+	/**
+	 * Writes the prime factors of {@code n} (with multiplicity, ascending) into {@code out} and returns how many
+	 * were written. Numbers below 2 have no factors. {@code out} must hold at least {@link #MAX_FACTORS} entries.
+	 */
+	static int factor(long n, long[] out) {
+		return factor(n, out, Deadline.NONE, null);
+	}
+
+	/**
+	 * Same as {@link #factor(long, long[])}, checking {@code deadline} between rho batches, and handing each prime
+	 * to {@code onFactor} (if not {@code null}) the moment it is found, before the next one is looked for. If the
+	 * deadline expires, the {@link DeadlineExceededException} leaves the factors found so far at the front of
+	 * {@code out}, unsorted; any entries after them are untouched.
+	 */
+	static int factor(long n, long[] out, Deadline deadline, LongConsumer onFactor) {
+		if (Long.compareUnsigned(n, 2) < 0) {
+			return 0;
+		}
+
+		SpfTable table = SpfTable.shared();
+		if (table != null && Long.compareUnsigned(n, table.bound()) < 0) {
+			int count = table.factor(n, out);
+			if (onFactor != null) {
+				for (int k = 0; k < count; k++) {
+					onFactor.accept(out[k]);
+				}
+			}
+			return count;
+		}
+
+		int count = 0;
+		for (int p : SmallPrimes.PRIMES) {
+			if (Long.compareUnsigned((long) p * p, n) > 0) {
+				break;
+			}
+			while (Long.remainderUnsigned(n, p) == 0) {
+				count = append(out, count, p, onFactor);
+				n = Long.divideUnsigned(n, p);
+			}
+		}
+
+		if (n != 1) {
+			count = Long.compareUnsigned(n, SmallPrimes.LIMIT_SQUARED) < 0
+					? append(out, count, n, onFactor)
+					: split(n, out, count, deadline, onFactor);
+		}
+
+		insertionSort(out, count);
+		return count;
+	}
+
+	static boolean isPrime(long n) {
+		if (Long.compareUnsigned(n, 2) < 0) {
+			return false;
+		}
+		for (int p : SmallPrimes.PRIMES) {
+			if (Long.remainderUnsigned(n, p) == 0) {
+				return n == p;
+			}
+			if (Long.compareUnsigned((long) p * p, n) > 0) {
+				return true;
+			}
+		}
+		return millerRabin(n);
+	}
+
+	/** Converts an unsigned 64-bit value to a (non-negative) {@link BigInteger}. */
+	static BigInteger toBigInteger(long unsigned) {
+		BigInteger value = BigInteger.valueOf(unsigned & Long.MAX_VALUE);
+		return unsigned < 0 ? value.setBit(63) : value;
+	}
+
+	/** Fully factors an odd composite-or-prime {@code n} with no factors below {@link SmallPrimes#LIMIT}. */
+	private static int split(long n, long[] out, int count, Deadline deadline, LongConsumer onFactor) {
+		if (millerRabin(n)) {
+			return append(out, count, n, onFactor);
+		}
+		long d = findFactor(n, deadline);
+		count = split(d, out, count, deadline, onFactor);
+		return split(Long.divideUnsigned(n, d), out, count, deadline, onFactor);
+	}
+
+	private static int append(long[] out, int count, long factor, LongConsumer onFactor) {
+		out[count] = factor;
+		if (onFactor != null) {
+			onFactor.accept(factor);
+		}
+		return count + 1;
+	}
+
+	private static long findFactor(long n, Deadline deadline) {
+		for (long c = 1; ; c++) {
+			long d = brent(n, c, deadline);
+			if (d != n) {
+				return d;
+			}
+		}
+	}
+
+	/**
+	 * One Pollard-Brent walk of {@code x -> x^2 + c (mod n)}. Returns a non-trivial divisor of {@code n},
+	 * or {@code n} itself if this choice of {@code c} failed and another one must be tried.
+	 */
+	private static long brent(long n, long c, Deadline deadline) {
+		long nInv = inverse(n);
+		long r1 = montgomeryOne(n);
+		long r2 = montgomeryRSquared(n);
+		long cm = toMontgomery(c, r2, n, nInv);
+
+		long y = toMontgomery(2, r2, n, nInv);
+		long x = y;
+		long ys = y;
+		long q = r1;
+		long g = 1;
+		int m = 128;
+
+		for (long r = 1; g == 1; r <<= 1) {
+			x = y;
+			for (long i = 0; i < r; i++) {
+				y = step(y, cm, n, nInv);
+			}
+			for (long k = 0; k < r && g == 1; k += m) {
+				deadline.check();
+				ys = y;
+				long limit = Math.min(m, r - k);
+				for (long i = 0; i < limit; i++) {
+					y = step(y, cm, n, nInv);
+					q = multiply(q, distance(x, y), n, nInv);
+				}
+				g = gcd(q, n);
+			}
+		}
+
+		if (g == n) {
+			// The batched product hit a multiple of n; redo the last batch one step at a time.
+			do {
+				ys = step(ys, cm, n, nInv);
+				g = gcd(distance(x, ys), n);
+			} while (g == 1);
+		}
+		return g;
+	}
+
+	private static long step(long y, long c, long n, long nInv) {
+		long square = multiply(y, y, n, nInv);
+		long s = square + c;
+		// Either the sum wrapped past 2^64 or it reached n; in both cases subtracting n (mod 2^64) is exact.
+		return Long.compareUnsigned(s, square) < 0 || Long.compareUnsigned(s, n) >= 0 ? s - n : s;
+	}
+
+	private static long distance(long x, long y) {
+		return Long.compareUnsigned(x, y) >= 0 ? x - y : y - x;
+	}
+
+	private static boolean millerRabin(long n) {
+		long nInv = inverse(n);
+		long one = montgomeryOne(n);
+		long r2 = montgomeryRSquared(n);
+		long minusOne = n - one;
+
+		long d = n - 1;
+		int s = Long.numberOfTrailingZeros(d);
+		d >>>= s;
+
+		for (long base : MILLER_RABIN_BASES) {
+			long a = Long.remainderUnsigned(base, n);
+			if (a == 0) {
+				continue;
+			}
+			long x = power(toMontgomery(a, r2, n, nInv), d, one, n, nInv);
+			if (x == one || x == minusOne) {
+				continue;
+			}
+			boolean witness = true;
+			for (int i = 1; i < s; i++) {
+				x = multiply(x, x, n, nInv);
+				if (x == minusOne) {
+					witness = false;
+					break;
+				}
+			}
+			if (witness) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static long power(long base, long exponent, long one, long n, long nInv) {
+		long result = one;
+		while (exponent != 0) {
+			if ((exponent & 1) != 0) {
+				result = multiply(result, base, n, nInv);
+			}
+			base = multiply(base, base, n, nInv);
+			exponent >>>= 1;
+		}
+		return result;
+	}
+
+	/** Returns {@code n^-1 mod 2^64} for odd {@code n} (Newton's iteration doubles the correct bits each round). */
+	private static long inverse(long n) {
+		long inv = n;
+		for (int i = 0; i < 5; i++) {
+			inv *= 2 - n * inv;
+		}
+		return inv;
+	}
+
+	/** {@code a * b * 2^-64 mod n}, for {@code a, b < n}. */
+	private static long multiply(long a, long b, long n, long nInv) {
+		long hi = unsignedMultiplyHigh(a, b);
+		long lo = a * b;
+		long m = lo * nInv;
+		long mn = unsignedMultiplyHigh(m, n);
+		long t = hi - mn;
+		return Long.compareUnsigned(hi, mn) < 0 ? t + n : t;
+	}
+
+	private static long unsignedMultiplyHigh(long a, long b) {
+		return Math.multiplyHigh(a, b) + ((a >> 63) & b) + ((b >> 63) & a);
+	}
+
+	/** {@code 2^64 mod n}, i.e. the Montgomery form of 1. */
+	private static long montgomeryOne(long n) {
+		long r = Long.remainderUnsigned(-1L, n) + 1;
+		return r == n ? 0 : r;
+	}
+
+	/** {@code 2^128 mod n}, by doubling {@code 2^64 mod n} another 64 times. Allocation-free, unlike BigInteger. */
+	private static long montgomeryRSquared(long n) {
+		long r2 = montgomeryOne(n);
+		for (int i = 0; i < 64; i++) {
+			boolean carry = r2 < 0;
+			r2 <<= 1;
+			if (carry || Long.compareUnsigned(r2, n) >= 0) {
+				r2 -= n;
+			}
+		}
+		return r2;
+	}
+
+	private static long toMontgomery(long a, long r2, long n, long nInv) {
+		return multiply(a, r2, n, nInv);
+	}
+
+	private static long gcd(long a, long b) {
+		if (a == 0) {
+			return b;
+		}
+		if (b == 0) {
+			return a;
+		}
+		int shift = Long.numberOfTrailingZeros(a | b);
+		a >>>= Long.numberOfTrailingZeros(a);
+		while (b != 0) {
+			b >>>= Long.numberOfTrailingZeros(b);
+			if (Long.compareUnsigned(a, b) > 0) {
+				long t = a;
+				a = b;
+				b = t;
+			}
+			b -= a;
+		}
+		return a << shift;
+	}
+
+	private static void insertionSort(long[] values, int count) {
+		for (int i = 1; i < count; i++) {
+			long v = values[i];
+			int j = i - 1;
+			while (j >= 0 && Long.compareUnsigned(values[j], v) > 0) {
+				values[j + 1] = values[j];
+				j--;
+			}
+			values[j + 1] = v;
+		}
+	}
+}
@@ -0,0 +1,89 @@
+package com.salih.chapter2;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Per-thread scratch buffers for the primitive "parse, factor, encode" pipeline used when the requested number
+ * fits in a {@code long}.
+ * <p>
+ * <b>Why a ThreadLocal?</b>
+ * The buffers are reused across requests to avoid allocating on every call, but they are never shared: each container
+ * thread gets its own instance (<b>Thread Confinement</b>). No synchronization is needed because no other thread can
+ * ever see them.
+ * </p>
+ */
+final class LongFastPath {
+	private static final byte[] PREFIX = "Factors: ".getBytes(StandardCharsets.US_ASCII);
+	private static final int MAX_DIGITS = 20;
+	private static final ThreadLocal<LongFastPath> CURRENT = ThreadLocal.withInitial(LongFastPath::new);
+
+	private final long[] factors = new long[LongFactoring.MAX_FACTORS];
+	private final byte[] bytes = new byte[PREFIX.length + LongFactoring.MAX_FACTORS * (MAX_DIGITS + 1) + 2];
+	private int count;
+
+	static LongFastPath current() {
+		return CURRENT.get();
+	}
+
+	/**
+	 * Parses a plain non-negative decimal without creating any objects. Returns -1 for anything else
+	 * (missing, signed, malformed or wider than a {@code long}), which sends the caller down the BigInteger path.
+	 */
+	static long parseNonNegative(String s) {
+		if (s == null || s.isEmpty() || s.length() > MAX_DIGITS) {
+			return -1;
+		}
+		long value = 0;
+		for (int k = 0; k < s.length(); k++) {
+			int digit = s.charAt(k) - '0';
+			if (digit < 0 || digit > 9 || value > (Long.MAX_VALUE - digit) / 10) {
+				return -1;
+			}
+			value = value * 10 + digit;
+		}
+		return value;
+	}
+
+	void factor(long n) {
+		count = LongFactoring.factor(n, factors);
+	}
+
+	/**
+	 * Writes the factors found by the last {@link #factor} call into {@link #bytes()} as
+	 * {@code "Factors: p1 p2 ... \n\n"}, the same text {@link FactorizerUtil#encodeIntoResponse} produces. Returns the
+	 * number of bytes written.
+	 */
+	int encode() {
+		System.arraycopy(PREFIX, 0, bytes, 0, PREFIX.length);
+		int position = PREFIX.length;
+		for (int k = 0; k < count; k++) {
+			position = writeDigits(factors[k], position);
+			bytes[position++] = ' ';
+		}
+		bytes[position++] = '\n';
+		bytes[position++] = '\n';
+		return position;
+	}
+
+	byte[] bytes() {
+		return bytes;
+	}
+
+	private int writeDigits(long value, int position) {
+		int end = position + digitCount(value);
+		for (int k = end - 1; k >= position; k--) {
+			bytes[k] = (byte) ('0' + value % 10);
+			value /= 10;
+		}
+		return end;
+	}
+
+	private static int digitCount(long value) {
+		int digits = 1;
+		while (value >= 10) {
+			value /= 10;
+			digits++;
+		}
+		return digits;
+	}
+}
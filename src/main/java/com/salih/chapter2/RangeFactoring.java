@@ -0,0 +1,236 @@
+package com.salih.chapter2;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Factors every number in a contiguous range at once with a <b>segmented sieve</b>, instead of one {@code factor()}
+ * call per number.
+ * <p>
+ * <b>The Problem:</b>
+ * Factoring {@code n} on its own means trial division and, for what is left, Miller-Rabin and rho. Across a range
+ * most of that work is repeated: every third number is divided by 3 separately, every fifth by 5, and so on. A sieve
+ * turns that around: each prime visits exactly its own multiples, so a prime {@code p} costs {@code length / p}
+ * divisions for the whole range and never touches a number it does not divide.
+ * </p>
+ * <p>
+ * <b>How it works:</b>
+ * <ul>
+ * <li>Each call needs the primes up to {@code sqrt(to)}. After dividing all of them out of a number, what remains is
+ * 1 or a single prime larger than every one of them, so no primality test is ever needed. They are sieved once and
+ * kept for later calls; a call that needs more grows the kept list (at least doubling its bound, up to the
+ * 665,000-odd primes below {@code sqrt(MAX_TO)}), and it never shrinks.</li>
+ * <li>The range is cut into segments of {@code factor.range.segmentSize} numbers (default 2<sup>15</sup>, whose
+ * 256 KB of cofactors stay in a core's L2 cache while every prime walks over them). Each segment is one task on a
+ * {@link ForkJoinPool} and needs nothing from the others.</li>
+ * <li>A segment records each prime it finds as a (position, prime) pair, in ascending prime order, and finally
+ * groups them by position with a counting sort, which keeps each number's factors ascending.</li>
+ * <li>At most twice the pool's parallelism of segments are submitted ahead of the one being handed out. The caller
+ * joins them in submission order and passes their numbers to the {@link Sink}, so results come out in order and
+ * memory stays the same whether the range holds a thousand numbers or a trillion.</li>
+ * <li>If the sink throws, the segments still in flight are cancelled and the exception propagates.</li>
+ * </ul>
+ * </p>
+ */
+public enum RangeFactoring {
+	;
+
+	/** Largest supported (exclusive) end of a range; its square root bounds the primes sieved for every call. */
+	public static final long MAX_TO = 100_000_000_000_000L;
+
+	private static final int SEGMENT_SIZE = Integer.getInteger("factor.range.segmentSize", 1 << 15);
+	private static final int MAX_BASE_PRIME = isqrt(MAX_TO - 1);
+
+	/** The primes up to some bound, replaced only by a list with a higher one. */
+	private static volatile BasePrimes basePrimes = new BasePrimes(1, new int[0]);
+
+	/** Receives the factorization of each number in the range, in ascending order of number. */
+	@FunctionalInterface
+	public interface Sink {
+		/**
+		 * {@code factors[0..count)} are the prime factors of {@code number}, ascending, with multiplicity. The array is
+		 * reused for the next number and must not be kept.
+		 */
+		void accept(long number, long[] factors, int count) throws IOException;
+	}
+
+	/**
+	 * Factors every number in {@code [from, to)} on {@code pool} and hands the results to {@code sink} in order, on
+	 * the calling thread. Numbers below 2 are reported with no factors.
+	 *
+	 * @throws IllegalArgumentException   unless {@code 0 <= from <= to <= MAX_TO}, or if
+	 *                                    {@code factor.range.segmentSize} is not positive
+	 * @throws DeadlineExceededException  if {@code deadline} expires first; every number before the one that would
+	 *                                    have come next has been reported
+	 */
+	public static void factor(long from, long to, ForkJoinPool pool, Deadline deadline, Sink sink) throws IOException {
+		factor(from, to, SEGMENT_SIZE, pool, deadline, sink);
+	}
+
+	static void factor(long from, long to, int segmentSize, ForkJoinPool pool, Deadline deadline, Sink sink)
+			throws IOException {
+		if (from < 0 || to < from || to > MAX_TO) {
+			throw new IllegalArgumentException("need 0 <= from <= to <= " + MAX_TO + ": [" + from + ", " + to + ")");
+		}
+		if (segmentSize <= 0) {
+			// A segment of no numbers never advances past from, so the loop below would submit them forever.
+			throw new IllegalArgumentException("segment size must be positive: " + segmentSize);
+		}
+		int limit = to < 2 ? 1 : isqrt(to - 1);
+		int[] primes = basePrimes(limit).primes;
+		// Only the primes up to the limit: any beyond it would still visit every segment, and never divide anything.
+		int found = Arrays.binarySearch(primes, limit);
+		int count = found < 0 ? -found - 1 : found + 1;
+		int window = 2 * pool.getParallelism();
+		ArrayDeque<ForkJoinTask<Segment>> pending = new ArrayDeque<>(window);
+		long[] factors = new long[LongFactoring.MAX_FACTORS];
+		long next = from;
+		try {
+			while (next < to || !pending.isEmpty()) {
+				while (next < to && pending.size() < window) {
+					long low = next;
+					long high = Math.min(to, low + segmentSize);
+					pending.add(pool.submit(() -> sieve(low, high, primes, count, deadline)));
+					next = high;
+				}
+				pending.remove().join().emit(sink, factors);
+			}
+		} finally {
+			for (ForkJoinTask<Segment> task : pending) {
+				task.cancel(false);
+			}
+		}
+	}
+
+	/** Divides {@code primes[0..count)} out of {@code [low, high)} and groups the hits by number. */
+	private static Segment sieve(long low, long high, int[] primes, int count, Deadline deadline) {
+		deadline.check();
+		int size = (int) (high - low);
+		long[] rest = new long[size];
+		for (int k = 0; k < size; k++) {
+			rest[k] = low + k;
+		}
+
+		int[] hitAt = new int[4 * size + 16];
+		int[] hitPrime = new int[hitAt.length];
+		int hits = 0;
+		for (int i = 0; i < count; i++) {
+			int p = primes[i];
+			// Starting at p itself (not 0) leaves the numbers 0 and 1 alone.
+			long first = Math.max(p, (low + p - 1) / p * p);
+			for (long multiple = first; multiple < high; multiple += p) {
+				int k = (int) (multiple - low);
+				long r = rest[k];
+				do {
+					if (hits == hitAt.length) {
+						hitAt = Arrays.copyOf(hitAt, 2 * hits);
+						hitPrime = Arrays.copyOf(hitPrime, 2 * hits);
+					}
+					hitAt[hits] = k;
+					hitPrime[hits++] = p;
+					r /= p;
+				} while (r % p == 0);
+				rest[k] = r;
+			}
+		}
+
+		int[] offsets = new int[size + 1];
+		for (int h = 0; h < hits; h++) {
+			offsets[hitAt[h] + 1]++;
+		}
+		for (int k = 0; k < size; k++) {
+			offsets[k + 1] += offsets[k];
+		}
+		int[] sorted = new int[hits];
+		int[] fill = Arrays.copyOf(offsets, size);
+		for (int h = 0; h < hits; h++) {
+			sorted[fill[hitAt[h]]++] = hitPrime[h];
+		}
+		return new Segment(low, offsets, sorted, rest);
+	}
+
+	private static BasePrimes basePrimes(int limit) {
+		BasePrimes known = basePrimes;
+		if (known.limit >= limit) {
+			return known;
+		}
+		synchronized (RangeFactoring.class) {
+			known = basePrimes;
+			if (known.limit < limit) {
+				int grown = (int) Math.min(MAX_BASE_PRIME, Math.max(limit, 2L * known.limit));
+				known = new BasePrimes(grown, primesUpTo(grown));
+				basePrimes = known;
+			}
+			return known;
+		}
+	}
+
+	/** The primes up to and including {@code limit}. */
+	private static int[] primesUpTo(int limit) {
+		BitSet composite = new BitSet(limit + 1);
+		int[] primes = new int[16];
+		int count = 0;
+		for (int i = 2; i <= limit; i = composite.nextClearBit(i + 1)) {
+			if (count == primes.length) {
+				primes = Arrays.copyOf(primes, 2 * count);
+			}
+			primes[count++] = i;
+			for (long j = (long) i * i; j <= limit; j += i) {
+				composite.set((int) j);
+			}
+		}
+		return Arrays.copyOf(primes, count);
+	}
+
+	private static int isqrt(long n) {
+		long r = (long) Math.sqrt((double) n);
+		while (r * r > n) {
+			r--;
+		}
+		while ((r + 1) * (r + 1) <= n) {
+			r++;
+		}
+		return (int) r;
+	}
+
+	private static final class BasePrimes {
+		final int limit;
+		final int[] primes;
+
+		BasePrimes(int limit, int[] primes) {
+			this.limit = limit;
+			this.primes = primes;
+		}
+	}
+
+	private static final class Segment {
+		private final long low;
+		private final int[] offsets;
+		private final int[] primes;
+		private final long[] cofactors;
+
+		Segment(long low, int[] offsets, int[] primes, long[] cofactors) {
+			this.low = low;
+			this.offsets = offsets;
+			this.primes = primes;
+			this.cofactors = cofactors;
+		}
+
+		void emit(Sink sink, long[] factors) throws IOException {
+			for (int k = 0; k < cofactors.length; k++) {
+				int count = 0;
+				for (int h = offsets[k]; h < offsets[k + 1]; h++) {
+					factors[count++] = primes[h];
+				}
+				if (cofactors[k] > 1) {
+					factors[count++] = cofactors[k];
+				}
+				sink.accept(low + k, factors, count);
+			}
+		}
+	}
+}
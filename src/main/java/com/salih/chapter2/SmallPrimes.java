@@ -0,0 +1,39 @@
+package com.salih.chapter2;
+
+/**
+ * The table of primes used for trial division before the heavier algorithms kick in.
+ * <p>
+ * Dividing only by primes (rather than by every candidate, or by a mod-30 wheel) means every
+ * division can actually remove a factor. Anything that survives division by all of them and is below
+ * {@link #LIMIT_SQUARED} must itself be prime.
+ * </p>
+ */
+enum SmallPrimes {
+	;
+
+	static final int LIMIT = 1 << 12;
+	static final long LIMIT_SQUARED = (long) LIMIT * LIMIT;
+	static final int[] PRIMES = sieve(LIMIT);
+
+	private static int[] sieve(int limit) {
+		boolean[] composite = new boolean[limit];
+		int count = 0;
+		for (int i = 2; i < limit; i++) {
+			if (!composite[i]) {
+				count++;
+				for (int j = i * i; j < limit; j += i) {
+					composite[j] = true;
+				}
+			}
+		}
+
+		int[] primes = new int[count];
+		int k = 0;
+		for (int i = 2; i < limit; i++) {
+			if (!composite[i]) {
+				primes[k++] = i;
+			}
+		}
+		return primes;
+	}
+}
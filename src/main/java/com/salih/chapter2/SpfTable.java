@@ -0,0 +1,187 @@
+package com.salih.chapter2;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.IntStream;
+
+/**
+ * A <b>smallest-prime-factor table</b> for every number below a fixed bound, so that factoring such a number is a
+ * handful of table lookups: read the smallest prime factor, divide it out, repeat.
+ * <p>
+ * <b>Layout:</b>
+ * <ul>
+ * <li>Only odd numbers are stored (even ones trivially have 2), one {@code char} each: the smallest prime factor
+ * of a composite below 2<sup>32</sup> is below 2<sup>16</sup>, so it fits. Primes are stored as 0. That is one
+ * byte per number covered: 100 MB for a bound of 10<sup>8</sup>.</li>
+ * <li>The table is split into segments of {@value #SEGMENT_ODDS} odd numbers, each a direct (off-heap)
+ * buffer of 128 KB. Keeping it off-heap means the garbage collector never has to scan or copy it.</li>
+ * </ul>
+ * </p>
+ * <p>
+ * <b>Building it (segmented sieve):</b>
+ * Each segment is sieved independently with the primes up to {@code sqrt(bound)}, so segments are built in
+ * parallel on a {@link ForkJoinPool} without any coordination. Within a segment the primes are applied in ascending
+ * order and a slot is only written while still empty, so the first prime to reach it is the smallest.
+ * </p>
+ * <p>
+ * <b>Lazy mode:</b>
+ * When building everything at startup costs too much (time or memory), {@link #lazy} builds each segment the first
+ * time a number in it is looked up. Two threads may race to build the same segment; both produce identical
+ * contents and the loser's copy is discarded by the {@code compareAndSet}. The {@link AtomicReferenceArray} also
+ * guarantees that whoever sees a segment sees it fully built.
+ * </p>
+ */
+final class SpfTable {
+	/** Largest supported bound: beyond it, a smallest prime factor no longer fits in a {@code char}. */
+	static final long MAX_BOUND = 1L << 32;
+
+	private static final int SEGMENT_SHIFT = 16;
+	private static final int SEGMENT_ODDS = 1 << SEGMENT_SHIFT;
+
+	private final long bound;
+	private final int[] basePrimes;
+	private final AtomicReferenceArray<CharBuffer> segments;
+
+	private SpfTable(long bound) {
+		if (bound < 2 || bound > MAX_BOUND) {
+			throw new IllegalArgumentException("bound must be in [2, 2^32]: " + bound);
+		}
+		this.bound = bound;
+		this.basePrimes = oddPrimesUpTo((int) Math.sqrt((double) bound) + 1);
+		long odds = (bound + 1) / 2;
+		this.segments = new AtomicReferenceArray<>((int) ((odds + SEGMENT_ODDS - 1) >>> SEGMENT_SHIFT));
+	}
+
+	/** Builds the whole table for numbers below {@code bound} on {@code pool}, one task per segment. */
+	static SpfTable eager(long bound, ForkJoinPool pool) {
+		SpfTable table = new SpfTable(bound);
+		pool.submit(() -> IntStream.range(0, table.segments.length()).parallel().forEach(table::segment)).join();
+		return table;
+	}
+
+	/** A table for numbers below {@code bound} whose segments are built on first use. */
+	static SpfTable lazy(long bound) {
+		return new SpfTable(bound);
+	}
+
+	/**
+	 * The table configured by {@code factor.spf.bound}, or {@code null} if that is unset or 0. With
+	 * {@code factor.spf.lazy=true} it fills in on demand; otherwise it is built in full, on the common pool, the
+	 * first time this is called.
+	 */
+	static SpfTable shared() {
+		return SharedHolder.INSTANCE;
+	}
+
+	long bound() {
+		return bound;
+	}
+
+	/**
+	 * Writes the prime factors of {@code n} (ascending, with multiplicity) into {@code out} and returns how many.
+	 * {@code n} must be below {@link #bound()}.
+	 */
+	int factor(long n, long[] out) {
+		int count = 0;
+		int twos = Long.numberOfTrailingZeros(n);
+		for (int k = 0; k < twos; k++) {
+			out[count++] = 2;
+		}
+		n >>>= twos;
+		while (n > 1) {
+			long p = smallestOddPrimeFactor(n);
+			out[count++] = p;
+			n /= p;
+		}
+		return count;
+	}
+
+	/** Returns the smallest prime factor of an odd {@code n} in {@code [3, bound)}. */
+	long smallestOddPrimeFactor(long n) {
+		long index = n >>> 1;
+		char p = segment((int) (index >>> SEGMENT_SHIFT)).get((int) (index & (SEGMENT_ODDS - 1)));
+		return p == 0 ? n : p;
+	}
+
+	/** Off-heap bytes currently held by built segments. */
+	long footprintBytes() {
+		return (long) builtSegments() * SEGMENT_ODDS * Character.BYTES;
+	}
+
+	int builtSegments() {
+		int built = 0;
+		for (int s = 0; s < segments.length(); s++) {
+			if (segments.get(s) != null) {
+				built++;
+			}
+		}
+		return built;
+	}
+
+	int segmentCount() {
+		return segments.length();
+	}
+
+	private CharBuffer segment(int s) {
+		CharBuffer segment = segments.get(s);
+		if (segment == null) {
+			segment = sieve(s);
+			if (!segments.compareAndSet(s, null, segment)) {
+				segment = segments.get(s);
+			}
+		}
+		return segment;
+	}
+
+	/** Sieves the odd numbers {@code 2i + 1} for {@code i} in segment {@code s}. */
+	private CharBuffer sieve(int s) {
+		CharBuffer slots = ByteBuffer.allocateDirect(SEGMENT_ODDS * Character.BYTES).asCharBuffer();
+		long low = 2L * ((long) s << SEGMENT_SHIFT) + 1;
+		long high = low + 2L * SEGMENT_ODDS;
+		for (int p : basePrimes) {
+			long square = (long) p * p;
+			if (square >= high) {
+				break;
+			}
+			long multiple = Math.max(square, (low + p - 1) / p * p);
+			if ((multiple & 1) == 0) {
+				multiple += p;
+			}
+			for (; multiple < high; multiple += 2L * p) {
+				int slot = (int) ((multiple - low) >>> 1);
+				if (slots.get(slot) == 0) {
+					slots.put(slot, (char) p);
+				}
+			}
+		}
+		return slots;
+	}
+
+	private static int[] oddPrimesUpTo(int limit) {
+		boolean[] composite = new boolean[limit + 1];
+		IntStream.Builder primes = IntStream.builder();
+		for (int i = 3; i <= limit; i += 2) {
+			if (!composite[i]) {
+				primes.add(i);
+				for (long j = (long) i * i; j <= limit; j += 2L * i) {
+					composite[(int) j] = true;
+				}
+			}
+		}
+		return primes.build().toArray();
+	}
+
+	private static final class SharedHolder {
+		static final SpfTable INSTANCE = create(Long.getLong("factor.spf.bound", 0));
+
+		private static SpfTable create(long bound) {
+			if (bound <= 0) {
+				return null;
+			}
+			bound = Math.min(bound, MAX_BOUND);
+			return Boolean.getBoolean("factor.spf.lazy") ? lazy(bound) : eager(bound, ForkJoinPool.commonPool());
+		}
+	}
+}
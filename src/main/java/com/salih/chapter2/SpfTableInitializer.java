@@ -0,0 +1,28 @@
+package com.salih.chapter2;
+
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.servlet.annotation.WebListener;
+
+/**
+ * Builds the {@link SpfTable} (if {@code factor.spf.bound} is set) while the application starts, so the first
+ * request does not pay for it.
+ */
+@WebListener
+public class SpfTableInitializer implements ServletContextListener {
+
+	@Override
+	public void contextInitialized(ServletContextEvent event) {
+		long start = System.nanoTime();
+		SpfTable table = SpfTable.shared();
+		if (table != null) {
+			event.getServletContext().log(String.format("SPF table below %d: %d of %d segments, %d MB, %d ms",
+					table.bound(), table.builtSegments(), table.segmentCount(), table.footprintBytes() >> 20,
+					(System.nanoTime() - start) / 1_000_000));
+		}
+	}
+
+	@Override
+	public void contextDestroyed(ServletContextEvent event) {
+	}
+}
@@ -0,0 +1,57 @@
+package com.salih.chapter2.async;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Builds the dedicated, <b>bounded</b> pools that run factorizations for the asynchronous servlets, one per
+ * {@link Lane}.
+ * <p>
+ * <b>Why a separate pool?</b>
+ * The container's request threads should only parse requests and write responses. If they also do the heavy
+ * computation, a handful of slow numbers can occupy all of them and even trivial requests stop being accepted.
+ * Moving the work here keeps the two concerns apart: connection handling stays responsive, and compute load is capped.
+ * </p>
+ * <p>
+ * <b>Configuration (system properties):</b>
+ * <ul>
+ * <li>{@code factor.async.threads}: worker threads, defaults to the number of cores (the work is CPU-bound).</li>
+ * <li>{@code factor.async.queueCapacity}: waiting tasks before new ones are rejected, defaults to 1000.</li>
+ * </ul>
+ * These were the sizes of the single pool that preceded the lanes, and are now the defaults the lanes derive theirs
+ * from; the per-lane properties override them. A full queue throws
+ * {@link java.util.concurrent.RejectedExecutionException} instead of growing without limit.
+ * </p>
+ */
+public enum ComputeExecutor {
+	;
+
+	/** {@code factor.async.threads}, or the number of cores. */
+	public static int defaultThreads() {
+		return Integer.getInteger("factor.async.threads", Runtime.getRuntime().availableProcessors());
+	}
+
+	/** {@code factor.async.queueCapacity}, or 1000. */
+	public static int defaultQueueCapacity() {
+		return Integer.getInteger("factor.async.queueCapacity", 1000);
+	}
+
+	public static ThreadPoolExecutor newBounded(String name, int threads, int queueCapacity) {
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<>(queueCapacity), daemonThreads(name), new ThreadPoolExecutor.AbortPolicy());
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	private static ThreadFactory daemonThreads(String name) {
+		AtomicInteger sequence = new AtomicInteger();
+		return runnable -> {
+			Thread thread = new Thread(runnable, name + "-" + sequence.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+}
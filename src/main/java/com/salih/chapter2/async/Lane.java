@@ -0,0 +1,96 @@
+package com.salih.chapter2.async;
+
+import java.math.BigInteger;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.salih.chapter2.metrics.LatencyHistogram;
+import com.salih.chapter2.metrics.Metrics;
+
+/**
+ * Separate compute pools for cheap and expensive numbers, so a request for '2' never waits behind a 100-bit
+ * semiprime.
+ * <p>
+ * <b>The Problem:</b>
+ * With a single pool, a burst of expensive numbers fills every worker and the queue behind them. A trivial request
+ * that arrives next waits for all of them, so the small-number p99 latency becomes the big-number latency.
+ * </p>
+ * <p>
+ * <b>How it works:</b>
+ * <ul>
+ * <li>The cost of a request is estimated from the bit length of its number: up to {@code factor.lane.fastMaxBits}
+ * (default 64, the allocation-free engine) it goes to the {@link #FAST} lane, anything larger to {@link #SLOW}.</li>
+ * <li>Each lane is its own bounded pool with its own thread limit and queue, so saturating the slow lane
+ * (which gets half the cores by default) rejects slow work but leaves the fast lane untouched.</li>
+ * <li>Per lane, {@code /metrics} exposes the queue depth, busy workers, rejections and the time each task spent
+ * waiting in the queue.</li>
+ * </ul>
+ * </p>
+ * <p>
+ * <b>Configuration (system properties):</b> {@code factor.lane.fast.threads} and
+ * {@code factor.lane.fast.queueCapacity} default to {@code factor.async.threads} (cores) and
+ * {@code factor.async.queueCapacity} (1000), the sizes of the single pool the lanes replaced;
+ * {@code factor.lane.slow.threads} and {@code factor.lane.slow.queueCapacity} default to half and a tenth of those
+ * (at least one each).
+ * </p>
+ */
+public enum Lane {
+	FAST(ComputeExecutor.defaultThreads(), ComputeExecutor.defaultQueueCapacity()),
+	SLOW(Math.max(1, ComputeExecutor.defaultThreads() / 2), Math.max(1, ComputeExecutor.defaultQueueCapacity() / 10));
+
+	private static final int FAST_MAX_BITS = Integer.getInteger("factor.lane.fastMaxBits", Long.SIZE);
+
+	private final ThreadPoolExecutor pool;
+	private final LatencyHistogram waits;
+	private final LongAdder rejected;
+	private final Executor executor = this::execute;
+
+	Lane(int defaultThreads, int defaultQueueCapacity) {
+		String name = name().toLowerCase();
+		this.pool = ComputeExecutor.newBounded("factor-" + name,
+				Integer.getInteger("factor.lane." + name + ".threads", defaultThreads),
+				Integer.getInteger("factor.lane." + name + ".queueCapacity", defaultQueueCapacity));
+
+		String labels = "lane=\"" + name + "\"";
+		this.waits = Metrics.histogram("factor_lane_wait_seconds", labels);
+		this.rejected = Metrics.counter("factor_lane_rejected_total", labels);
+		Metrics.gauge("factor_lane_queue_depth", labels, () -> pool.getQueue().size());
+		Metrics.gauge("factor_lane_active", labels, pool::getActiveCount);
+	}
+
+	/** The lane for factoring {@code number}. */
+	public static Lane of(BigInteger number) {
+		return number.bitLength() <= FAST_MAX_BITS ? FAST : SLOW;
+	}
+
+	/**
+	 * Runs tasks on this lane's pool, recording how long each one waited to start.
+	 * {@link RejectedExecutionException} is thrown (and counted) when the lane's queue is full.
+	 */
+	public Executor executor() {
+		return executor;
+	}
+
+	public int queueDepth() {
+		return pool.getQueue().size();
+	}
+
+	public LatencyHistogram waitTimes() {
+		return waits;
+	}
+
+	private void execute(Runnable task) {
+		long queuedAt = System.nanoTime();
+		try {
+			pool.execute(() -> {
+				waits.recordSince(queuedAt);
+				task.run();
+			});
+		} catch (RejectedExecutionException e) {
+			rejected.increment();
+			throw e;
+		}
+	}
+}
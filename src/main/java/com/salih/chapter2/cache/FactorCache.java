@@ -0,0 +1,261 @@
+package com.salih.chapter2.cache;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import com.salih.chapter2.Deadline;
+import com.salih.chapter2.DeadlineExceededException;
+import com.salih.chapter2.encoding.FactorResult;
+import com.salih.chapter2.metrics.Metrics;
+import com.salih.chapter2.metrics.Stage;
+import com.salih.chapter2.store.FactorStore;
+
+/**
+ * A <b>Bounded, Concurrent</b> cache of factorization results keyed by the requested number.
+ * <p>
+ * <b>Why not {@code lastNumber}/{@code lastFactors}?</b>
+ * The chapter 2 factorizers remember a single entry, so as soon as two clients ask for different
+ * numbers every request becomes a miss. This cache remembers up to {@code maximumSize} entries.
+ * </p>
+ * <p>
+ * <b>How it works:</b>
+ * <ul>
+ * <li>By default, storage is a Caffeine cache, which uses <b>W-TinyLFU</b>: new entries land in a small LRU window and
+ * only get admitted to the main region if their (approximate) access frequency beats the eviction victim.
+ * One-hit wonders therefore cannot flush the hot set.</li>
+ * <li>Reads are lock-free. Access bookkeeping is recorded into striped buffers and replayed later, so
+ * no global lock is taken on the hit path.</li>
+ * <li>Hit, miss and eviction counters are {@link java.util.concurrent.atomic.LongAdder}-backed, replacing
+ * the {@code hits}/{@code cacheHits} fields that needed {@code synchronized(this)}.</li>
+ * <li>Concurrent misses for the same number are coalesced by a {@link SingleFlight}: one thread computes,
+ * the others wait for its result.</li>
+ * <li>{@link #offHeap} keeps the entries outside the Java heap instead ({@link OffHeapStorage}), bounded by bytes
+ * rather than entries, for caches large enough that their object graph would slow the garbage collector.</li>
+ * <li>An optional {@link FactorStore} sits behind the miss path: a miss is first looked up on disk, and only then
+ * computed (and queued for persisting). After a restart, the hot set comes back from the store instead of being
+ * recomputed.</li>
+ * <li>Values are {@link FactorResult}s, which carry the encoded response body as well as the factors, so a hit
+ * never re-encodes anything.</li>
+ * </ul>
+ * </p>
+ * <p>
+ * The returned results are shared between all callers and must be treated as read-only.
+ * </p>
+ */
+public final class FactorCache {
+	public static final long DEFAULT_MAXIMUM_SIZE = 10_000;
+
+	public static final long DEFAULT_OFF_HEAP_BYTES = 256L << 20;
+
+	private final FactorStorage cache;
+	private final SingleFlight<BigInteger, FactorResult> loads = new SingleFlight<>();
+	private final FactorStore store;
+	private final LongAdder storeHits = new LongAdder();
+	private volatile boolean persisting = true;
+
+	public FactorCache(long maximumSize) {
+		this(maximumSize, null);
+	}
+
+	/** @param store where misses are looked up and computed results persisted; may be {@code null} */
+	public FactorCache(long maximumSize, FactorStore store) {
+		this(new HeapStorage(maximumSize), store);
+	}
+
+	private FactorCache(FactorStorage cache, FactorStore store) {
+		this.cache = cache;
+		this.store = store;
+	}
+
+	/**
+	 * A cache whose entries live in about {@code maximumBytes} of off-heap memory.
+	 *
+	 * @param store where misses are looked up and computed results persisted; may be {@code null}
+	 */
+	public static FactorCache offHeap(long maximumBytes, FactorStore store) {
+		return new FactorCache(new OffHeapStorage(maximumBytes), store);
+	}
+
+	/**
+	 * Returns the cache shared by the factorizer servlets. The bound is read once from the
+	 * {@code factor.cache.maximumSize} system property, or, with {@code factor.cache.storage=offheap}, from
+	 * {@code factor.cache.offHeapBytes}. If {@code factor.store.path} is set, the cache is backed by a
+	 * {@link FactorStore} at that path.
+	 */
+	public static FactorCache shared() {
+		return SharedHolder.INSTANCE;
+	}
+
+	/**
+	 * Returns the cached result for {@code number}, computing it with {@code loader} on a miss. The loader runs once
+	 * per number no matter how many threads miss at the same time, and its factors are encoded before they are
+	 * published, on the loading thread rather than on later hits.
+	 * <p>
+	 * A load that fails leaves nothing behind, in the cache or in the store. If it failed with
+	 * {@link DeadlineExceededException}, only the caller whose loader it was sees that: the leader's budget is not
+	 * anybody else's, so the callers waiting on it start over with their own loaders.
+	 * </p>
+	 */
+	public FactorResult get(BigInteger number, Function<BigInteger, BigInteger[]> loader) {
+		return get(number, loader, Deadline.NONE);
+	}
+
+	/**
+	 * Like {@link #get(BigInteger, Function)}, but waiting for another caller's load of the same number ends when
+	 * {@code deadline} expires, even if that load has no deadline of its own.
+	 *
+	 * @throws DeadlineExceededException if {@code deadline} expired while waiting, or {@code loader} threw it
+	 */
+	public FactorResult get(BigInteger number, Function<BigInteger, BigInteger[]> loader, Deadline deadline) {
+		long start = System.nanoTime();
+		FactorResult cached = cache.getIfPresent(number);
+		Stage.CACHE_LOOKUP.recordSince(start);
+		if (cached != null) {
+			return cached;
+		}
+		boolean[] led = new boolean[1];
+		for (;;) {
+			try {
+				return loads.execute(number, n -> {
+					led[0] = true;
+					return load(n, loader);
+				}, deadline);
+			} catch (DeadlineExceededException e) {
+				// Ours if we led, or if our own time ran out while waiting; otherwise the leader's, so try again.
+				if (led[0] || deadline.isExpired()) {
+					throw e;
+				}
+			}
+		}
+	}
+
+	private FactorResult load(BigInteger n, Function<BigInteger, BigInteger[]> loader) {
+		// A previous leader may have stored it between our miss and our turn; this re-check records no stats.
+		FactorResult stored = cache.peek(n);
+		if (stored != null) {
+			return stored;
+		}
+		BigInteger[] factors = store == null ? null : store.get(n);
+		if (factors != null) {
+			storeHits.increment();
+		} else {
+			factors = loader.apply(n);
+			if (store != null && persisting) {
+				store.append(n, factors);
+			}
+		}
+		FactorResult result = new FactorResult(n, factors);
+		cache.put(n, result);
+		return result;
+	}
+
+	public FactorResult getIfPresent(BigInteger number) {
+		return cache.getIfPresent(number);
+	}
+
+	public void put(BigInteger number, BigInteger[] factors) {
+		cache.put(number, new FactorResult(number, factors));
+	}
+
+	public long hitCount() {
+		return cache.hitCount();
+	}
+
+	public long missCount() {
+		return cache.missCount();
+	}
+
+	public long evictionCount() {
+		return cache.evictionCount();
+	}
+
+	/** Misses that waited for another thread's in-flight computation instead of starting their own. */
+	public long coalescedCount() {
+		return loads.coalescedCount();
+	}
+
+	/** Misses that were answered from the {@link FactorStore} instead of being recomputed. */
+	public long storeHitCount() {
+		return storeHits.sum();
+	}
+
+	public long estimatedSize() {
+		return cache.estimatedSize();
+	}
+
+	/**
+	 * Turns writing newly computed results to the {@link FactorStore} off or on; the cache itself and store lookups
+	 * are unaffected. The warm-up runs with it off, so that its synthetic numbers never outlive the process.
+	 */
+	public void setPersisting(boolean persisting) {
+		this.persisting = persisting;
+	}
+
+	/** Drops every cached entry; the {@link FactorStore}, if any, keeps its records. */
+	public void invalidateAll() {
+		cache.invalidateAll();
+	}
+
+	/**
+	 * Runs pending maintenance (evictions, buffer drains) on the calling thread. Eviction is otherwise
+	 * performed asynchronously, so tests call this before asserting on the size.
+	 */
+	public void cleanUp() {
+		cache.cleanUp();
+	}
+
+	/** Publishes this cache's statistics as gauges, read only when {@code /metrics} is scraped. */
+	public void registerMetrics(String name) {
+		String labels = "cache=\"" + name + "\"";
+		Metrics.gauge("factor_cache_hits_total", labels, this::hitCount);
+		Metrics.gauge("factor_cache_misses_total", labels, this::missCount);
+		Metrics.gauge("factor_cache_evictions_total", labels, this::evictionCount);
+		Metrics.gauge("factor_cache_coalesced_total", labels, this::coalescedCount);
+		Metrics.gauge("factor_cache_size", labels, this::estimatedSize);
+		Metrics.gauge("factor_cache_store_hits_total", labels, this::storeHitCount);
+	}
+
+	/**
+	 * Lazy Initialization Holder Class: the JVM guarantees the shared cache is built exactly once, on first use,
+	 * without any locking on the read path.
+	 */
+	private static final class SharedHolder {
+		static final FactorCache INSTANCE = create(openStore());
+
+		static {
+			INSTANCE.registerMetrics("shared");
+		}
+
+		private static FactorCache create(FactorStore store) {
+			if ("offheap".equalsIgnoreCase(System.getProperty("factor.cache.storage"))) {
+				return offHeap(Long.getLong("factor.cache.offHeapBytes", DEFAULT_OFF_HEAP_BYTES), store);
+			}
+			return new FactorCache(Long.getLong("factor.cache.maximumSize", DEFAULT_MAXIMUM_SIZE), store);
+		}
+
+		private static FactorStore openStore() {
+			String path = System.getProperty("factor.store.path");
+			if (path == null || path.isEmpty()) {
+				return null;
+			}
+			try {
+				FactorStore store = FactorStore.open(Paths.get(path), Integer.getInteger("factor.store.queueCapacity", 10_000));
+				store.registerMetrics("shared");
+				Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+					try {
+						store.close();
+					} catch (IOException ignored) {
+						// Whatever was forced before this point survives; the rest is recomputed next time.
+					}
+				}, "factor-store-close"));
+				return store;
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+}
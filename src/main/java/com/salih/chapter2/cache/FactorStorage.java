@@ -0,0 +1,34 @@
+package com.salih.chapter2.cache;
+
+import java.math.BigInteger;
+
+import com.salih.chapter2.encoding.FactorResult;
+
+/**
+ * Where a {@link FactorCache} keeps its entries. The cache itself only adds miss coalescing and the
+ * {@link com.salih.chapter2.store.FactorStore} fallback on top.
+ */
+interface FactorStorage {
+
+	/** Looks {@code number} up, counting a hit or a miss. */
+	FactorResult getIfPresent(BigInteger number);
+
+	/** Looks {@code number} up without touching the statistics. */
+	FactorResult peek(BigInteger number);
+
+	void put(BigInteger number, FactorResult result);
+
+	long hitCount();
+
+	long missCount();
+
+	long evictionCount();
+
+	long estimatedSize();
+
+	/** Runs any pending maintenance on the calling thread. */
+	void cleanUp();
+
+	/** Drops every entry. Not counted as evictions. */
+	void invalidateAll();
+}
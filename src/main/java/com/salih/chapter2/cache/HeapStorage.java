@@ -0,0 +1,67 @@
+package com.salih.chapter2.cache;
+
+import java.math.BigInteger;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.salih.chapter2.encoding.FactorResult;
+
+/** On-heap storage bounded by entry count, evicting with Caffeine's W-TinyLFU policy. */
+final class HeapStorage implements FactorStorage {
+	private final Cache<BigInteger, FactorResult> cache;
+
+	HeapStorage(long maximumSize) {
+		if (maximumSize < 0) {
+			throw new IllegalArgumentException("maximumSize must not be negative: " + maximumSize);
+		}
+		this.cache = Caffeine.newBuilder()
+				.maximumSize(maximumSize)
+				.recordStats()
+				.build();
+	}
+
+	@Override
+	public FactorResult getIfPresent(BigInteger number) {
+		return cache.getIfPresent(number);
+	}
+
+	@Override
+	public FactorResult peek(BigInteger number) {
+		return cache.asMap().get(number);
+	}
+
+	@Override
+	public void put(BigInteger number, FactorResult result) {
+		cache.put(number, result);
+	}
+
+	@Override
+	public long hitCount() {
+		return cache.stats().hitCount();
+	}
+
+	@Override
+	public long missCount() {
+		return cache.stats().missCount();
+	}
+
+	@Override
+	public long evictionCount() {
+		return cache.stats().evictionCount();
+	}
+
+	@Override
+	public long estimatedSize() {
+		return cache.estimatedSize();
+	}
+
+	@Override
+	public void cleanUp() {
+		cache.cleanUp();
+	}
+
+	@Override
+	public void invalidateAll() {
+		cache.invalidateAll();
+	}
+}
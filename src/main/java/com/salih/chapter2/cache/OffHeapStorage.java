@@ -0,0 +1,346 @@
+package com.salih.chapter2.cache;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+
+import com.salih.chapter2.encoding.FactorResult;
+import com.salih.chapter2.encoding.Format;
+
+/**
+ * Storage that keeps every entry in <b>off-heap</b> memory, so the Java heap holds a fixed number of objects no
+ * matter how many factorizations are cached.
+ * <p>
+ * <b>The Problem:</b>
+ * Each on-heap entry is a {@link FactorResult}, an array, a handful of {@link BigInteger}s and their {@code int[]}
+ * magnitudes. Millions of entries mean tens of millions of small long-lived objects that every full or old-generation
+ * collection has to trace.
+ * </p>
+ * <p>
+ * <b>How it works:</b>
+ * <ul>
+ * <li>Entries are split over {@value #STRIPES} independent <b>stripes</b> by key hash. Each stripe has its own
+ * {@link StampedLock}, so writers only contend when they hit the same stripe.</li>
+ * <li>Within a stripe, records (key, factors and the encoded text body) are appended to fixed-size direct
+ * buffers called <b>slabs</b>. An <b>open-addressing</b> index, itself a direct {@link LongBuffer}, maps the key's
+ * hash to a slab and offset using linear probing.</li>
+ * <li>Slabs are filled in ring order. When the ring wraps around, the slab about to be reused is the oldest one:
+ * its entries are removed from the index (backward-shift deletion, no tombstones) and the whole slab is
+ * recycled at once. Eviction is therefore FIFO by slab rather than by frequency, in exchange for no
+ * per-entry bookkeeping at all.</li>
+ * <li>Reads first try an <b>optimistic read</b>: probe and copy the record out without locking, then check that no
+ * writer got in between. If one did, or if the copy fell over half-written bytes, the read is retried under the
+ * read lock.</li>
+ * <li>A hit copies the record to the heap and decodes it. Those objects are short-lived and die young.</li>
+ * </ul>
+ * </p>
+ */
+final class OffHeapStorage implements FactorStorage {
+	private static final int STRIPES = 16;
+	private static final int MIN_SLAB_BYTES = 1 << 12;
+	private static final int OFFSET_BITS = 20;
+	private static final int OFFSET_MASK = (1 << OFFSET_BITS) - 1;
+	private static final int MAX_SLAB_BYTES = 1 << OFFSET_BITS;
+	private static final int MAX_SLABS = (1 << (Integer.SIZE - OFFSET_BITS)) - 1;
+	private static final int AVERAGE_RECORD_BYTES = 48;
+	private static final int HEADER = 3 * Integer.BYTES;
+
+	private final Stripe[] stripes = new Stripe[STRIPES];
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	OffHeapStorage(long maximumBytes) {
+		long perStripe = Math.max(2L * MIN_SLAB_BYTES, maximumBytes / STRIPES);
+		int slabBytes = (int) Math.max(MIN_SLAB_BYTES, Math.min(MAX_SLAB_BYTES, Long.highestOneBit(perStripe / 4)));
+		int slabs = (int) Math.max(2, Math.min(MAX_SLABS, perStripe / slabBytes));
+		for (int s = 0; s < STRIPES; s++) {
+			stripes[s] = new Stripe(slabs, slabBytes);
+		}
+	}
+
+	@Override
+	public FactorResult getIfPresent(BigInteger number) {
+		FactorResult result = peek(number);
+		(result == null ? misses : hits).increment();
+		return result;
+	}
+
+	@Override
+	public FactorResult peek(BigInteger number) {
+		byte[] key = number.toByteArray();
+		int hash = hash(number);
+		byte[] record = stripeFor(hash).get(key, hash);
+		return record == null ? null : decode(number, record, key.length);
+	}
+
+	@Override
+	public void put(BigInteger number, FactorResult result) {
+		byte[] key = number.toByteArray();
+		int hash = hash(number);
+		stripeFor(hash).put(key, hash, encode(hash, key, result));
+	}
+
+	@Override
+	public long hitCount() {
+		return hits.sum();
+	}
+
+	@Override
+	public long missCount() {
+		return misses.sum();
+	}
+
+	@Override
+	public long evictionCount() {
+		return evictions.sum();
+	}
+
+	@Override
+	public long estimatedSize() {
+		long size = 0;
+		for (Stripe stripe : stripes) {
+			size += stripe.size;
+		}
+		return size;
+	}
+
+	@Override
+	public void cleanUp() {
+		// Eviction happens synchronously inside put; there is nothing deferred.
+	}
+
+	@Override
+	public void invalidateAll() {
+		for (Stripe stripe : stripes) {
+			stripe.clear();
+		}
+	}
+
+	private Stripe stripeFor(int hash) {
+		return stripes[hash >>> (Integer.SIZE - Integer.numberOfTrailingZeros(STRIPES))];
+	}
+
+	private static int hash(BigInteger number) {
+		return number.hashCode() * 0x9E3779B9;
+	}
+
+	/** {@code [length][hash][keyLength][key][count]([length][factor])*[textLength][text]} */
+	private static byte[] encode(int hash, byte[] key, FactorResult result) {
+		BigInteger[] factors = result.factors();
+		byte[][] values = new byte[factors.length][];
+		byte[] text = result.body(Format.TEXT);
+		int length = HEADER + key.length + Integer.BYTES + Integer.BYTES + text.length;
+		for (int k = 0; k < factors.length; k++) {
+			values[k] = factors[k].toByteArray();
+			length += Integer.BYTES + values[k].length;
+		}
+		ByteBuffer record = ByteBuffer.allocate(length);
+		record.putInt(length).putInt(hash).putInt(key.length).put(key).putInt(values.length);
+		for (byte[] value : values) {
+			record.putInt(value.length).put(value);
+		}
+		record.putInt(text.length).put(text);
+		return record.array();
+	}
+
+	private static FactorResult decode(BigInteger number, byte[] bytes, int keyLength) {
+		ByteBuffer record = ByteBuffer.wrap(bytes);
+		record.position(HEADER + keyLength);
+		BigInteger[] factors = new BigInteger[record.getInt()];
+		for (int k = 0; k < factors.length; k++) {
+			byte[] value = new byte[record.getInt()];
+			record.get(value);
+			factors[k] = new BigInteger(value);
+		}
+		byte[] text = new byte[record.getInt()];
+		record.get(text);
+		return new FactorResult(number, factors, text);
+	}
+
+	private final class Stripe {
+		private final StampedLock lock = new StampedLock();
+		private final LongBuffer index;
+		private final int mask;
+		private final int maxEntries;
+		private final ByteBuffer[] slabs;
+		private final int[] fill;
+		private final int slabBytes;
+		private int current;
+		volatile int size;
+
+		Stripe(int slabCount, int slabBytes) {
+			this.slabs = new ByteBuffer[slabCount];
+			this.fill = new int[slabCount];
+			this.slabBytes = slabBytes;
+			long wanted = (long) slabCount * slabBytes / AVERAGE_RECORD_BYTES * 4 / 3;
+			int capacity = Integer.highestOneBit((int) Math.min(1 << 28, Math.max(16, wanted - 1))) << 1;
+			this.index = ByteBuffer.allocateDirect(capacity * Long.BYTES).asLongBuffer();
+			this.mask = capacity - 1;
+			this.maxEntries = capacity / 4 * 3;
+		}
+
+		byte[] get(byte[] key, int hash) {
+			long stamp = lock.tryOptimisticRead();
+			if (stamp != 0) {
+				try {
+					byte[] record = find(key, hash);
+					if (lock.validate(stamp)) {
+						return record;
+					}
+				} catch (RuntimeException torn) {
+					// A writer moved things while we were reading; the locked retry below sees a consistent state.
+				}
+			}
+			stamp = lock.readLock();
+			try {
+				return find(key, hash);
+			} finally {
+				lock.unlockRead(stamp);
+			}
+		}
+
+		void put(byte[] key, int hash, byte[] record) {
+			if (record.length > slabBytes) {
+				return;
+			}
+			long stamp = lock.writeLock();
+			try {
+				if (find(key, hash) != null) {
+					return;
+				}
+				while (size >= maxEntries) {
+					evictOldest();
+				}
+				if (fill[current] + record.length > slabBytes) {
+					current = (current + 1) % slabs.length;
+					evict(current);
+				}
+				if (slabs[current] == null) {
+					slabs[current] = ByteBuffer.allocateDirect(slabBytes);
+				}
+				int offset = fill[current];
+				slabs[current].put(offset, record);
+				fill[current] = offset + record.length;
+				insert(((long) hash << Integer.SIZE) | location(current, offset));
+				size++;
+			} finally {
+				lock.unlockWrite(stamp);
+			}
+		}
+
+		/** Empties the index and rewinds the slab ring; the slabs themselves are kept for reuse. */
+		void clear() {
+			long stamp = lock.writeLock();
+			try {
+				for (int i = 0; i <= mask; i++) {
+					index.put(i, 0);
+				}
+				Arrays.fill(fill, 0);
+				current = 0;
+				size = 0;
+			} finally {
+				lock.unlockWrite(stamp);
+			}
+		}
+
+		/** Probes for {@code key}; may throw if racing a writer outside the lock. */
+		private byte[] find(byte[] key, int hash) {
+			for (int probe = 0, i = hash & mask; probe <= mask; probe++, i = (i + 1) & mask) {
+				long slot = index.get(i);
+				if (slot == 0) {
+					return null;
+				}
+				if ((int) (slot >>> Integer.SIZE) != hash) {
+					continue;
+				}
+				int location = (int) slot;
+				ByteBuffer slab = slabs[(location >>> OFFSET_BITS) - 1];
+				int offset = location & OFFSET_MASK;
+				if (keyMatches(slab, offset, key)) {
+					int length = slab.getInt(offset);
+					if (length < HEADER || length > slabBytes - offset) {
+						throw new IllegalStateException("torn record");
+					}
+					byte[] record = new byte[length];
+					slab.get(offset, record);
+					return record;
+				}
+			}
+			return null;
+		}
+
+		private boolean keyMatches(ByteBuffer slab, int offset, byte[] key) {
+			if (slab.getInt(offset + 2 * Integer.BYTES) != key.length) {
+				return false;
+			}
+			int start = offset + HEADER;
+			for (int k = 0; k < key.length; k++) {
+				if (slab.get(start + k) != key[k]) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private void insert(long entry) {
+			int i = (int) (entry >>> Integer.SIZE) & mask;
+			while (index.get(i) != 0) {
+				i = (i + 1) & mask;
+			}
+			index.put(i, entry);
+		}
+
+		/** Frees the oldest slab that holds anything; the ring is filled in order, so that is the next one after current. */
+		private void evictOldest() {
+			for (int step = 1; step <= slabs.length; step++) {
+				int s = (current + step) % slabs.length;
+				if (fill[s] > 0) {
+					evict(s);
+					return;
+				}
+			}
+		}
+
+		private void evict(int s) {
+			ByteBuffer slab = slabs[s];
+			int position = 0;
+			while (position < fill[s]) {
+				int length = slab.getInt(position);
+				int hash = slab.getInt(position + Integer.BYTES);
+				remove(((long) hash << Integer.SIZE) | location(s, position));
+				position += length;
+				size--;
+				evictions.increment();
+			}
+			fill[s] = 0;
+		}
+
+		/** Removes {@code entry} and shifts later members of its probe run back, so lookups never need tombstones. */
+		private void remove(long entry) {
+			int hole = (int) (entry >>> Integer.SIZE) & mask;
+			while (index.get(hole) != entry) {
+				hole = (hole + 1) & mask;
+			}
+			for (int j = (hole + 1) & mask;; j = (j + 1) & mask) {
+				long slot = index.get(j);
+				if (slot == 0) {
+					break;
+				}
+				int home = (int) (slot >>> Integer.SIZE) & mask;
+				if (((j - home) & mask) >= ((j - hole) & mask)) {
+					index.put(hole, slot);
+					hole = j;
+				}
+			}
+			index.put(hole, 0);
+		}
+	}
+
+	private static long location(int slab, int offset) {
+		return ((long) (slab + 1) << OFFSET_BITS) | offset;
+	}
+}
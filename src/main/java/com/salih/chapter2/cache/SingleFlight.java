@@ -0,0 +1,119 @@
+package com.salih.chapter2.cache;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import com.salih.chapter2.Deadline;
+import com.salih.chapter2.DeadlineExceededException;
+
+/**
+ * Coalesces concurrent computations of the same key into one.
+ * <p>
+ * <b>The Problem:</b>
+ * A cache only helps once a result is <i>in</i> it. If 100 threads miss on the same number at the same moment,
+ * a plain "check, compute, store" lets all 100 compute it.
+ * </p>
+ * <p>
+ * <b>How it works:</b>
+ * <ul>
+ * <li>The first thread to miss (the <b>leader</b>) installs a {@link CompletableFuture} for the key with
+ * {@code putIfAbsent}, which is atomic, so exactly one thread wins.</li>
+ * <li>Every other thread that arrives while the computation is running finds that future and waits on it, for no
+ * longer than its own {@link Deadline}: the leader may have a much larger budget, or none at all.</li>
+ * <li>When the leader finishes, it removes the future and then completes it (with the value or the failure), so the
+ * next miss, or a waiter retrying after a failure, starts a fresh computation. Failures are therefore never
+ * cached.</li>
+ * </ul>
+ * </p>
+ * <p>
+ * Unlike {@code ConcurrentHashMap.computeIfAbsent}, no map lock is held while the value is computed, so slow
+ * computations for one key never block unrelated keys that happen to share a bin.
+ * </p>
+ */
+public final class SingleFlight<K, V> {
+	private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+	private final LongAdder executions = new LongAdder();
+	private final LongAdder coalesced = new LongAdder();
+
+	/**
+	 * Returns {@code loader.apply(key)}, computed at most once across all threads that call this concurrently for
+	 * an equal key.
+	 *
+	 * @throws CancellationException if the shared computation was cancelled, or the waiting thread was interrupted
+	 * (its interrupt flag is restored)
+	 * @throws RuntimeException      whatever the loader threw, rethrown to every waiter
+	 */
+	public V execute(K key, Function<? super K, ? extends V> loader) {
+		return execute(key, loader, Deadline.NONE);
+	}
+
+	/**
+	 * Like {@link #execute(Object, Function)}, but a caller that joins someone else's computation stops waiting for
+	 * it when {@code deadline} expires. The computation itself carries on for the other callers.
+	 *
+	 * @throws DeadlineExceededException if this caller was waiting and {@code deadline} expired first
+	 */
+	public V execute(K key, Function<? super K, ? extends V> loader, Deadline deadline) {
+		CompletableFuture<V> mine = new CompletableFuture<>();
+		CompletableFuture<V> existing = inFlight.putIfAbsent(key, mine);
+		if (existing != null) {
+			coalesced.increment();
+			return await(existing, deadline);
+		}
+
+		executions.increment();
+		V value;
+		try {
+			value = loader.apply(key);
+		} catch (RuntimeException | Error e) {
+			// Removed before completing, so a waiter that retries on this failure starts a fresh computation
+			// instead of finding the failed one again.
+			inFlight.remove(key, mine);
+			mine.completeExceptionally(e);
+			throw e;
+		}
+		inFlight.remove(key, mine);
+		mine.complete(value);
+		return value;
+	}
+
+	/** How many computations actually ran. */
+	public long executionCount() {
+		return executions.sum();
+	}
+
+	/** How many callers were served by a computation someone else had already started. */
+	public long coalescedCount() {
+		return coalesced.sum();
+	}
+
+	private static <V> V await(CompletableFuture<V> future, Deadline deadline) {
+		try {
+			return deadline == Deadline.NONE
+					? future.get()
+					: future.get(deadline.remaining(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+		} catch (TimeoutException e) {
+			throw new DeadlineExceededException();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CancellationException("Interrupted while waiting for an in-flight computation");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new CompletionException(cause);
+		}
+	}
+}
@@ -0,0 +1,217 @@
+package com.salih.chapter2.cluster;
+
+import java.math.BigInteger;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import com.salih.chapter2.FactorizerUtil;
+import com.salih.chapter2.cache.FactorCache;
+import com.salih.chapter2.encoding.FactorResult;
+import com.salih.chapter2.encoding.Format;
+import com.salih.chapter2.metrics.Metrics;
+
+/**
+ * A factor cache sharded across several instances: each number is computed and cached by exactly one owner.
+ * <p>
+ * <b>The Problem:</b>
+ * Every instance behind the load balancer keeps its own cache. A popular number is computed once per instance, and
+ * with {@code N} instances the cluster holds {@code N} copies of the same hot set in {@code N} times the memory,
+ * instead of {@code N} times as many distinct results.
+ * </p>
+ * <p>
+ * <b>How it works:</b>
+ * <ul>
+ * <li>A {@link HashRing} built from the static membership list ({@code factor.cluster.nodes}) names the owner of
+ * every number. Every node builds the same ring, so they agree without coordinating.</li>
+ * <li>The owner looks the number up in its local cache and computes it on a miss, like a single instance.</li>
+ * <li>Any other node asks the owner over HTTP ({@code /cluster/factor}, answered in the compact
+ * {@link Format#VARINT} format) and keeps the answer in a small <b>near cache</b>, so a number that is hot
+ * everywhere is not fetched over and over. Factors never change, so the near cache can never be stale.</li>
+ * <li>Both caches coalesce concurrent misses, so a burst for one number costs one computation and, per node,
+ * at most one fetch.</li>
+ * <li>The owner sends its response headers before it starts computing, as a sign of life.
+ * {@code factor.cluster.timeoutMillis} bounds only the connect and the wait for those headers. The owner's
+ * computation may then take up to {@code factor.cluster.fetchTimeoutMillis}, because an expensive number is exactly
+ * what sharding should not compute twice. If the owner is unreachable, silent, garbled (the factors must multiply
+ * back to the number) or out of time, the node computes the number itself. A dead node costs extra work, never a
+ * failed request.</li>
+ * <li>An owner always serves {@code /cluster/factor} from its own cache, even if its ring disagrees, so a
+ * request is forwarded at most once and two nodes with different membership lists cannot loop.</li>
+ * </ul>
+ * </p>
+ */
+public final class ClusterCache {
+	static final String OWNER_PATH = "/cluster/factor";
+
+	private final String self;
+	private final HashRing ring;
+	private final FactorCache local;
+	private final FactorCache near;
+	private final HttpClient client;
+	private final Duration timeout;
+	private final Duration fetchTimeout;
+	private final Function<BigInteger, BigInteger[]> factorizer;
+	private final LongAdder owned = new LongAdder();
+	private final LongAdder forwarded = new LongAdder();
+	private final LongAdder fetches = new LongAdder();
+	private final LongAdder fallbacks = new LongAdder();
+	private final LongAdder computations = new LongAdder();
+
+	/**
+	 * @param self     this node's base URL, exactly as it appears in the ring
+	 * @param local    the cache for the numbers this node owns
+	 * @param nearSize     how many numbers owned by other nodes to keep locally
+	 * @param timeout      how long an owner may take to connect and start answering
+	 * @param fetchTimeout how long an owner may take to deliver its answer, computation included
+	 */
+	public ClusterCache(String self, HashRing ring, FactorCache local, long nearSize, Duration timeout,
+			Duration fetchTimeout) {
+		this(self, ring, local, nearSize, timeout, fetchTimeout, FactorizerUtil::factor);
+	}
+
+	ClusterCache(String self, HashRing ring, FactorCache local, long nearSize, Duration timeout, Duration fetchTimeout,
+			Function<BigInteger, BigInteger[]> factorizer) {
+		if (!ring.nodes().contains(self)) {
+			throw new IllegalArgumentException(self + " is not a member of " + ring.nodes());
+		}
+		this.self = self;
+		this.ring = ring;
+		this.local = local;
+		this.near = new FactorCache(nearSize);
+		this.timeout = timeout;
+		this.fetchTimeout = fetchTimeout;
+		this.factorizer = factorizer;
+		this.client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).connectTimeout(timeout).build();
+	}
+
+	/**
+	 * The cluster cache configured by {@code factor.cluster.nodes} (comma-separated base URLs) and
+	 * {@code factor.cluster.self} (this node's entry), on top of the {@link FactorCache#shared() shared} cache.
+	 * Without a membership list, this node is a cluster of one and everything stays local.
+	 */
+	public static ClusterCache shared() {
+		return SharedHolder.INSTANCE;
+	}
+
+	/** Returns the factors of {@code number}, from whichever node owns it. */
+	public FactorResult get(BigInteger number) {
+		String owner = ring.ownerOf(number);
+		if (owner.equals(self)) {
+			owned.increment();
+			return serveOwned(number);
+		}
+		forwarded.increment();
+		return near.get(number, n -> fetch(owner, n));
+	}
+
+	/** Answers for {@code number} from this node's own cache, as its owner. */
+	public FactorResult serveOwned(BigInteger number) {
+		return local.get(number, this::compute);
+	}
+
+	public String ownerOf(BigInteger number) {
+		return ring.ownerOf(number);
+	}
+
+	/** How many numbers this node has factored itself, as owner or as a fallback. */
+	public long computationCount() {
+		return computations.sum();
+	}
+
+	public long fetchCount() {
+		return fetches.sum();
+	}
+
+	public long fallbackCount() {
+		return fallbacks.sum();
+	}
+
+	public void registerMetrics() {
+		Metrics.gauge("factor_cluster_requests_total", "route=\"owned\"", owned::sum);
+		Metrics.gauge("factor_cluster_requests_total", "route=\"forwarded\"", forwarded::sum);
+		Metrics.gauge("factor_cluster_fetches_total", "", fetches::sum);
+		Metrics.gauge("factor_cluster_fallbacks_total", "", fallbacks::sum);
+		Metrics.gauge("factor_cluster_computations_total", "", computations::sum);
+		Metrics.gauge("factor_cluster_nodes", "", () -> ring.nodes().size());
+		near.registerMetrics("near");
+	}
+
+	private BigInteger[] fetch(String owner, BigInteger number) {
+		fetches.increment();
+		HttpRequest request = HttpRequest.newBuilder(URI.create(owner + OWNER_PATH + "?number=" + number))
+				.header("Accept", Format.VARINT.contentType())
+				.timeout(timeout)
+				.build();
+		// The request timeout only covers the wait for the response headers; the body is bounded separately.
+		CompletableFuture<HttpResponse<byte[]>> pending = client.sendAsync(request,
+				HttpResponse.BodyHandlers.ofByteArray());
+		try {
+			HttpResponse<byte[]> response = pending.get(fetchTimeout.toNanos(), TimeUnit.NANOSECONDS);
+			if (response.statusCode() == 200) {
+				BigInteger[] factors = Format.decodeVarint(response.body());
+				if (isFactorization(number, factors)) {
+					return factors;
+				}
+			}
+		} catch (ExecutionException | IllegalArgumentException e) {
+			// Unreachable, silent or garbled: fall through and do the work here.
+		} catch (TimeoutException e) {
+			pending.cancel(true);
+		} catch (InterruptedException e) {
+			pending.cancel(true);
+			Thread.currentThread().interrupt();
+		}
+		fallbacks.increment();
+		return compute(number);
+	}
+
+	private BigInteger[] compute(BigInteger number) {
+		computations.increment();
+		return factorizer.apply(number);
+	}
+
+	private static boolean isFactorization(BigInteger number, BigInteger[] factors) {
+		BigInteger product = BigInteger.ONE;
+		for (BigInteger factor : factors) {
+			if (factor.compareTo(BigInteger.TWO) < 0) {
+				return false;
+			}
+			product = product.multiply(factor);
+		}
+		return number.compareTo(BigInteger.TWO) < 0 ? factors.length == 0 : product.equals(number);
+	}
+
+	private static final class SharedHolder {
+		static final ClusterCache INSTANCE = create();
+
+		static {
+			INSTANCE.registerMetrics();
+		}
+
+		private static ClusterCache create() {
+			String self = System.getProperty("factor.cluster.self", "local");
+			List<String> nodes = Arrays.stream(System.getProperty("factor.cluster.nodes", self).split(","))
+					.map(String::trim)
+					.filter(node -> !node.isEmpty())
+					.collect(Collectors.toList());
+			return new ClusterCache(self,
+					new HashRing(nodes, Integer.getInteger("factor.cluster.virtualNodes", 128)),
+					FactorCache.shared(),
+					Long.getLong("factor.cluster.nearCacheSize", 1_000),
+					Duration.ofMillis(Long.getLong("factor.cluster.timeoutMillis", 500)),
+					Duration.ofMillis(Long.getLong("factor.cluster.fetchTimeoutMillis", 60_000)));
+		}
+	}
+}
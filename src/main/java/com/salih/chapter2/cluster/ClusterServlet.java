@@ -0,0 +1,43 @@
+package com.salih.chapter2.cluster;
+
+import static com.salih.chapter2.FactorizerUtil.extractFromRequest;
+
+import java.io.IOException;
+import java.math.BigInteger;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.salih.chapter2.encoding.Format;
+
+/**
+ * The owner side of {@link ClusterCache}: answers another node's fetch from this node's own cache, in
+ * {@link Format#VARINT}.
+ * <p>
+ * The headers are flushed before the number is looked up, so the asking node knows this one is alive and working
+ * even while an expensive computation runs. If that computation then fails, the response is cut off mid-body, and
+ * the asking node falls back to computing the number itself.
+ * </p>
+ */
+@WebServlet(ClusterCache.OWNER_PATH)
+public class ClusterServlet extends HttpServlet {
+	private final ClusterCache cluster;
+
+	public ClusterServlet() {
+		this(ClusterCache.shared());
+	}
+
+	public ClusterServlet(ClusterCache cluster) {
+		this.cluster = cluster;
+	}
+
+	@Override
+	protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+		BigInteger number = extractFromRequest(req);
+		resp.setContentType(Format.VARINT.contentType());
+		resp.flushBuffer();
+		resp.getOutputStream().write(cluster.serveOwned(number).body(Format.VARINT));
+	}
+}
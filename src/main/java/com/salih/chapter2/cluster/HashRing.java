@@ -0,0 +1,91 @@
+package com.salih.chapter2.cluster;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A <b>consistent-hash ring</b> that assigns every number to one owning node.
+ * <p>
+ * <b>The Problem:</b>
+ * {@code hash(n) % nodes} spreads keys evenly, but adding or removing a single node changes the result for almost
+ * every key: the whole cluster's cache is invalidated at once.
+ * </p>
+ * <p>
+ * <b>How it works:</b>
+ * <ul>
+ * <li>Each node is hashed onto a 64-bit circle at {@code virtualNodes} pseudo-random points. A key belongs to the
+ * first node point at or after its own hash, wrapping around at the end.</li>
+ * <li>Adding a node only takes over the arcs in front of its new points, about {@code 1 / nodes} of the keys, and
+ * every key that moves, moves <i>to</i> the new node. Removing one hands its arcs to its neighbours.</li>
+ * <li>With one point per node the arcs vary wildly in length; a hundred or more points per node evens the load out
+ * to within a few percent.</li>
+ * <li>The hash depends only on the bytes of the key and the node's name, so every node computes the same ring
+ * from the same static membership list, without talking to the others.</li>
+ * </ul>
+ * </p>
+ * <p>
+ * The ring is immutable: a lookup is a binary search over a sorted {@code long[]}, safe from any thread.
+ * </p>
+ */
+public final class HashRing {
+	private final long[] points;
+	private final String[] owners;
+	private final List<String> nodes;
+
+	public HashRing(Collection<String> nodes, int virtualNodes) {
+		if (nodes.isEmpty() || virtualNodes < 1) {
+			throw new IllegalArgumentException("A ring needs at least one node and one point per node");
+		}
+		Map<Long, String> ring = new TreeMap<>();
+		for (String node : nodes) {
+			for (int v = 0; v < virtualNodes; v++) {
+				// On the (astronomically unlikely) collision, the first node listed keeps the point everywhere.
+				ring.putIfAbsent(hash((node + '#' + v).getBytes(StandardCharsets.UTF_8)), node);
+			}
+		}
+		this.points = new long[ring.size()];
+		this.owners = new String[ring.size()];
+		int k = 0;
+		for (Map.Entry<Long, String> point : ring.entrySet()) {
+			points[k] = point.getKey();
+			owners[k++] = point.getValue();
+		}
+		this.nodes = List.copyOf(nodes);
+	}
+
+	public String ownerOf(BigInteger key) {
+		long hash = hash(key.toByteArray());
+		int low = 0;
+		int high = points.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (points[mid] < hash) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return owners[low == points.length ? 0 : low];
+	}
+
+	public List<String> nodes() {
+		return nodes;
+	}
+
+	/** 64-bit FNV-1a, then the MurmurHash3 finalizer so that similar inputs land far apart. */
+	static long hash(byte[] bytes) {
+		long h = 0xCBF29CE484222325L;
+		for (byte b : bytes) {
+			h = (h ^ (b & 0xFF)) * 0x100000001B3L;
+		}
+		h ^= h >>> 33;
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= h >>> 33;
+		h *= 0xC4CEB9FE1A85EC53L;
+		return h ^ (h >>> 33);
+	}
+}
@@ -0,0 +1,65 @@
+package com.salih.chapter2.encoding;
+
+import java.math.BigInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * An immutable factorization result together with its encoded response bodies.
+ * <p>
+ * <b>Why keep the bytes?</b>
+ * A cache of bare {@code BigInteger[]} still has to turn the factors into text on every hit. Storing the encoded
+ * body next to the factors turns a hit into a single {@code write} of bytes that were produced once.
+ * </p>
+ * <p>
+ * <b>How it works:</b>
+ * <ul>
+ * <li>The {@link Format#TEXT} body is encoded up front, since nearly every client asks for it.</li>
+ * <li>The other formats are encoded the first time someone asks for them. Two threads may race to do so; both
+ * produce identical bytes, so whichever write lands last is as good as the other (the same benign race
+ * {@link String#hashCode()} relies on). The {@link AtomicReferenceArray} makes sure a reader that sees the array
+ * also sees its contents.</li>
+ * </ul>
+ * </p>
+ * <p>
+ * The factors and bodies are shared by every caller and must be treated as read-only.
+ * </p>
+ */
+public final class FactorResult {
+	private static final Format[] FORMATS = Format.values();
+
+	private final BigInteger number;
+	private final BigInteger[] factors;
+	private final AtomicReferenceArray<byte[]> bodies = new AtomicReferenceArray<>(FORMATS.length);
+
+	public FactorResult(BigInteger number, BigInteger[] factors) {
+		this(number, factors, Format.TEXT.encode(factors));
+	}
+
+	/** Rebuilds a result whose {@link Format#TEXT} body was stored alongside the factors, so it is not re-encoded. */
+	public FactorResult(BigInteger number, BigInteger[] factors, byte[] text) {
+		this.number = number;
+		this.factors = factors;
+		bodies.set(Format.TEXT.ordinal(), text);
+	}
+
+	public BigInteger number() {
+		return number;
+	}
+
+	public BigInteger[] factors() {
+		return factors;
+	}
+
+	public byte[] body(Format format) {
+		byte[] body = bodies.get(format.ordinal());
+		if (body == null) {
+			body = format.encode(factors);
+			bodies.set(format.ordinal(), body);
+		}
+		return body;
+	}
+
+	public String etag(Format format) {
+		return format.etag(number);
+	}
+}
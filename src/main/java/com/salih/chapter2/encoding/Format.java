@@ -0,0 +1,182 @@
+package com.salih.chapter2.encoding;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The wire formats a factorization result can be served in, chosen from the request's {@code Accept} header.
+ * <ul>
+ * <li>{@link #TEXT}: {@code "Factors: 2 2 3 \n\n"}, the format every factorizer has always produced.</li>
+ * <li>{@link #JSON}: {@code {"factors":[2,2,3]}}, factors as JSON numbers of arbitrary length.</li>
+ * <li>{@link #VARINT}: the factor count, the first factor, then the gap to each following factor, all as unsigned
+ * LEB128 varints (7 bits per byte, high bit set on every byte but the last). The factors are sorted, so the gaps
+ * are never negative, and they are usually much smaller than the factors themselves.</li>
+ * </ul>
+ */
+public enum Format {
+	TEXT("text/plain", 't') {
+		@Override
+		byte[] encode(BigInteger[] factors) {
+			StringBuilder sb = new StringBuilder("Factors: ");
+			for (BigInteger factor : factors) {
+				sb.append(factor).append(' ');
+			}
+			return sb.append("\n\n").toString().getBytes(StandardCharsets.US_ASCII);
+		}
+	},
+	JSON("application/json", 'j') {
+		@Override
+		byte[] encode(BigInteger[] factors) {
+			StringBuilder sb = new StringBuilder("{\"factors\":[");
+			for (int k = 0; k < factors.length; k++) {
+				if (k > 0) {
+					sb.append(',');
+				}
+				sb.append(factors[k]);
+			}
+			return sb.append("]}").toString().getBytes(StandardCharsets.US_ASCII);
+		}
+	},
+	VARINT("application/x-factors-varint", 'v') {
+		@Override
+		byte[] encode(BigInteger[] factors) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream(1 + 2 * factors.length);
+			writeVarint(out, BigInteger.valueOf(factors.length));
+			BigInteger previous = BigInteger.ZERO;
+			for (BigInteger factor : factors) {
+				writeVarint(out, factor.subtract(previous));
+				previous = factor;
+			}
+			return out.toByteArray();
+		}
+	};
+
+	private final String contentType;
+	private final char tag;
+
+	Format(String contentType, char tag) {
+		this.contentType = contentType;
+		this.tag = tag;
+	}
+
+	public String contentType() {
+		return contentType;
+	}
+
+	abstract byte[] encode(BigInteger[] factors);
+
+	/**
+	 * A strong validator for {@code number} in this format. The factors of a number never change, so the tag depends
+	 * only on the number and the format; a client's cached copy can be confirmed without looking anything up.
+	 */
+	public String etag(BigInteger number) {
+		return "\"" + number.toString(Character.MAX_RADIX) + '-' + tag + "\"";
+	}
+
+	/**
+	 * Picks the supported format with the highest {@code q} value in an {@code Accept} header, preferring the earlier
+	 * entry on ties. Missing headers, wildcards and headers naming nothing we support all get {@link #TEXT}, so plain
+	 * clients keep working.
+	 */
+	public static Format negotiate(String accept) {
+		if (accept == null) {
+			return TEXT;
+		}
+		Format best = TEXT;
+		double bestQuality = 0;
+		for (String range : accept.split(",")) {
+			int semicolon = range.indexOf(';');
+			String type = (semicolon < 0 ? range : range.substring(0, semicolon)).trim();
+			Format format = forMediaRange(type);
+			double quality = semicolon < 0 ? 1 : quality(range.substring(semicolon + 1));
+			if (format != null && quality > bestQuality) {
+				best = format;
+				bestQuality = quality;
+			}
+		}
+		return best;
+	}
+
+	private static Format forMediaRange(String type) {
+		if (type.equals("*/*") || type.equalsIgnoreCase("text/*")) {
+			return TEXT;
+		}
+		for (Format format : values()) {
+			if (format.contentType.equalsIgnoreCase(type)) {
+				return format;
+			}
+		}
+		return null;
+	}
+
+	private static double quality(String parameters) {
+		for (String parameter : parameters.split(";")) {
+			String p = parameter.trim();
+			if (p.startsWith("q=")) {
+				try {
+					return Double.parseDouble(p.substring(2));
+				} catch (NumberFormatException e) {
+					return 0;
+				}
+			}
+		}
+		return 1;
+	}
+
+	/**
+	 * Reads back a {@link #VARINT} body, for clients of this service written in Java (such as other cluster nodes).
+	 *
+	 * @throws IllegalArgumentException if the body is truncated, has bytes left over, or claims more factors than it
+	 *                                  has room for (so a garbled body never allocates more than its own size)
+	 */
+	public static BigInteger[] decodeVarint(byte[] body) {
+		int[] position = { 0 };
+		BigInteger count = readVarint(body, position);
+		// Every factor takes at least one byte, which also keeps the count well inside an int.
+		if (count.compareTo(BigInteger.valueOf(body.length - position[0])) > 0) {
+			throw new IllegalArgumentException("Varint body claims " + count + " factors in " + body.length + " bytes");
+		}
+		BigInteger[] factors = new BigInteger[count.intValue()];
+		BigInteger previous = BigInteger.ZERO;
+		for (int k = 0; k < factors.length; k++) {
+			previous = previous.add(readVarint(body, position));
+			factors[k] = previous;
+		}
+		if (position[0] != body.length) {
+			throw new IllegalArgumentException("Trailing bytes after varint body");
+		}
+		return factors;
+	}
+
+	private static BigInteger readVarint(byte[] body, int[] position) {
+		BigInteger value = BigInteger.ZERO;
+		for (int shift = 0;; shift += 7) {
+			if (position[0] >= body.length) {
+				throw new IllegalArgumentException("Truncated varint body");
+			}
+			int b = body[position[0]++];
+			value = value.or(BigInteger.valueOf(b & 0x7F).shiftLeft(shift));
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+	}
+
+	static void writeVarint(ByteArrayOutputStream out, BigInteger value) {
+		if (value.bitLength() < Long.SIZE) {
+			long v = value.longValue();
+			while (v >= 0x80) {
+				out.write((int) (v & 0x7F) | 0x80);
+				v >>>= 7;
+			}
+			out.write((int) v);
+			return;
+		}
+		int groups = (value.bitLength() + 6) / 7;
+		for (int k = 0; k < groups; k++) {
+			int bits = value.shiftRight(7 * k).intValue() & 0x7F;
+			out.write(k < groups - 1 ? bits | 0x80 : bits);
+		}
+	}
+}
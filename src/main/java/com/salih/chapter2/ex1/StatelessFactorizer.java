@@ -3,6 +3,7 @@ package com.salih.chapter2.ex1;
 import static com.salih.chapter2.FactorizerUtil.encodeIntoResponse;
 import static com.salih.chapter2.FactorizerUtil.extractFromRequest;
 import static com.salih.chapter2.FactorizerUtil.factor;
+import static com.salih.chapter2.FactorizerUtil.tryFactorLongInto;
 
 import java.io.IOException;
 import java.math.BigInteger;
@@ -37,12 +38,22 @@ public class StatelessFactorizer extends HttpServlet {
 	 * thread to interfere with another. As stated in <i>Java Concurrency in Practice</i>:
 	 * <i>"Stateless objects are always thread-safe."</i>
 	 * </p>
+	 * <p>
+	 * <b>The Fast Path:</b>
+	 * Most numbers fit in a {@code long}, so {@code tryFactorLongInto} handles them with primitives and
+	 * per-thread buffers instead of allocating a {@code BigInteger}, a list and a {@code StringBuilder} per request.
+	 * Those buffers are <b>Thread-Confined</b> (held in a {@code ThreadLocal}), so the class stays thread-safe.
+	 * Only wider or malformed inputs take the {@code BigInteger} path below.
+	 * </p>
 	 *
 	 * @param servletRequest  The servlet request (local to the thread)
 	 * @param servletResponse The servlet response (local to the thread)
 	 */
 	@Override
 	public void service(ServletRequest servletRequest, ServletResponse servletResponse) throws IOException {
+		if (tryFactorLongInto(servletRequest, servletResponse)) {
+			return;
+		}
 		BigInteger i = extractFromRequest(servletRequest);
 		BigInteger[] factors = factor(i);
 		encodeIntoResponse(servletResponse, factors);
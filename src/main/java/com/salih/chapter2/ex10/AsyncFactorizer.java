@@ -0,0 +1,172 @@
+package com.salih.chapter2.ex10;
+
+import static com.salih.chapter2.FactorizerUtil.encodeIntoResponse;
+import static com.salih.chapter2.FactorizerUtil.extractFromRequest;
+import static com.salih.chapter2.FactorizerUtil.respondIfNotModified;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.salih.chapter2.Deadline;
+import com.salih.chapter2.DeadlineExceededException;
+import com.salih.chapter2.FactorizerUtil;
+import com.salih.chapter2.async.Lane;
+import com.salih.chapter2.cache.FactorCache;
+import com.salih.chapter2.encoding.FactorResult;
+
+@WebServlet(urlPatterns = "/factor/async", asyncSupported = true)
+public class AsyncFactorizer extends HttpServlet {
+	private static final long TIMEOUT_MILLIS = Long.getLong("factor.async.timeoutMillis", 5_000);
+
+	private final FactorCache cache = FactorCache.shared();
+	private final long timeoutMillis;
+
+	public AsyncFactorizer() {
+		this(TIMEOUT_MILLIS);
+	}
+
+	AsyncFactorizer(long timeoutMillis) {
+		this.timeoutMillis = timeoutMillis;
+	}
+
+	/**
+	 * A <b>Thread-Safe</b> Servlet that releases the container thread while the number is being factored.
+	 * <p>
+	 * <b>The Problem:</b>
+	 * In every other factorizer, {@code factor(i)} runs on the container's request thread. The pool of those threads
+	 * is finite, so a burst of slow numbers can use all of them up, and then even a request for '2' has to wait.
+	 * </p>
+	 * <p>
+	 * <b>How it works (Servlet 3 Async):</b>
+	 * <ol>
+	 * <li>{@code startAsync()} tells the container the response will be completed later, so the request thread
+	 * returns to the pool as soon as this method exits.</li>
+	 * <li>The computation is handed to a bounded pool, picked by the size of the number: a {@link Lane#FAST} one for
+	 * numbers that fit a {@code long} and a {@link Lane#SLOW} one for the rest, so cheap requests never queue behind
+	 * expensive ones. If the lane's queue is full, the request is rejected immediately with 503 instead of piling
+	 * up.</li>
+	 * <li>A callback on the compute thread writes the response and calls {@code complete()}.</li>
+	 * <li>If the computation outlives {@code factor.async.timeoutMillis}, the container fires {@code onTimeout}
+	 * and the client gets a 503. The computation carries a {@link Deadline} for the same instant, so it stops
+	 * working at that point too instead of finishing for nobody, and its half-done result is not cached.</li>
+	 * </ol>
+	 * </p>
+	 * <p>
+	 * A client revalidating with a matching {@code If-None-Match} gets its 304 straight away, without going async.
+	 * </p>
+	 * <p>
+	 * <b>The Race:</b>
+	 * The callback and the timeout run on different threads and may fire at the same moment. Both are
+	 * <b>Check-Then-Act</b> on "has the response been written?", so the check is made atomic with
+	 * {@code compareAndSet} on an {@link AtomicBoolean}: exactly one of them writes the response. When the result wins
+	 * but the timeout has already fired, {@code onTimeout} waits for the result to be written and then completes the
+	 * request itself: a timeout listener that returns without completing makes the container write an error page of
+	 * its own, and the container may refuse {@code complete()} from the compute thread at that point. A connection error
+	 * ({@code onError}) takes part in the same race, and whichever wins calls {@code complete()}.
+	 * </p>
+	 *
+	 * @param req  The servlet request
+	 * @param resp The servlet response
+	 */
+	@Override
+	protected void service(HttpServletRequest req, HttpServletResponse resp) {
+		BigInteger i = extractFromRequest(req);
+		if (respondIfNotModified(req, resp, i)) {
+			return;
+		}
+		AsyncContext async = req.startAsync();
+		async.setTimeout(timeoutMillis);
+		AtomicBoolean responded = new AtomicBoolean();
+		CountDownLatch completed = new CountDownLatch(1);
+
+		async.addListener(new AsyncListener() {
+			@Override
+			public void onTimeout(AsyncEvent event) throws IOException {
+				if (responded.compareAndSet(false, true)) {
+					resp.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Factorization timed out");
+					async.complete();
+					return;
+				}
+				// The result won and is being written. Once the container has begun timing the request out it refuses
+				// complete() from other threads, and if this listener returned without completing it would write an
+				// error page of its own over the result. So wait for the writer, then complete here.
+				try {
+					completed.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				complete(async);
+			}
+
+			@Override
+			public void onComplete(AsyncEvent event) {
+			}
+
+			@Override
+			public void onError(AsyncEvent event) {
+				// The connection failed; nothing can be written any more, but the request must still be completed.
+				if (responded.compareAndSet(false, true)) {
+					complete(async);
+					completed.countDown();
+				}
+			}
+
+			@Override
+			public void onStartAsync(AsyncEvent event) {
+			}
+		});
+
+		try {
+			Deadline deadline = Deadline.after(timeoutMillis, TimeUnit.MILLISECONDS);
+			CompletableFuture.supplyAsync(() -> cache.get(i, n -> FactorizerUtil.factorWithin(n, deadline), deadline),
+					Lane.of(i).executor())
+					.whenComplete((result, error) -> respond(async, req, resp, responded, completed, result, error));
+		} catch (RejectedExecutionException e) {
+			respond(async, req, resp, responded, completed, null, e);
+		}
+	}
+
+	private static void respond(AsyncContext async, HttpServletRequest req, HttpServletResponse resp,
+			AtomicBoolean responded, CountDownLatch completed, FactorResult result, Throwable error) {
+		if (!responded.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			if (error == null) {
+				encodeIntoResponse(req, resp, result);
+			} else if (error.getCause() instanceof DeadlineExceededException) {
+				resp.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Factorization timed out");
+			} else if (error instanceof RejectedExecutionException) {
+				resp.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Compute lane is saturated");
+			} else {
+				resp.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+			}
+		} catch (IOException ignored) {
+			// The client went away; there is nobody left to tell.
+		} finally {
+			complete(async);
+			completed.countDown();
+		}
+	}
+
+	private static void complete(AsyncContext async) {
+		try {
+			async.complete();
+		} catch (IllegalStateException e) {
+			// Already completed, or the container is timing the request out and onTimeout will complete it.
+		}
+	}
+}
@@ -0,0 +1,111 @@
+package com.salih.chapter2.ex11;
+
+import static com.salih.chapter2.FactorizerUtil.encodeIntoResponse;
+import static com.salih.chapter2.FactorizerUtil.extractFromRequest;
+import static com.salih.chapter2.FactorizerUtil.respondIfNotModified;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.salih.chapter2.Deadline;
+import com.salih.chapter2.DeadlineExceededException;
+import com.salih.chapter2.Factorization;
+import com.salih.chapter2.FactorizerUtil;
+import com.salih.chapter2.cache.FactorCache;
+
+@WebServlet("/factor/deadline")
+public class DeadlineFactorizer extends HttpServlet {
+	static final String BUDGET_HEADER = "X-Factor-Budget-Millis";
+	static final String BUDGET_PARAMETER = "budgetMillis";
+	static final String PARTIAL_HEADER = "X-Factor-Partial";
+
+	private static final long DEFAULT_BUDGET_MILLIS = Long.getLong("factor.deadline.defaultMillis", 1_000);
+	private static final long MAX_BUDGET_MILLIS = Long.getLong("factor.deadline.maxMillis", 30_000);
+
+	private final FactorCache cache = FactorCache.shared();
+
+	/**
+	 * A <b>Thread-Safe</b> Servlet that stops factoring when the client's time budget runs out.
+	 * <p>
+	 * <b>The Problem:</b>
+	 * {@code factor(i)} runs to completion no matter what. A client that gives up after 200 ms still costs us the
+	 * seconds the computation takes, and a retrying client costs them again.
+	 * </p>
+	 * <p>
+	 * <b>How it works:</b>
+	 * <ul>
+	 * <li>The budget comes from the {@value #BUDGET_HEADER} header or the {@value #BUDGET_PARAMETER} parameter,
+	 * defaulting to {@code factor.deadline.defaultMillis} and capped at {@code factor.deadline.maxMillis}.</li>
+	 * <li>The factoring loops check the {@link Deadline} between batches (<b>cooperative cancellation</b>) and stop
+	 * once it has passed.</li>
+	 * <li>A complete result is cached and written like any other. A partial one is answered with the factors found so
+	 * far plus the unfactored cofactor, marked with {@value #PARTIAL_HEADER}{@code : true}, and is <b>never cached</b>:
+	 * the next request with a bigger budget must not be handed half an answer.</li>
+	 * <li>Misses still go through the cache's coalescing, so concurrent requests for the same number share the first
+	 * one's computation. They do not share its deadline. A request waits for that computation only as long as its own
+	 * budget allows, even if the computation has no deadline at all, and then answers with nothing factored. If the
+	 * first one runs out instead, each waiter carries on with its own budget.</li>
+	 * </ul>
+	 * </p>
+	 *
+	 * @param req  The servlet request
+	 * @param resp The servlet response
+	 */
+	@Override
+	protected void service(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+		BigInteger i = extractFromRequest(req);
+		if (respondIfNotModified(req, resp, i)) {
+			return;
+		}
+		Deadline deadline = Deadline.after(budgetMillis(req), TimeUnit.MILLISECONDS);
+		Factorization[] partial = new Factorization[1];
+		try {
+			encodeIntoResponse(req, resp, cache.get(i, n -> {
+				Factorization result = FactorizerUtil.factor(n, deadline);
+				if (!result.isComplete()) {
+					partial[0] = result;
+					// Failing the load is what keeps the partial result out of the cache.
+					throw new DeadlineExceededException();
+				}
+				return result.factors();
+			}, deadline));
+		} catch (DeadlineExceededException e) {
+			// Either our own loader ran out, and recorded its partial result, or we ran out waiting for someone else's.
+			writePartial(resp, partial[0] != null ? partial[0] : new Factorization(new BigInteger[0], i));
+		}
+	}
+
+	private static void writePartial(HttpServletResponse resp, Factorization result) throws IOException {
+		StringBuilder body = new StringBuilder("Factors: ");
+		for (BigInteger factor : result.factors()) {
+			body.append(factor).append(' ');
+		}
+		body.append("\nUnfactored: ").append(result.cofactor()).append("\n\n");
+		byte[] bytes = body.toString().getBytes(StandardCharsets.US_ASCII);
+		resp.setHeader(PARTIAL_HEADER, "true");
+		resp.setHeader("Cache-Control", "no-store");
+		resp.setContentType("text/plain");
+		resp.setContentLength(bytes.length);
+		resp.getOutputStream().write(bytes);
+	}
+
+	private static long budgetMillis(HttpServletRequest req) {
+		String value = req.getHeader(BUDGET_HEADER);
+		if (value == null) {
+			value = req.getParameter(BUDGET_PARAMETER);
+		}
+		try {
+			long budget = value == null ? DEFAULT_BUDGET_MILLIS : Long.parseLong(value.trim());
+			return Math.max(0, Math.min(budget, MAX_BUDGET_MILLIS));
+		} catch (NumberFormatException e) {
+			return DEFAULT_BUDGET_MILLIS;
+		}
+	}
+}
@@ -0,0 +1,230 @@
+package com.salih.chapter2.ex12;
+
+import static com.salih.chapter2.FactorizerUtil.extractFromRequest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.salih.chapter2.Deadline;
+import com.salih.chapter2.Factorization;
+import com.salih.chapter2.FactorizerUtil;
+import com.salih.chapter2.async.Lane;
+import com.salih.chapter2.cache.FactorCache;
+import com.salih.chapter2.encoding.FactorResult;
+import com.salih.chapter2.metrics.LatencyHistogram;
+import com.salih.chapter2.metrics.Metrics;
+
+@WebServlet(urlPatterns = "/factor/stream", asyncSupported = true)
+public class StreamingFactorizer extends HttpServlet {
+	static final String EVENT_STREAM = "text/event-stream";
+
+	private static final long DEFAULT_TIMEOUT_MILLIS = Long.getLong("factor.stream.timeoutMillis", 60_000);
+	private static final long DEFAULT_HEARTBEAT_MILLIS = Long.getLong("factor.stream.heartbeatMillis", 5_000);
+	private static final LatencyHistogram FIRST_FACTOR = Metrics.histogram("factor_stream_first_factor_seconds", "");
+	private static final LongAdder DISCONNECTS = Metrics.counter("factor_stream_disconnects_total", "");
+
+	private final FactorCache cache = FactorCache.shared();
+	private final long timeoutMillis;
+	private final long heartbeatMillis;
+
+	public StreamingFactorizer() {
+		this(DEFAULT_TIMEOUT_MILLIS, DEFAULT_HEARTBEAT_MILLIS);
+	}
+
+	StreamingFactorizer(long timeoutMillis, long heartbeatMillis) {
+		this.timeoutMillis = timeoutMillis;
+		this.heartbeatMillis = heartbeatMillis;
+	}
+
+	/**
+	 * A <b>Thread-Safe</b> Servlet that sends each prime factor to the client as soon as it is found.
+	 * <p>
+	 * <b>The Problem:</b>
+	 * Every other factorizer writes the response only once {@code factor(i)} has returned the whole array. For a big
+	 * composite the client sees nothing for seconds, even though a small factor was found in the first microseconds,
+	 * and it has no way to tell a slow answer from a dead server.
+	 * </p>
+	 * <p>
+	 * <b>How it works:</b>
+	 * <ul>
+	 * <li>The response has no {@code Content-Length}, so the container sends it with <b>chunked</b> transfer
+	 * encoding. A client that accepts {@value #EVENT_STREAM} gets <b>Server-Sent Events</b> (one {@code data:}
+	 * event per factor, then a {@code done} or {@code partial} event); anyone else gets plain text, one factor per
+	 * line, where a blank line carries nothing.</li>
+	 * <li>The factoring runs on its {@link Lane} and reports each prime through a callback, which writes it and
+	 * <b>flushes</b> straight away. Factors arrive in the order they are found, not sorted.</li>
+	 * <li>A failed write means the client has gone. The callback then cancels the computation's {@link Deadline},
+	 * and the factoring loops stop at their next check instead of finishing for nobody. Since a long rho walk may
+	 * go seconds without finding anything to write, the stream also gets a heartbeat every
+	 * {@code factor.stream.heartbeatMillis} (a comment line for events, a blank line for plain text), which both
+	 * keeps proxies from timing the connection out and notices a disconnect while the computation is quiet.</li>
+	 * <li>The whole computation is bounded by {@code factor.stream.timeoutMillis}. If that runs out, the stream
+	 * ends with the unfactored cofactor.</li>
+	 * <li>A cached number is streamed in one go; a complete result is cached for everyone else.</li>
+	 * </ul>
+	 * </p>
+	 * <p>
+	 * <b>The Race:</b>
+	 * The compute thread and the heartbeat thread both write to the same response, and servlet streams are not
+	 * thread-safe. Every write goes through one {@code synchronized} {@link Stream}, so frames never interleave.
+	 * Cancelling the heartbeat does not wait for one that is already running, so the stream is marked finished, under
+	 * the same lock, before the request is completed: a heartbeat that gets the lock after that writes nothing.
+	 * </p>
+	 *
+	 * @param req  The servlet request
+	 * @param resp The servlet response
+	 */
+	@Override
+	protected void service(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+		BigInteger i = extractFromRequest(req);
+		String accept = req.getHeader("Accept");
+		boolean events = accept != null && accept.contains(EVENT_STREAM);
+		resp.setContentType(events ? EVENT_STREAM : "text/plain");
+		resp.setHeader("Cache-Control", "no-store");
+
+		FactorResult cached = cache.getIfPresent(i);
+		if (cached != null) {
+			Stream stream = new Stream(resp.getOutputStream(), events, null);
+			for (BigInteger factor : cached.factors()) {
+				stream.factor(factor);
+			}
+			stream.finish(new Factorization(cached.factors(), BigInteger.ONE));
+			return;
+		}
+
+		Deadline deadline = Deadline.after(timeoutMillis, TimeUnit.MILLISECONDS);
+		AsyncContext async = req.startAsync();
+		// The deadline bounds the computation; the container's own timeout would only race it.
+		async.setTimeout(0);
+		async.addListener(new AsyncListener() {
+			@Override
+			public void onComplete(AsyncEvent event) {
+			}
+
+			@Override
+			public void onTimeout(AsyncEvent event) {
+				deadline.cancel();
+			}
+
+			@Override
+			public void onError(AsyncEvent event) {
+				deadline.cancel();
+			}
+
+			@Override
+			public void onStartAsync(AsyncEvent event) {
+			}
+		});
+
+		Stream stream = new Stream(resp.getOutputStream(), events, deadline);
+		long start = System.nanoTime();
+		try {
+			Lane.of(i).executor().execute(() -> {
+				ScheduledFuture<?> heartbeat = Heartbeats.INSTANCE.scheduleWithFixedDelay(stream::heartbeat,
+						heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+				try {
+					Factorization result = FactorizerUtil.factor(i, deadline, factor -> {
+						if (stream.factor(factor) == 1) {
+							FIRST_FACTOR.recordSince(start);
+						}
+					});
+					if (result.isComplete()) {
+						cache.put(i, result.factors());
+					}
+					stream.finish(result);
+				} finally {
+					heartbeat.cancel(false);
+					stream.end();
+					async.complete();
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			resp.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Compute lane is saturated");
+			async.complete();
+		}
+	}
+
+	/** The response body, written one frame at a time by whichever thread has something to say. */
+	static final class Stream {
+		private final OutputStream out;
+		private final boolean events;
+		private final Deadline deadline;
+		private int written;
+		private boolean closed;
+		private boolean finished;
+
+		Stream(OutputStream out, boolean events, Deadline deadline) {
+			this.out = out;
+			this.events = events;
+			this.deadline = deadline;
+		}
+
+		/** Writes and flushes one factor; returns how many have been written so far. */
+		synchronized int factor(BigInteger factor) {
+			write(events ? "data: " + factor + "\n\n" : factor + "\n");
+			return ++written;
+		}
+
+		synchronized void heartbeat() {
+			if (!finished) {
+				write(events ? ": keep-alive\n\n" : "\n");
+			}
+		}
+
+		synchronized void finish(Factorization result) {
+			if (events) {
+				write(result.isComplete()
+						? "event: done\ndata: complete\n\n"
+						: "event: partial\ndata: " + result.cofactor() + "\n\n");
+			} else if (!result.isComplete()) {
+				write("Unfactored: " + result.cofactor() + "\n");
+			}
+			finished = true;
+		}
+
+		/** Nothing may be written after this, even if {@link #finish} never ran. */
+		synchronized void end() {
+			finished = true;
+		}
+
+		private void write(String frame) {
+			if (closed) {
+				return;
+			}
+			try {
+				out.write(frame.getBytes(StandardCharsets.US_ASCII));
+				out.flush();
+			} catch (IOException e) {
+				closed = true;
+				DISCONNECTS.increment();
+				if (deadline != null) {
+					deadline.cancel();
+				}
+			}
+		}
+	}
+
+	private static final class Heartbeats {
+		static final ScheduledExecutorService INSTANCE = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "factor-stream-heartbeat");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+}
@@ -0,0 +1,54 @@
+package com.salih.chapter2.ex13;
+
+import static com.salih.chapter2.FactorizerUtil.encodeIntoResponse;
+import static com.salih.chapter2.FactorizerUtil.extractFromRequest;
+import static com.salih.chapter2.FactorizerUtil.respondIfNotModified;
+
+import java.io.IOException;
+import java.math.BigInteger;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.salih.chapter2.cluster.ClusterCache;
+
+@WebServlet("/factor/clustered")
+public class ClusteredFactorizer extends HttpServlet {
+	private final ClusterCache cluster;
+
+	public ClusteredFactorizer() {
+		this(ClusterCache.shared());
+	}
+
+	public ClusteredFactorizer(ClusterCache cluster) {
+		this.cluster = cluster;
+	}
+
+	/**
+	 * A <b>Thread-Safe</b> Servlet whose cache is shared by every instance in the cluster.
+	 * <p>
+	 * <b>The Problem with {@code BoundedCachingFactorizer}:</b>
+	 * Its cache is per instance. Behind a load balancer, each of {@code N} instances computes and stores the same
+	 * popular numbers, so adding instances adds throughput but not cache capacity.
+	 * </p>
+	 * <p>
+	 * <b>How it works:</b>
+	 * Each number has one owner, picked by consistent hashing over the configured members. The owner serves it from
+	 * its own cache; everyone else asks the owner and keeps a small near cache. See {@link ClusterCache}. Without
+	 * {@code factor.cluster.nodes} this behaves exactly like {@code /factor/boundedCache}.
+	 * </p>
+	 *
+	 * @param req  The servlet request
+	 * @param resp The servlet response
+	 */
+	@Override
+	protected void service(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+		BigInteger i = extractFromRequest(req);
+		if (respondIfNotModified(req, resp, i)) {
+			return;
+		}
+		encodeIntoResponse(req, resp, cluster.get(i));
+	}
+}
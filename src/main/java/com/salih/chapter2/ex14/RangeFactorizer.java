@@ -0,0 +1,123 @@
+package com.salih.chapter2.ex14;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.salih.chapter2.Deadline;
+import com.salih.chapter2.DeadlineExceededException;
+import com.salih.chapter2.RangeFactoring;
+
+@WebServlet("/factor/range")
+public class RangeFactorizer extends HttpServlet {
+	private static final long DEFAULT_TIMEOUT_MILLIS = Long.getLong("factor.range.timeoutMillis", 60_000);
+	private static final int BUFFER_CHARS = 8192;
+
+	private final long timeoutMillis;
+
+	public RangeFactorizer() {
+		this(DEFAULT_TIMEOUT_MILLIS);
+	}
+
+	RangeFactorizer(long timeoutMillis) {
+		this.timeoutMillis = timeoutMillis;
+	}
+
+	/**
+	 * A <b>Thread-Safe</b> Servlet that factors every number in {@code [from, to)}.
+	 * <p>
+	 * <b>The Problem:</b>
+	 * A batch job that needs a whole range would otherwise send one request per number (or a {@code /factor/batch}
+	 * body listing all of them), and each number would be factored from scratch, although neighbouring numbers share
+	 * most of their small factors.
+	 * </p>
+	 * <p>
+	 * <b>How it works:</b>
+	 * <ul>
+	 * <li>{@link RangeFactoring} sieves the range in segments on a fork/join pool of its own and hands the numbers
+	 * back in order on this thread, one line each: {@code Number: n, Factors: ...}, the same lines as
+	 * {@code /factor/batch}.</li>
+	 * <li>The pool has {@code factor.range.parallelism} workers (default: the number of cores). It is not the common
+	 * pool because the parallel rho walks in {@link com.salih.chapter2.BigFactoring} and parallel streams elsewhere
+	 * run there: a long range would otherwise queue its segments ahead of them, and they would slow the range.</li>
+	 * <li>Lines are collected into a small buffer and written out whenever it fills. The response has no
+	 * {@code Content-Length}, so the container streams it with chunked encoding as it goes: the client starts
+	 * reading while later segments are still being sieved, and neither side ever holds the whole range.</li>
+	 * <li>The request is bounded by {@code factor.range.timeoutMillis}. If that runs out, the body ends with
+	 * {@code Stopped at: n}, the first number not reported, so the client can resume from there.</li>
+	 * <li>A failed write means the client has gone; the segments still in flight are cancelled.</li>
+	 * </ul>
+	 * </p>
+	 * <p>
+	 * The results are not cached: a range is rarely asked for twice, and caching millions of entries would only push
+	 * the popular single numbers out of the shared cache.
+	 * </p>
+	 *
+	 * @param req  The servlet request
+	 * @param resp The servlet response
+	 */
+	@Override
+	protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+		long from;
+		long to;
+		try {
+			from = Long.parseLong(req.getParameter("from"));
+			to = Long.parseLong(req.getParameter("to"));
+		} catch (NumberFormatException e) {
+			resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "from and to must be integers");
+			return;
+		}
+		if (from < 0 || to < from || to > RangeFactoring.MAX_TO) {
+			resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "Need 0 <= from <= to <= " + RangeFactoring.MAX_TO);
+			return;
+		}
+
+		resp.setContentType("text/plain");
+		resp.setHeader("Cache-Control", "no-store");
+		OutputStream out = resp.getOutputStream();
+		StringBuilder lines = new StringBuilder(BUFFER_CHARS + 1024);
+		long[] next = { from };
+		try {
+			RangeFactoring.factor(from, to, Sieves.POOL,
+					Deadline.after(timeoutMillis, TimeUnit.MILLISECONDS), (n, factors, count) -> {
+						lines.append("Number: ").append(n).append(", Factors: ");
+						for (int k = 0; k < count; k++) {
+							lines.append(factors[k]).append(' ');
+						}
+						lines.append('\n');
+						next[0] = n + 1;
+						if (lines.length() >= BUFFER_CHARS) {
+							write(out, lines);
+						}
+					});
+		} catch (DeadlineExceededException e) {
+			lines.append("Stopped at: ").append(next[0]).append('\n');
+		} catch (IOException e) {
+			// The client went away; the remaining segments were cancelled and there is nobody left to tell.
+			return;
+		}
+		write(out, lines);
+	}
+
+	private static final class Sieves {
+		static final ForkJoinPool POOL = new ForkJoinPool(
+				Integer.getInteger("factor.range.parallelism", Runtime.getRuntime().availableProcessors()), pool -> {
+					ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+					thread.setName("factor-range-" + thread.getPoolIndex());
+					return thread;
+				}, null, false);
+	}
+
+	private static void write(OutputStream out, StringBuilder lines) throws IOException {
+		out.write(lines.toString().getBytes(StandardCharsets.US_ASCII));
+		lines.setLength(0);
+	}
+}
@@ -12,6 +12,8 @@ import javax.servlet.ServletResponse;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 
+import com.salih.chapter2.logging.RequestLog;
+
 @WebServlet("/factor/unsafeCounting")
 public class UnsafeCountingFactorizer extends HttpServlet {
 	private long count = 0;
@@ -53,7 +55,7 @@ public class UnsafeCountingFactorizer extends HttpServlet {
 		BigInteger i = extractFromRequest(servletRequest);
 		BigInteger[] factors = factor(i);
 		count++;
-		System.out.println("Count: " + getCount());
+		RequestLog.count(getCount());
 		encodeIntoResponse(servletResponse, factors);
 	}
 
@@ -5,6 +5,8 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import com.salih.chapter2.logging.RequestLog;
+
 @WebServlet("/lazyInitRace")
 public class LazyInitRace extends HttpServlet {
 	private ExpensiveObject instance = null;
@@ -48,6 +50,9 @@ public class LazyInitRace extends HttpServlet {
 	 * Instead of a single shared object, multiple instances are created. If you run this with JMeter,
 	 * you will see <b>different UUIDs</b> printed in the console, proving that the "Singleton" guarantee failed.
 	 * </p>
+	 * <p>
+	 * For the fix, keyed or not, see {@link com.salih.chapter2.lazy.LazyRegistry}.
+	 * </p>
 	 *
 	 * @param req  The servlet request
 	 * @param resp The servlet response
@@ -55,6 +60,6 @@ public class LazyInitRace extends HttpServlet {
 	@Override
 	protected void service(HttpServletRequest req, HttpServletResponse resp) {
 		ExpensiveObject expensiveObject = getInstance();
-		System.out.println("ID: " + expensiveObject.getId());
+		RequestLog.instanceId(expensiveObject.getId());
 	}
 }
@@ -13,6 +13,8 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import com.salih.chapter2.logging.RequestLog;
+
 @WebServlet("/factor/counting")
 public class CountingFactorizer extends HttpServlet {
 	private final AtomicLong count = new AtomicLong(0);
@@ -46,7 +48,7 @@ public class CountingFactorizer extends HttpServlet {
 		BigInteger i = extractFromRequest(req);
 		BigInteger[] factors = factor(i);
 		final long value = count.incrementAndGet();
-		System.out.println("Count: " + value);
+		RequestLog.count(value);
 		encodeIntoResponse(resp, factors);
 	}
 }
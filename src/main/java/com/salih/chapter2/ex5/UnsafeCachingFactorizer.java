@@ -3,7 +3,6 @@ package com.salih.chapter2.ex5;
 import static com.salih.chapter2.FactorizerUtil.encodeIntoResponse;
 import static com.salih.chapter2.FactorizerUtil.extractFromRequest;
 import static com.salih.chapter2.FactorizerUtil.factor;
-import static com.salih.chapter2.FactorizerUtil.getFactorsArrString;
 
 import java.io.IOException;
 import java.math.BigInteger;
@@ -14,6 +13,8 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import com.salih.chapter2.logging.RequestLog;
+
 @WebServlet("/factor/unsafeCaching")
 public class UnsafeCachingFactorizer extends HttpServlet {
 	private final AtomicReference<BigInteger> lastNumber = new AtomicReference<>();
@@ -64,13 +65,13 @@ public class UnsafeCachingFactorizer extends HttpServlet {
 		final BigInteger lastNum = lastNumber.get();
 		if (i.equals(lastNum)) {
 			final BigInteger[] factors = lastFactors.get();
-			System.out.println("Number: " + lastNum + ", Cached Factors: " + getFactorsArrString(factors));
+			RequestLog.factors(lastNum, factors, true);
 			encodeIntoResponse(resp, factors);
 		} else {
 			BigInteger[] factors = factor(i);
 			lastNumber.set(i);
 			lastFactors.set(factors);
-			System.out.println("Number: " + i + ", New Factors: " + getFactorsArrString(factors));
+			RequestLog.factors(i, factors, false);
 			encodeIntoResponse(resp, factors);
 		}
 	}
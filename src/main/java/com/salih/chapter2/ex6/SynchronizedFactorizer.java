@@ -3,7 +3,6 @@ package com.salih.chapter2.ex6;
 import static com.salih.chapter2.FactorizerUtil.encodeIntoResponse;
 import static com.salih.chapter2.FactorizerUtil.extractFromRequest;
 import static com.salih.chapter2.FactorizerUtil.factor;
-import static com.salih.chapter2.FactorizerUtil.getFactorsArrString;
 
 import java.io.IOException;
 import java.math.BigInteger;
@@ -13,8 +12,12 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import com.salih.chapter2.locks.ProbedLock;
+import com.salih.chapter2.logging.RequestLog;
+
 @WebServlet("/factor/synchronized")
 public class SynchronizedFactorizer extends HttpServlet {
+	private final ProbedLock lock = new ProbedLock("SynchronizedFactorizer.service");
 	private BigInteger lastNumber;
 	private BigInteger[] lastFactors;
 
@@ -23,8 +26,9 @@ public class SynchronizedFactorizer extends HttpServlet {
 	 * but at the cost of <b>Poor Concurrency</b>.
 	 * <p>
 	 * <b>The Fix (Thread Safety):</b>
-	 * By adding the {@code synchronized} keyword to the {@code service} method, we acquire the
-	 * intrinsic lock of the Servlet instance.
+	 * The whole {@code service} method runs under one lock of the Servlet instance. That is what the
+	 * {@code synchronized} keyword on the method would do; an explicit {@link ProbedLock} does the same, and also
+	 * shows in {@code /admin/locks} how long requests queue for it.
 	 * <ul>
 	 * <li>This makes the entire method one giant <b>Atomic Block</b>.</li>
 	 * <li>It is now impossible for "Thread B" to enter the method while "Thread A" is updating the cache.</li>
@@ -51,17 +55,22 @@ public class SynchronizedFactorizer extends HttpServlet {
 	 * @param resp The servlet response
 	 */
 	@Override
-	public synchronized void service(HttpServletRequest req, HttpServletResponse resp) throws IOException {
-		BigInteger i = extractFromRequest(req);
-		if (i.equals(lastNumber)) {
-			System.out.println("Number: " + lastNumber + ", Cached Factors: " + getFactorsArrString(lastFactors));
-			encodeIntoResponse(resp, lastFactors);
-		} else {
-			BigInteger[] factors = factor(i);
-			lastNumber = i;
-			lastFactors = factors;
-			System.out.println("Number: " + i + ", New Factors: " + getFactorsArrString(factors));
-			encodeIntoResponse(resp, factors);
+	public void service(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+		lock.lock();
+		try {
+			BigInteger i = extractFromRequest(req);
+			if (i.equals(lastNumber)) {
+				RequestLog.factors(lastNumber, lastFactors, true);
+				encodeIntoResponse(resp, lastFactors);
+			} else {
+				BigInteger[] factors = factor(i);
+				lastNumber = i;
+				lastFactors = factors;
+				RequestLog.factors(i, factors, false);
+				encodeIntoResponse(resp, factors);
+			}
+		} finally {
+			lock.unlock();
 		}
 	}
 }
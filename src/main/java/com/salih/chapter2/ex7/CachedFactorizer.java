@@ -2,8 +2,6 @@ package com.salih.chapter2.ex7;
 
 import static com.salih.chapter2.FactorizerUtil.encodeIntoResponse;
 import static com.salih.chapter2.FactorizerUtil.extractFromRequest;
-import static com.salih.chapter2.FactorizerUtil.factor;
-import static com.salih.chapter2.FactorizerUtil.getFactorsArrString;
 
 import java.io.IOException;
 import java.math.BigInteger;
@@ -13,12 +11,24 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import com.salih.chapter2.FactorizerUtil;
+import com.salih.chapter2.cache.SingleFlight;
+import com.salih.chapter2.locks.ProbedLock;
+import com.salih.chapter2.logging.RequestLog;
+
 @WebServlet("/factor/cached")
 public class CachedFactorizer extends HttpServlet {
 	private BigInteger lastNumber;
 	private BigInteger[] lastFactors;
 	private long hits;
 	private long cacheHits;
+	private final SingleFlight<BigInteger, BigInteger[]> inFlight = new SingleFlight<>();
+	private final ProbedLock lock = new ProbedLock("CachedFactorizer");
+
+	/** How many misses waited for another thread's computation of the same number instead of repeating it. */
+	public long getCoalescedMisses() {
+		return inFlight.coalescedCount();
+	}
 
 	/**
 	 * A <b>Thread-Safe and Performant</b> Servlet that uses fine-grained synchronization.
@@ -41,6 +51,16 @@ public class CachedFactorizer extends HttpServlet {
 	 * </ol>
 	 * </p>
 	 * <p>
+	 * Both blocks hold the same {@link ProbedLock}, which behaves like {@code synchronized (this)} and also shows
+	 * in {@code /admin/locks} whether these short sections really are short and uncontended.
+	 * </p>
+	 * <p>
+	 * <b>Coalescing Identical Misses:</b>
+	 * Because step 2 is unlocked, 100 threads that miss on the <i>same</i> number would all compute it until the
+	 * first result reaches the cache. The miss path therefore goes through a {@link SingleFlight}: the first thread
+	 * computes, and the others wait on its future instead of repeating the work.
+	 * </p>
+	 * <p>
 	 * <b>The Result:</b>
 	 * We achieve <b>Thread Safety</b> (no race conditions on the counters or cache) without sacrificing
 	 * <b>Liveness</b> (performance). The "Fast Lane" is guarded, but the "Slow Lane" is open to everyone.
@@ -53,25 +73,35 @@ public class CachedFactorizer extends HttpServlet {
 	protected void service(HttpServletRequest req, HttpServletResponse resp) throws IOException {
 		BigInteger i = extractFromRequest(req);
 		BigInteger[] factors = null;
+		long hitsSnapshot;
+		long cacheHitsSnapshot;
 
-		synchronized (this) {
+		lock.lock();
+		try {
 			++hits;
 			if (i.equals(lastNumber)) {
 				++cacheHits;
 				factors = lastFactors;
 			}
-			System.out.println("Hits: " + hits + ", Cache Hits: " + cacheHits);
+			hitsSnapshot = hits;
+			cacheHitsSnapshot = cacheHits;
+		} finally {
+			lock.unlock();
 		}
+		RequestLog.hits(hitsSnapshot, cacheHitsSnapshot);
 
 		if (factors == null) {
-			factors = factor(i);
-			synchronized (this) {
+			factors = inFlight.execute(i, FactorizerUtil::factor);
+			lock.lock();
+			try {
 				lastNumber = i;
 				lastFactors = factors;
+			} finally {
+				lock.unlock();
 			}
-			System.out.println("Number: " + i + ", New Factors: " + getFactorsArrString(factors));
+			RequestLog.factors(i, factors, false);
 		} else {
-			System.out.println("Number: " + i + ", Cached Factors: " + getFactorsArrString(factors));
+			RequestLog.factors(i, factors, true);
 		}
 
 		encodeIntoResponse(resp, factors);
@@ -0,0 +1,66 @@
+package com.salih.chapter2.ex8;
+
+import static com.salih.chapter2.FactorizerUtil.encodeIntoResponse;
+import static com.salih.chapter2.FactorizerUtil.extractFromRequest;
+import static com.salih.chapter2.FactorizerUtil.respondIfNotModified;
+
+import java.io.IOException;
+import java.math.BigInteger;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.salih.chapter2.FactorizerUtil;
+import com.salih.chapter2.cache.FactorCache;
+
+@WebServlet("/factor/boundedCache")
+public class BoundedCachingFactorizer extends HttpServlet {
+	private final FactorCache cache = FactorCache.shared();
+
+	public long getHits() {
+		return cache.hitCount();
+	}
+
+	public long getMisses() {
+		return cache.missCount();
+	}
+
+	public long getEvictions() {
+		return cache.evictionCount();
+	}
+
+	/**
+	 * A <b>Thread-Safe and Scalable</b> Servlet that caches many results instead of just the last one.
+	 * <p>
+	 * <b>The Problem with {@code CachedFactorizer}:</b>
+	 * It caches only {@code lastNumber}/{@code lastFactors}. With two clients alternating between two numbers,
+	 * every request is a miss. Its statistics ({@code hits}, {@code cacheHits}) also force every request
+	 * through {@code synchronized(this)}, even cache hits.
+	 * </p>
+	 * <p>
+	 * <b>How it works:</b>
+	 * <ul>
+	 * <li>All state lives in a {@link FactorCache}, a bounded concurrent map keyed by the requested number.
+	 * The servlet itself has no mutable fields, so there is <b>no lock</b> to contend on.</li>
+	 * <li>A hit is a lock-free read. A miss computes {@code factor(i)} once and publishes it for everyone.</li>
+	 * <li>When the bound is reached, W-TinyLFU evicts the entry least likely to be requested again.</li>
+	 * <li>Hits, misses and evictions are counted with striped counters, so statistics never serialize requests.</li>
+	 * <li>The cache stores the encoded body, so a hit is one write. Clients that send back the {@code ETag} they were
+	 * given get a bodiless 304 without even touching the cache.</li>
+	 * </ul>
+	 * </p>
+	 *
+	 * @param req  The servlet request
+	 * @param resp The servlet response
+	 */
+	@Override
+	protected void service(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+		BigInteger i = extractFromRequest(req);
+		if (respondIfNotModified(req, resp, i)) {
+			return;
+		}
+		encodeIntoResponse(req, resp, cache.get(i, FactorizerUtil::factor));
+	}
+}
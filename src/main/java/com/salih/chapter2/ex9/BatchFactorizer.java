@@ -0,0 +1,116 @@
+package com.salih.chapter2.ex9;
+
+import static com.salih.chapter2.FactorizerUtil.getFactorsArrString;
+import static com.salih.chapter2.FactorizerUtil.parseNumber;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.salih.chapter2.FactorizerUtil;
+import com.salih.chapter2.cache.FactorCache;
+import com.salih.chapter2.encoding.FactorResult;
+
+@WebServlet("/factor/batch")
+public class BatchFactorizer extends HttpServlet {
+	private static final int MAX_NUMBERS = Integer.getInteger("factor.batch.maxNumbers", 10_000);
+	private static final long MAX_CHARS = Long.getLong("factor.batch.maxChars", 1 << 20);
+
+	private final FactorCache cache = FactorCache.shared();
+
+	/**
+	 * A <b>Thread-Safe</b> Servlet that factors many numbers per request.
+	 * <p>
+	 * <b>The Problem:</b>
+	 * Sending one HTTP request per number means the per-request overhead (connection handling, parsing, servlet
+	 * dispatch) dominates the actual work for small numbers.
+	 * </p>
+	 * <p>
+	 * <b>How it works:</b>
+	 * <ul>
+	 * <li>The POST body holds the numbers, separated by whitespace or commas. It is tokenized as it is read, so a
+	 * body that is one enormous line is never buffered whole; more than {@code factor.batch.maxNumbers} numbers or
+	 * {@code factor.batch.maxChars} characters is rejected with 413 as soon as the limit is crossed. A token that is
+	 * not a number is answered as {@code 1}, like the single-number endpoints.</li>
+	 * <li>Duplicates inside the batch are removed first, so each distinct value is looked up once.</li>
+	 * <li>The distinct values are factored with a <b>parallel stream</b> (on the common fork/join pool) through the
+	 * shared {@link FactorCache}, so batches and the single-number endpoints warm the same cache.</li>
+	 * <li>The results are written back in <b>request order</b>, one line per input, duplicates included.</li>
+	 * </ul>
+	 * </p>
+	 * <p>
+	 * <b>Thread Safety:</b>
+	 * The servlet has no mutable state of its own. The parallel workers only read their input list and write to
+	 * a concurrent map, which is fully populated before the response is written.
+	 * </p>
+	 *
+	 * @param req  The servlet request
+	 * @param resp The servlet response
+	 */
+	@Override
+	protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+		List<BigInteger> numbers = readNumbers(req.getReader());
+		if (numbers == null) {
+			resp.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE,
+					"At most " + MAX_NUMBERS + " numbers and " + MAX_CHARS + " characters per batch");
+			return;
+		}
+
+		Map<BigInteger, FactorResult> results = new LinkedHashSet<>(numbers).parallelStream()
+				.collect(Collectors.toConcurrentMap(Function.identity(), n -> cache.get(n, FactorizerUtil::factor)));
+
+		resp.setContentType("text/plain");
+		PrintWriter out = resp.getWriter();
+		for (BigInteger n : numbers) {
+			out.print("Number: " + n + ", " + getFactorsArrString(results.get(n).factors()));
+		}
+	}
+
+	/** The numbers in the body, or {@code null} as soon as it holds too many of them or too many characters. */
+	private static List<BigInteger> readNumbers(Reader reader) throws IOException {
+		List<BigInteger> numbers = new ArrayList<>();
+		StringBuilder token = new StringBuilder();
+		char[] buffer = new char[8192];
+		long total = 0;
+		int read;
+		while ((read = reader.read(buffer)) != -1) {
+			total += read;
+			if (total > MAX_CHARS) {
+				return null;
+			}
+			for (int k = 0; k < read; k++) {
+				char c = buffer[k];
+				if (c == ',' || Character.isWhitespace(c)) {
+					if (!addToken(token, numbers)) {
+						return null;
+					}
+				} else {
+					token.append(c);
+				}
+			}
+		}
+		return addToken(token, numbers) ? numbers : null;
+	}
+
+	/** Moves a pending token into {@code numbers}; {@code false} once that would exceed {@code MAX_NUMBERS}. */
+	private static boolean addToken(StringBuilder token, List<BigInteger> numbers) {
+		if (token.length() == 0) {
+			return true;
+		}
+		numbers.add(parseNumber(token.toString()));
+		token.setLength(0);
+		return numbers.size() <= MAX_NUMBERS;
+	}
+}
@@ -0,0 +1,125 @@
+package com.salih.chapter2.lazy;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Builds one value per key, lazily and <b>exactly once</b>, for expensive keyed singletons.
+ * <p>
+ * <b>The Problem:</b>
+ * {@code LazyInitRace} shows that an unguarded "if null, create" builds more than one instance. The usual fixes
+ * each cost something:
+ * <ul>
+ * <li>{@code synchronized} on every call serializes even the reads that find the value already built.</li>
+ * <li>{@code ConcurrentHashMap.computeIfAbsent} runs the factory while holding the lock of the map bin. A slow
+ * construction blocks every other key hashed to that bin, and a factory that touches the map can deadlock.</li>
+ * </ul>
+ * </p>
+ * <p>
+ * <b>How it works:</b>
+ * <ul>
+ * <li>The map only ever stores a tiny {@link Holder}, inserted with {@code computeIfAbsent}. Creating a holder is
+ * cheap, so the bin lock is held for a few nanoseconds.</li>
+ * <li>The value is built inside the holder with <b>double-checked locking</b> on the holder's own monitor, so
+ * only threads asking for the <i>same</i> key ever wait for each other.</li>
+ * <li>The value is published with a <b>release</b> store and read with an <b>acquire</b> load: once a value is
+ * built, a read is a map lookup plus one acquire load, with no lock and no volatile write.</li>
+ * <li>If the factory throws, nothing is stored and the next caller tries again.</li>
+ * <li>{@link #prewarm} builds a set of keys in the background at startup, so the first requests find them
+ * ready.</li>
+ * </ul>
+ * </p>
+ */
+public final class LazyRegistry<K, V> {
+	private final ConcurrentMap<K, Holder<K, V>> holders = new ConcurrentHashMap<>();
+	private final Function<? super K, ? extends V> factory;
+	private final LongAdder constructions = new LongAdder();
+
+	public LazyRegistry(Function<? super K, ? extends V> factory) {
+		this.factory = factory;
+	}
+
+	/** Returns the value for {@code key}, building it first if no thread has yet. */
+	public V get(K key) {
+		Holder<K, V> holder = holders.get(key);
+		if (holder == null) {
+			holder = holders.computeIfAbsent(key, Holder::new);
+		}
+		return holder.get(this);
+	}
+
+	/** Returns the value for {@code key} if it has been built, without building it. */
+	public V getIfInitialized(K key) {
+		Holder<K, V> holder = holders.get(key);
+		return holder == null ? null : holder.peek();
+	}
+
+	/**
+	 * Builds the values for {@code keys} on {@code executor}. The returned future completes once all of them are
+	 * built, or exceptionally with the first failure; requests that arrive meanwhile simply wait for (or build) the
+	 * key they need.
+	 */
+	public CompletableFuture<Void> prewarm(Iterable<? extends K> keys, Executor executor) {
+		List<CompletableFuture<V>> builds = new ArrayList<>();
+		for (K key : keys) {
+			builds.add(CompletableFuture.supplyAsync(() -> get(key), executor));
+		}
+		return CompletableFuture.allOf(builds.toArray(new CompletableFuture<?>[0]));
+	}
+
+	/** How many times the factory has completed successfully. Equals the number of built keys. */
+	public long constructionCount() {
+		return constructions.sum();
+	}
+
+	private static final class Holder<K, V> {
+		private static final VarHandle VALUE;
+
+		static {
+			try {
+				VALUE = MethodHandles.lookup().findVarHandle(Holder.class, "value", Object.class);
+			} catch (ReflectiveOperationException e) {
+				throw new ExceptionInInitializerError(e);
+			}
+		}
+
+		private final K key;
+		private Object value;
+
+		Holder(K key) {
+			this.key = key;
+		}
+
+		@SuppressWarnings("unchecked")
+		V peek() {
+			return (V) VALUE.getAcquire(this);
+		}
+
+		V get(LazyRegistry<K, V> registry) {
+			V built = peek();
+			if (built != null) {
+				return built;
+			}
+			synchronized (this) {
+				built = peek();
+				if (built == null) {
+					built = registry.factory.apply(key);
+					if (built == null) {
+						throw new NullPointerException("factory returned null for " + key);
+					}
+					VALUE.setRelease(this, built);
+					registry.constructions.increment();
+				}
+				return built;
+			}
+		}
+	}
+}
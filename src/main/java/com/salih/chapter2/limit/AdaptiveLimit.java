@@ -0,0 +1,167 @@
+package com.salih.chapter2.limit;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * A concurrency limit that finds its own value by watching latency, instead of being a fixed pool size someone had
+ * to guess.
+ * <p>
+ * <b>The Problem:</b>
+ * A fixed limit is either too low (capacity left idle) or too high (requests queue, and latency grows without bound
+ * before anything fails). The right value depends on the hardware, the mix of numbers and what else is running, so
+ * it keeps moving.
+ * </p>
+ * <p>
+ * <b>How it works (gradient, with AIMD back-off):</b>
+ * <ul>
+ * <li>A request may start only while fewer than {@link #limit()} are in flight; the check is a CAS loop on an
+ * {@link AtomicInteger}, so admission never takes a lock.</li>
+ * <li>Completing requests add their round-trip time to {@link LongAdder}s. Every {@code window}, one of them
+ * (whoever wins a {@code tryLock}; the others just carry on) turns the window into a new limit.</li>
+ * <li>The window's average RTT is the <b>short</b> RTT; a slow moving average of it is the <b>long</b> RTT, the
+ * latency the endpoint has when it is not queueing. Their ratio is the <b>gradient</b>: around 1 when latency is
+ * flat, below 1 once the short RTT exceeds {@code tolerance} times the long one, which means requests have started
+ * to queue.</li>
+ * <li>The new limit is {@code limit * gradient + sqrt(limit)}, smoothed. With flat latency it keeps probing upwards
+ * by the square-root term; once queueing shows up, the gradient pulls it back down.</li>
+ * <li>A window in which a request was dropped (timed out or shed downstream) skips the gradient and cuts the limit
+ * by a fixed factor, the multiplicative decrease of AIMD.</li>
+ * <li>A window in which in-flight never came near the limit leaves it alone: the latency says nothing about a limit
+ * that was never reached, and growing it anyway would let it drift far above what the endpoint can take.</li>
+ * </ul>
+ * </p>
+ */
+public final class AdaptiveLimit {
+	private static final int MIN_SAMPLES = 10;
+	private static final double SMOOTHING = 0.2;
+	private static final double BACKOFF = 0.9;
+	private static final double LONG_WINDOWS = 100;
+
+	private final int minLimit;
+	private final int maxLimit;
+	private final long windowNanos;
+	private final double tolerance;
+	private final LongSupplier clock;
+
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private volatile int limit;
+
+	private final LongAdder rttSum = new LongAdder();
+	private final LongAdder samples = new LongAdder();
+	private final LongAdder drops = new LongAdder();
+	private final LongAccumulator peakInFlight = new LongAccumulator(Math::max, 0);
+
+	private final ReentrantLock updateLock = new ReentrantLock();
+	private volatile long windowEnd;
+	private double estimate;
+	private double longRtt;
+
+	AdaptiveLimit(int initialLimit, int minLimit, int maxLimit, long windowNanos, double tolerance,
+			LongSupplier clock) {
+		if (minLimit < 1 || maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+			throw new IllegalArgumentException(
+					"need 1 <= min <= initial <= max: " + minLimit + ", " + initialLimit + ", " + maxLimit);
+		}
+		this.minLimit = minLimit;
+		this.maxLimit = maxLimit;
+		this.windowNanos = windowNanos;
+		this.tolerance = tolerance;
+		this.clock = clock;
+		this.limit = initialLimit;
+		this.estimate = initialLimit;
+		this.windowEnd = clock.getAsLong() + windowNanos;
+	}
+
+	/**
+	 * A limit configured by {@code factor.limit.initial} (default 20), {@code factor.limit.min} (4),
+	 * {@code factor.limit.max} (1000), {@code factor.limit.windowMillis} (100) and
+	 * {@code factor.limit.tolerance} (1.5, how far the short RTT may rise above the long one before the limit shrinks).
+	 */
+	public static AdaptiveLimit fromSystemProperties() {
+		return new AdaptiveLimit(Integer.getInteger("factor.limit.initial", 20),
+				Integer.getInteger("factor.limit.min", 4), Integer.getInteger("factor.limit.max", 1000),
+				Long.getLong("factor.limit.windowMillis", 100) * 1_000_000,
+				Double.parseDouble(System.getProperty("factor.limit.tolerance", "1.5")), System::nanoTime);
+	}
+
+	/** Admits one more request if fewer than {@link #limit()} are in flight; pair each success with a release. */
+	public boolean tryAcquire() {
+		for (;;) {
+			int current = inFlight.get();
+			if (current >= limit) {
+				return false;
+			}
+			if (inFlight.compareAndSet(current, current + 1)) {
+				peakInFlight.accumulate(current + 1);
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Ends an admitted request that took {@code rttNanos}. {@code dropped} marks one that timed out or was turned
+	 * away further in: its latency is not a measurement of the endpoint, but its failure is a signal to back off.
+	 */
+	public void release(long rttNanos, boolean dropped) {
+		inFlight.decrementAndGet();
+		if (dropped) {
+			drops.increment();
+		} else {
+			rttSum.add(rttNanos);
+			samples.increment();
+		}
+		long now = clock.getAsLong();
+		if (now - windowEnd >= 0 && updateLock.tryLock()) {
+			try {
+				if (now - windowEnd >= 0 && update()) {
+					windowEnd = now + windowNanos;
+				}
+			} finally {
+				updateLock.unlock();
+			}
+		}
+	}
+
+	public int limit() {
+		return limit;
+	}
+
+	public int inFlight() {
+		return inFlight.get();
+	}
+
+	/** Closes the window and returns true, or returns false to keep collecting if it holds too little to judge. */
+	private boolean update() {
+		if (drops.sum() == 0 && samples.sum() < MIN_SAMPLES) {
+			return false;
+		}
+		long dropped = drops.sumThenReset();
+		long count = samples.sumThenReset();
+		long sum = rttSum.sumThenReset();
+		long peak = Math.max(peakInFlight.getThenReset(), inFlight.get());
+
+		if (dropped > 0) {
+			estimate *= BACKOFF;
+		} else {
+			double shortRtt = Math.max(1, (double) sum / count);
+			longRtt = longRtt == 0 ? shortRtt : longRtt + (shortRtt - longRtt) / LONG_WINDOWS;
+			if (longRtt / shortRtt > 2) {
+				// Latency has fallen well below the long average (a spike just ended); let the average catch up faster.
+				longRtt *= 0.95;
+			}
+			if (peak < estimate / 2) {
+				return true;
+			}
+			double gradient = Math.max(0.5, Math.min(1.0, tolerance * longRtt / shortRtt));
+			double target = estimate * gradient + Math.sqrt(estimate);
+			estimate = estimate * (1 - SMOOTHING) + target * SMOOTHING;
+		}
+		estimate = Math.max(minLimit, Math.min(maxLimit, estimate));
+		limit = (int) estimate;
+		return true;
+	}
+}
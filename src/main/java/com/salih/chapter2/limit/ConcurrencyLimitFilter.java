@@ -0,0 +1,182 @@
+package com.salih.chapter2.limit;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.HttpServletMapping;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.MappingMatch;
+
+import com.salih.chapter2.metrics.Metrics;
+import com.salih.chapter2.server.Readiness;
+
+/**
+ * Sheds load in front of every factorizer endpoint, so overload turns into quick 503s instead of an ever longer
+ * queue inside the container.
+ * <p>
+ * <b>The Problem:</b>
+ * The servlets accept every request they are given. Past their capacity the excess waits for a container thread or
+ * a lock, latency climbs for <i>everyone</i>, and by the time clients start timing out the server is busy computing
+ * answers nobody is waiting for.
+ * </p>
+ * <p>
+ * <b>How it works:</b>
+ * <ul>
+ * <li>Each servlet mapping has its own {@link AdaptiveLimit}, so {@code /factor/synchronized} queueing on its lock
+ * shrinks only its own limit and never takes admission slots from the others. Endpoints are keyed by the pattern the
+ * request matched, not by its path, and a path no servlet claims (which falls through to the container's default
+ * servlet) is passed on untracked: otherwise every made-up {@code /factor/...} URL would create a limit and its
+ * metrics, and nothing would ever remove them.</li>
+ * <li>A request over the limit is answered at once with 503 and {@code Retry-After}
+ * ({@code factor.limit.retryAfterSeconds}, default 1), without touching the servlet.</li>
+ * <li>An admitted request is released when its response is done: on return for ordinary servlets, and from an
+ * {@link AsyncListener} for asynchronous ones, whose container thread returns long before that. The listener is
+ * attached inside {@code startAsync()} itself, through a request wrapper, because a compute thread may complete the
+ * request before the servlet even returns to this filter. A response that ends in 503 (a deadline or a saturated
+ * lane further in) counts as a drop.</li>
+ * <li>Warm-up requests ({@link Readiness#isWarmup}, only while starting) pass unlimited and unmeasured: their
+ * latency comes from cold code and would teach the limit the wrong baseline.</li>
+ * </ul>
+ * </p>
+ * <p>
+ * {@code /metrics} exposes the current limit, in-flight count and rejections per path.
+ * {@code -Dfactor.limit.enabled=false} turns the filter off.
+ * </p>
+ */
+@WebFilter(urlPatterns = "/factor/*", asyncSupported = true)
+public class ConcurrencyLimitFilter implements Filter {
+	private static final boolean ENABLED = !"false".equals(System.getProperty("factor.limit.enabled"));
+	private static final String RETRY_AFTER = Integer.toString(Integer.getInteger("factor.limit.retryAfterSeconds", 1));
+
+	private final ConcurrentMap<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+	@Override
+	public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+			throws IOException, ServletException {
+		HttpServletRequest req = (HttpServletRequest) request;
+		HttpServletResponse resp = (HttpServletResponse) response;
+		if (!ENABLED || Readiness.isWarmup(req)) {
+			chain.doFilter(request, response);
+			return;
+		}
+		HttpServletMapping mapping = req.getHttpServletMapping();
+		if (mapping == null || mapping.getMappingMatch() == null || mapping.getMappingMatch() == MappingMatch.DEFAULT) {
+			chain.doFilter(request, response);
+			return;
+		}
+		Endpoint endpoint = endpoints.computeIfAbsent(mapping.getPattern(), Endpoint::new);
+		if (!endpoint.limit.tryAcquire()) {
+			endpoint.rejected.increment();
+			resp.setHeader("Retry-After", RETRY_AFTER);
+			resp.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Concurrency limit reached");
+			return;
+		}
+		Admission admission = new Admission(endpoint, resp);
+		try {
+			chain.doFilter(new AdmittedRequest(req, admission), response);
+		} finally {
+			if (!admission.async) {
+				admission.release(false);
+			}
+		}
+	}
+
+	private static boolean isDropped(HttpServletResponse resp) {
+		return resp.getStatus() == HttpServletResponse.SC_SERVICE_UNAVAILABLE;
+	}
+
+	/** Tells the admission it will end asynchronously the moment the servlet calls {@code startAsync()}. */
+	private static final class AdmittedRequest extends HttpServletRequestWrapper {
+		private final Admission admission;
+
+		AdmittedRequest(HttpServletRequest request, Admission admission) {
+			super(request);
+			this.admission = admission;
+		}
+
+		@Override
+		public AsyncContext startAsync() {
+			return admission.watch(super.startAsync());
+		}
+
+		@Override
+		public AsyncContext startAsync(ServletRequest request, ServletResponse response) {
+			return admission.watch(super.startAsync(request, response));
+		}
+	}
+
+	/** One admitted request; releases its slot exactly once, when the response is done. */
+	private static final class Admission implements AsyncListener {
+		private final Endpoint endpoint;
+		private final HttpServletResponse resp;
+		private final long start = System.nanoTime();
+		private final AtomicBoolean released = new AtomicBoolean();
+		private volatile boolean async;
+		private volatile boolean timedOut;
+
+		Admission(Endpoint endpoint, HttpServletResponse resp) {
+			this.endpoint = endpoint;
+			this.resp = resp;
+		}
+
+		AsyncContext watch(AsyncContext context) {
+			if (!async) {
+				async = true;
+				context.addListener(this);
+			}
+			return context;
+		}
+
+		void release(boolean timedOut) {
+			if (released.compareAndSet(false, true)) {
+				endpoint.limit.release(System.nanoTime() - start, timedOut || isDropped(resp));
+			}
+		}
+
+		@Override
+		public void onComplete(AsyncEvent event) {
+			release(timedOut);
+		}
+
+		@Override
+		public void onTimeout(AsyncEvent event) {
+			timedOut = true;
+		}
+
+		@Override
+		public void onError(AsyncEvent event) {
+		}
+
+		@Override
+		public void onStartAsync(AsyncEvent event) {
+			// startAsync() again (a re-dispatch) clears the listeners; stay registered for the new cycle.
+			event.getAsyncContext().addListener(this);
+		}
+	}
+
+	private static final class Endpoint {
+		final AdaptiveLimit limit = AdaptiveLimit.fromSystemProperties();
+		final LongAdder rejected;
+
+		Endpoint(String path) {
+			String labels = "path=\"" + path + "\"";
+			this.rejected = Metrics.counter("factor_limit_rejected_total", labels);
+			Metrics.gauge("factor_limit", labels, limit::limit);
+			Metrics.gauge("factor_limit_in_flight", labels, limit::inFlight);
+		}
+	}
+}
@@ -0,0 +1,238 @@
+package com.salih.chapter2.locks;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.salih.chapter2.metrics.LatencyHistogram;
+import com.salih.chapter2.metrics.Metrics;
+
+/**
+ * The statistics of every {@link ProbedLock} sharing one name: how often it is taken, how long threads wait for it
+ * and hold it, and who is waiting right now.
+ * <p>
+ * Probes are registered once per name, in {@code /metrics} (as {@code factor_lock_*}), in JMX and in
+ * {@code /admin/locks}. The JMX registrations are on the platform server, which outlives the webapp, so
+ * {@link LockProbeRegistrations} removes them when the webapp stops, and a probe that finds its name still taken
+ * (by a deployment that did not stop cleanly) replaces the stale registration.
+ * </p>
+ */
+public final class LockProbe implements LockProbeMXBean {
+	private static final ConcurrentMap<String, LockProbe> PROBES = new ConcurrentSkipListMap<>();
+	private static final int DEFAULT_SAMPLE_PERIOD = Integer.getInteger("factor.locks.samplePeriod", 0);
+
+	private final String name;
+	private final LongAdder acquisitions = new LongAdder();
+	private final LongAdder contended = new LongAdder();
+	private final LatencyHistogram waits;
+	private final LatencyHistogram holds;
+	private final ConcurrentMap<Thread, Long> waitingSince = new ConcurrentHashMap<>();
+	private volatile int samplePeriod = DEFAULT_SAMPLE_PERIOD;
+
+	private LockProbe(String name) {
+		this.name = name;
+		String labels = "lock=\"" + name + "\"";
+		this.waits = Metrics.histogram("factor_lock_wait_seconds", labels);
+		this.holds = Metrics.histogram("factor_lock_hold_seconds", labels);
+		Metrics.gauge("factor_lock_acquisitions_total", labels, acquisitions::sum);
+		Metrics.gauge("factor_lock_contended_total", labels, contended::sum);
+		Metrics.gauge("factor_lock_waiters", labels, waitingSince::size);
+	}
+
+	/** The probe for {@code name}, created and registered the first time it is asked for. */
+	static LockProbe named(String name) {
+		return PROBES.computeIfAbsent(name, LockProbe::create);
+	}
+
+	/** Every probe so far, ordered by name. */
+	public static Collection<LockProbe> all() {
+		return PROBES.values();
+	}
+
+	/** Registers (again) every probe created so far in JMX, after {@link #unregisterAll()}. */
+	static void registerAll() {
+		for (LockProbe probe : PROBES.values()) {
+			register(probe);
+		}
+	}
+
+	/** Removes every probe's JMX registration; the probes themselves keep counting. */
+	static void unregisterAll() {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		for (LockProbe probe : PROBES.values()) {
+			try {
+				server.unregisterMBean(objectName(probe.name));
+			} catch (InstanceNotFoundException e) {
+				// Never registered, or already replaced by a newer deployment's probe.
+			} catch (JMException e) {
+				// Nothing more to do on the way down.
+			}
+		}
+	}
+
+	private static LockProbe create(String name) {
+		LockProbe probe = new LockProbe(name);
+		register(probe);
+		return probe;
+	}
+
+	private static void register(LockProbe probe) {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			ObjectName objectName = objectName(probe.name);
+			try {
+				server.registerMBean(probe, objectName);
+			} catch (InstanceAlreadyExistsException e) {
+				// Left behind by a previous deployment's class loader (or ours, registered already): replace it.
+				server.unregisterMBean(objectName);
+				server.registerMBean(probe, objectName);
+			}
+		} catch (JMException e) {
+			// Lost a race with another registration of the same name; the metrics still work.
+		}
+	}
+
+	private static ObjectName objectName(String name) throws JMException {
+		return new ObjectName("com.salih:type=Lock,name=" + ObjectName.quote(name));
+	}
+
+	boolean sampleNext() {
+		int period = samplePeriod;
+		return period == 1 || period > 1 && ThreadLocalRandom.current().nextInt(period) == 0;
+	}
+
+	boolean isSampling() {
+		return samplePeriod > 0;
+	}
+
+	void acquired() {
+		acquisitions.increment();
+	}
+
+	void contended() {
+		contended.increment();
+	}
+
+	void waiting(Thread thread, long since) {
+		waitingSince.put(thread, since);
+	}
+
+	void waited(Thread thread, long since, long now) {
+		waitingSince.remove(thread);
+		waits.recordNanos(now - since);
+	}
+
+	void uncontended() {
+		waits.recordNanos(0);
+	}
+
+	void held(long nanos) {
+		holds.recordNanos(nanos);
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public long getAcquisitions() {
+		return acquisitions.sum();
+	}
+
+	@Override
+	public long getContendedAcquisitions() {
+		return contended.sum();
+	}
+
+	@Override
+	public long getSampledAcquisitions() {
+		return waits.count();
+	}
+
+	@Override
+	public double getWaitP50Micros() {
+		return micros(waits.percentileNanos(0.5));
+	}
+
+	@Override
+	public double getWaitP99Micros() {
+		return micros(waits.percentileNanos(0.99));
+	}
+
+	@Override
+	public double getMaxWaitMicros() {
+		return micros(waits.maxNanos());
+	}
+
+	@Override
+	public double getHoldP50Micros() {
+		return micros(holds.percentileNanos(0.5));
+	}
+
+	@Override
+	public double getHoldP99Micros() {
+		return micros(holds.percentileNanos(0.99));
+	}
+
+	@Override
+	public double getMaxHoldMicros() {
+		return micros(holds.maxNanos());
+	}
+
+	@Override
+	public int getCurrentWaiters() {
+		return waitingSince.size();
+	}
+
+	@Override
+	public double getLongestCurrentWaitMicros() {
+		Map.Entry<Thread, Long> longest = longestWaiter();
+		return longest == null ? 0 : micros(System.nanoTime() - longest.getValue());
+	}
+
+	@Override
+	public String getLongestWaiter() {
+		Map.Entry<Thread, Long> longest = longestWaiter();
+		return longest == null ? null : longest.getKey().getName();
+	}
+
+	@Override
+	public int getSamplePeriod() {
+		return samplePeriod;
+	}
+
+	@Override
+	public void setSamplePeriod(int period) {
+		if (period < 0) {
+			throw new IllegalArgumentException("period must not be negative: " + period);
+		}
+		samplePeriod = period;
+	}
+
+	private Map.Entry<Thread, Long> longestWaiter() {
+		Map.Entry<Thread, Long> longest = null;
+		for (Map.Entry<Thread, Long> entry : waitingSince.entrySet()) {
+			if (longest == null || entry.getValue() - longest.getValue() < 0) {
+				longest = entry;
+			}
+		}
+		return longest;
+	}
+
+	private static double micros(long nanos) {
+		return nanos / (double) TimeUnit.MICROSECONDS.toNanos(1);
+	}
+}
@@ -0,0 +1,39 @@
+package com.salih.chapter2.locks;
+
+/**
+ * The JMX view of a {@link LockProbe}, under {@code com.salih:type=Lock,name=<lock name>}. Times are in microseconds.
+ */
+public interface LockProbeMXBean {
+	String getName();
+
+	long getAcquisitions();
+
+	long getContendedAcquisitions();
+
+	long getSampledAcquisitions();
+
+	double getWaitP50Micros();
+
+	double getWaitP99Micros();
+
+	double getMaxWaitMicros();
+
+	double getHoldP50Micros();
+
+	double getHoldP99Micros();
+
+	double getMaxHoldMicros();
+
+	int getCurrentWaiters();
+
+	/** How long the thread that has waited longest so far, and is still waiting, has been waiting. */
+	double getLongestCurrentWaitMicros();
+
+	/** The name of that thread, or {@code null} if nobody is waiting. */
+	String getLongestWaiter();
+
+	/** 0 records nothing but counts; 1 times every acquisition; {@code n} times one in {@code n}. */
+	int getSamplePeriod();
+
+	void setSamplePeriod(int period);
+}
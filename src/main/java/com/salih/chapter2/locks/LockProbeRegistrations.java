@@ -0,0 +1,24 @@
+package com.salih.chapter2.locks;
+
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.servlet.annotation.WebListener;
+
+/**
+ * Removes the {@link LockProbe} MBeans when the application stops, and puts them back if it starts again in the same
+ * class loader. The platform MBean server outlives the webapp, and a registration left behind would keep the old
+ * class loader alive and show its frozen numbers in JMX.
+ */
+@WebListener
+public class LockProbeRegistrations implements ServletContextListener {
+
+	@Override
+	public void contextInitialized(ServletContextEvent event) {
+		LockProbe.registerAll();
+	}
+
+	@Override
+	public void contextDestroyed(ServletContextEvent event) {
+		LockProbe.unregisterAll();
+	}
+}
@@ -0,0 +1,54 @@
+package com.salih.chapter2.locks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Lists every {@link ProbedLock} with its counts, wait and hold percentiles and longest current waiter, worst
+ * waiters first, so the critical section to shrink next is the top line.
+ * <p>
+ * The page is read-only. Sampling is switched on or off through each lock's {@code SamplePeriod} attribute in JMX
+ * ({@code com.salih:type=Lock}), or for all of them at startup with {@code factor.locks.samplePeriod}, so an
+ * anonymous GET cannot change what the server does.
+ * </p>
+ */
+@WebServlet("/admin/locks")
+public class LocksServlet extends HttpServlet {
+	private static final String ROW = "%-28s %12s %10s %10s %10s %10s %10s %10s %8s  %s%n";
+
+	@Override
+	protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+		StringBuilder out = new StringBuilder();
+		out.append(String.format(Locale.ROOT, ROW, "lock", "acquired", "contended", "wait p50", "wait p99",
+				"wait max", "hold p50", "hold p99", "waiting", "longest waiter (us)"));
+		LockProbe.all().stream()
+				.sorted((a, b) -> Double.compare(b.getWaitP99Micros(), a.getWaitP99Micros()))
+				.forEach(probe -> out.append(String.format(Locale.ROOT, ROW, probe.getName(),
+						probe.getAcquisitions(), probe.getContendedAcquisitions(),
+						micros(probe.getWaitP50Micros()), micros(probe.getWaitP99Micros()),
+						micros(probe.getMaxWaitMicros()), micros(probe.getHoldP50Micros()),
+						micros(probe.getHoldP99Micros()), probe.getCurrentWaiters(),
+						probe.getLongestWaiter() == null ? "-"
+								: probe.getLongestWaiter() + " " + micros(probe.getLongestCurrentWaitMicros()))));
+		out.append("times in microseconds; sample period ")
+				.append(LockProbe.all().stream().map(p -> p.getName() + "=" + p.getSamplePeriod())
+						.reduce((a, b) -> a + ", " + b).orElse("-"))
+				.append('\n');
+
+		byte[] body = out.toString().getBytes(StandardCharsets.UTF_8);
+		resp.setContentType("text/plain; charset=utf-8");
+		resp.setHeader("Cache-Control", "no-store");
+		resp.setContentLength(body.length);
+		resp.getOutputStream().write(body);
+	}
+
+	private static String micros(double value) {
+		return String.format(Locale.ROOT, "%.1f", value);
+	}
+}
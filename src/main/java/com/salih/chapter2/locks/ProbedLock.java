@@ -0,0 +1,75 @@
+package com.salih.chapter2.locks;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A mutual-exclusion lock that can tell you how much it costs: how often it is taken, how long threads wait for it,
+ * how long they hold it, and who has been waiting longest.
+ * <p>
+ * <b>The Problem:</b>
+ * A {@code synchronized} block is invisible in a latency profile. A request that spends 40 ms of its 50 ms waiting
+ * to enter one looks, from the outside, exactly like a request doing 50 ms of work, so there is no way to tell
+ * which critical sections are worth shrinking.
+ * </p>
+ * <p>
+ * <b>How it works:</b>
+ * <ul>
+ * <li>It behaves like an intrinsic lock: reentrant, non-fair, used as
+ * {@code lock.lock(); try { ... } finally { lock.unlock(); }} in place of {@code synchronized (this) { ... }}.</li>
+ * <li>Every lock with the same name reports into one {@link LockProbe}, so a lock per instance still adds up to
+ * one line per call site in {@code /metrics}, {@code /admin/locks} and JMX.</li>
+ * <li>With sampling off ({@code factor.locks.samplePeriod=0}, the default) the only extra cost is one volatile
+ * read and one striped counter increment per acquisition. Every acquisition first tries the lock without blocking,
+ * which is what {@code lock()} does first anyway, so contended acquisitions are counted whether sampled or not.</li>
+ * <li>If a sampled acquisition finds the lock taken, the thread registers itself as waiting (that is how the longest waiter is found), blocks, and records the wait once it gets in. The hold
+ * time is recorded when the outermost {@link #unlock()} releases it.</li>
+ * <li>The period can be changed at runtime through JMX, so sampling can be switched on for a few minutes under
+ * real load and off again.</li>
+ * </ul>
+ * </p>
+ */
+public final class ProbedLock {
+	private final ReentrantLock lock = new ReentrantLock();
+	private final LockProbe probe;
+	/** When the current hold started, if it is being sampled; 0 otherwise. Only touched by the holder. */
+	private long heldSince;
+
+	public ProbedLock(String name) {
+		this.probe = LockProbe.named(name);
+	}
+
+	public void lock() {
+		if (!probe.isSampling() || lock.isHeldByCurrentThread() || !probe.sampleNext()) {
+			if (!lock.tryLock()) {
+				probe.contended();
+				lock.lock();
+			}
+			probe.acquired();
+			return;
+		}
+		long start = System.nanoTime();
+		if (lock.tryLock()) {
+			probe.uncontended();
+		} else {
+			Thread current = Thread.currentThread();
+			probe.contended();
+			probe.waiting(current, start);
+			lock.lock();
+			probe.waited(current, start, System.nanoTime());
+		}
+		probe.acquired();
+		heldSince = System.nanoTime();
+	}
+
+	public void unlock() {
+		if (lock.getHoldCount() == 1 && heldSince != 0) {
+			probe.held(System.nanoTime() - heldSince);
+			heldSince = 0;
+		}
+		lock.unlock();
+	}
+
+	public LockProbe probe() {
+		return probe;
+	}
+}
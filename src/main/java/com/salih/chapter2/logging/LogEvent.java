@@ -0,0 +1,37 @@
+package com.salih.chapter2.logging;
+
+/**
+ * A fixed-shape, reusable log record. Request threads only copy primitives and references into it;
+ * turning it into text is left to the writer thread.
+ */
+final class LogEvent {
+	enum Kind {
+		COUNT,
+		HITS,
+		FACTORS,
+		INSTANCE_ID
+	}
+
+	interface Consumer {
+		void accept(LogEvent event);
+	}
+
+	Kind kind;
+	long a;
+	long b;
+	Object subject;
+	Object detail;
+
+	void set(Kind kind, long a, long b, Object subject, Object detail) {
+		this.kind = kind;
+		this.a = a;
+		this.b = b;
+		this.subject = subject;
+		this.detail = detail;
+	}
+
+	void clear() {
+		subject = null;
+		detail = null;
+	}
+}
@@ -0,0 +1,90 @@
+package com.salih.chapter2.logging;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded, lock-free, multi-producer / single-consumer ring of pre-allocated log events.
+ * <p>
+ * <b>Publishing (any request thread):</b>
+ * <ol>
+ * <li>Claim a sequence number with a CAS on {@code head}. If the ring is full, give up and count a drop:
+ * a request thread must <b>never</b> wait for the logger.</li>
+ * <li>Fill the slot's plain fields.</li>
+ * <li>Store the sequence number into {@code published} with release semantics ({@code lazySet}). That store is what
+ * makes the plain field writes visible to the consumer.</li>
+ * </ol>
+ * </p>
+ * <p>
+ * <b>Consuming (the single writer thread):</b>
+ * A slot is ready once its {@code published} entry (read with acquire semantics) equals the expected sequence.
+ * After reading it, the consumer clears the references and advances {@code tail}, which frees the slot for producers.
+ * </p>
+ */
+final class LogRingBuffer {
+	private final LogEvent[] slots;
+	private final int mask;
+	private final AtomicLong head = new AtomicLong();
+	private final AtomicLongArray published;
+	private final LongAdder dropped = new LongAdder();
+	private volatile long tail;
+
+	LogRingBuffer(int capacity) {
+		if (Integer.bitCount(capacity) != 1) {
+			throw new IllegalArgumentException("capacity must be a power of two: " + capacity);
+		}
+		this.slots = new LogEvent[capacity];
+		this.mask = capacity - 1;
+		this.published = new AtomicLongArray(capacity);
+		for (int k = 0; k < capacity; k++) {
+			slots[k] = new LogEvent();
+			published.set(k, -1);
+		}
+	}
+
+	boolean publish(LogEvent.Kind kind, long a, long b, Object subject, Object detail) {
+		long sequence;
+		do {
+			sequence = head.get();
+			if (sequence - tail >= slots.length) {
+				dropped.increment();
+				return false;
+			}
+		} while (!head.compareAndSet(sequence, sequence + 1));
+
+		int index = (int) sequence & mask;
+		slots[index].set(kind, a, b, subject, detail);
+		published.lazySet(index, sequence);
+		return true;
+	}
+
+	/** Whether the next event is ready to be drained. Must only be called from the consuming thread. */
+	boolean hasReady() {
+		long next = tail;
+		return published.get((int) next & mask) == next;
+	}
+
+	/** Hands every ready event, in order, to {@code consumer}. Must only be called from one thread. */
+	int drain(LogEvent.Consumer consumer, int max) {
+		long next = tail;
+		int drained = 0;
+		while (drained < max) {
+			int index = (int) next & mask;
+			if (published.get(index) != next) {
+				break;
+			}
+			LogEvent event = slots[index];
+			consumer.accept(event);
+			event.clear();
+			next++;
+			drained++;
+			tail = next;
+		}
+		return drained;
+	}
+
+	long droppedCount() {
+		return dropped.sum();
+	}
+}
@@ -0,0 +1,211 @@
+package com.salih.chapter2.logging;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import com.salih.chapter2.metrics.Metrics;
+
+/**
+ * Asynchronous, batched replacement for {@code System.out.println} on the request path.
+ * <p>
+ * <b>The Problem:</b>
+ * {@link java.io.PrintStream} is synchronized. With 100 request threads each printing a line built by string
+ * concatenation, the console lock (and the formatting) serializes the servlets more than the factoring does.
+ * </p>
+ * <p>
+ * <b>How it works:</b>
+ * <ul>
+ * <li>Request threads publish fixed-shape events into a lock-free {@link LogRingBuffer}; no string is built.</li>
+ * <li>One daemon writer thread drains the ring in batches, formats the events into a direct {@link ByteBuffer}
+ * and writes it to an NIO channel: stdout by default, or the file named by {@code factor.log.file}.</li>
+ * <li>With nothing to drain, the writer parks until the next event: a producer that finds it asleep unparks it. A
+ * wake-up can still be missed (the producer's release store may be seen after it checks), so the park is also
+ * bounded, at 100 ms; the worst case is a line that shows up that much later, never a stuck writer or a spin.</li>
+ * <li>If the ring is full the event is <b>dropped</b> (and counted), so logging never applies backpressure.</li>
+ * <li>{@code factor.log.sampleRate} (0.0 to 1.0, default 1.0) keeps only a fraction of the events.</li>
+ * </ul>
+ * </p>
+ */
+public enum RequestLog {
+	;
+
+	private static final double SAMPLE_RATE = Double.parseDouble(System.getProperty("factor.log.sampleRate", "1.0"));
+
+	public static void count(long count) {
+		publish(LogEvent.Kind.COUNT, count, 0, null, null);
+	}
+
+	public static void hits(long hits, long cacheHits) {
+		publish(LogEvent.Kind.HITS, hits, cacheHits, null, null);
+	}
+
+	public static void factors(BigInteger number, BigInteger[] factors, boolean cached) {
+		publish(LogEvent.Kind.FACTORS, cached ? 1 : 0, 0, number, factors);
+	}
+
+	public static void instanceId(Object id) {
+		publish(LogEvent.Kind.INSTANCE_ID, 0, 0, id, null);
+	}
+
+	private static void publish(LogEvent.Kind kind, long a, long b, Object subject, Object detail) {
+		if (SAMPLE_RATE < 1.0 && ThreadLocalRandom.current().nextDouble() >= SAMPLE_RATE) {
+			return;
+		}
+		Writer writer = Writer.INSTANCE;
+		if (writer.ring.publish(kind, a, b, subject, detail) && writer.asleep) {
+			LockSupport.unpark(writer.thread);
+		}
+	}
+
+	/** The single consumer. Created, and its thread started, on the first published event. */
+	static final class Writer implements Runnable {
+		static final Writer INSTANCE = start();
+
+		private static final int BATCH = 256;
+		private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+		final LogRingBuffer ring = new LogRingBuffer(Integer.getInteger("factor.log.capacity", 1 << 14));
+		private final WritableByteChannel channel;
+		private final ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+		private final StringBuilder line = new StringBuilder(256);
+		private final LogEvent.Consumer formatter = this::format;
+		private volatile boolean running = true;
+		/** Set while the writer is (about to be) parked with nothing to do, so producers know to unpark it. */
+		volatile boolean asleep;
+		Thread thread;
+		private long reportedDrops;
+
+		private Writer(WritableByteChannel channel) {
+			this.channel = channel;
+		}
+
+		private static Writer start() {
+			Writer writer = new Writer(openChannel(System.getProperty("factor.log.file")));
+			Metrics.gauge("factor_log_dropped_total", null, writer.ring::droppedCount);
+
+			Thread thread = new Thread(writer, "request-log-writer");
+			thread.setDaemon(true);
+			writer.thread = thread;
+			thread.start();
+			Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+				writer.running = false;
+				LockSupport.unpark(thread);
+				try {
+					thread.join(TimeUnit.SECONDS.toMillis(2));
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}, "request-log-flush"));
+			return writer;
+		}
+
+		private static WritableByteChannel openChannel(String file) {
+			if (file == null || file.isEmpty()) {
+				return Channels.newChannel(new FileOutputStream(FileDescriptor.out));
+			}
+			try {
+				return FileChannel.open(Paths.get(file),
+						StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		@Override
+		public void run() {
+			while (true) {
+				boolean stopping = !running;
+				int drained = ring.drain(formatter, BATCH);
+				reportDrops();
+				flush();
+				if (drained == 0) {
+					if (stopping) {
+						return;
+					}
+					idle();
+				}
+			}
+		}
+
+		private void idle() {
+			asleep = true;
+			// Re-checked after announcing the nap: an event published before that would otherwise wait out the park.
+			if (!ring.hasReady() && running) {
+				LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+			}
+			asleep = false;
+		}
+
+		private void format(LogEvent event) {
+			line.setLength(0);
+			switch (event.kind) {
+			case COUNT:
+				line.append("Count: ").append(event.a);
+				break;
+			case HITS:
+				line.append("Hits: ").append(event.a).append(", Cache Hits: ").append(event.b);
+				break;
+			case FACTORS:
+				line.append("Number: ").append(event.subject)
+						.append(event.a != 0 ? ", Cached Factors: " : ", New Factors: ")
+						.append("Factors: ");
+				for (BigInteger factor : (BigInteger[]) event.detail) {
+					line.append(factor).append(' ');
+				}
+				line.append('\n');
+				break;
+			case INSTANCE_ID:
+				line.append("ID: ").append(event.subject);
+				break;
+			}
+			line.append('\n');
+			append(line);
+		}
+
+		private void reportDrops() {
+			long drops = ring.droppedCount();
+			if (drops != reportedDrops) {
+				line.setLength(0);
+				line.append("[request-log] dropped ").append(drops - reportedDrops).append(" events\n");
+				reportedDrops = drops;
+				append(line);
+			}
+		}
+
+		private void append(CharSequence text) {
+			for (int k = 0; k < text.length(); k++) {
+				if (!buffer.hasRemaining()) {
+					flush();
+				}
+				buffer.put((byte) text.charAt(k));
+			}
+		}
+
+		private void flush() {
+			if (buffer.position() == 0) {
+				return;
+			}
+			buffer.flip();
+			try {
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+			} catch (IOException e) {
+				// Nowhere left to report a broken log sink; discard the batch rather than stall the writer.
+			}
+			buffer.clear();
+		}
+	}
+}
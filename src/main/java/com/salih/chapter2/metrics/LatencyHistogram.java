@@ -0,0 +1,108 @@
+package com.salih.chapter2.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free, fixed-memory latency histogram in the style of HdrHistogram.
+ * <p>
+ * <b>How it works (log-linear buckets):</b>
+ * Every power-of-two range of nanoseconds is split into {@value #SUB_BUCKETS} equal sub-buckets. Values up to
+ * {@code 2 * SUB_BUCKETS} get a bucket each; after that, the bucket width doubles with each power of two. So the
+ * relative error is bounded by about 3% at every scale, from nanoseconds to hours, using one
+ * {@link AtomicLongArray} of fewer than 2000 slots.
+ * </p>
+ * <p>
+ * <b>Thread Safety:</b>
+ * Recording is a single atomic increment of one slot plus two {@link LongAdder} adds and, rarely, a CAS on the
+ * maximum. No locks are taken. Reading takes a snapshot slot by slot, so percentiles computed while other threads
+ * record are approximate, which is fine for monitoring.
+ * </p>
+ */
+public final class LatencyHistogram {
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+
+	public void recordNanos(long nanos) {
+		if (nanos < 0) {
+			nanos = 0;
+		}
+		counts.incrementAndGet(indexOf(nanos));
+		count.increment();
+		sum.add(nanos);
+		long currentMax = max.get();
+		while (nanos > currentMax && !max.compareAndSet(currentMax, nanos)) {
+			currentMax = max.get();
+		}
+	}
+
+	/** Records the time elapsed since {@code startNanos}, a value previously read from {@link System#nanoTime()}. */
+	public void recordSince(long startNanos) {
+		recordNanos(System.nanoTime() - startNanos);
+	}
+
+	public long count() {
+		return count.sum();
+	}
+
+	public long sumNanos() {
+		return sum.sum();
+	}
+
+	public long maxNanos() {
+		return max.get();
+	}
+
+	/** Returns (an upper bound of) the latency below which {@code quantile} of the recorded values fall. */
+	public long percentileNanos(double quantile) {
+		long[] snapshot = new long[BUCKETS];
+		long total = 0;
+		for (int k = 0; k < BUCKETS; k++) {
+			snapshot[k] = counts.get(k);
+			total += snapshot[k];
+		}
+		if (total == 0) {
+			return 0;
+		}
+
+		long rank = Math.max(1, (long) Math.ceil(quantile * total));
+		long seen = 0;
+		for (int k = 0; k < BUCKETS; k++) {
+			seen += snapshot[k];
+			if (seen >= rank) {
+				return Math.min(highestValueIn(k), max.get());
+			}
+		}
+		return max.get();
+	}
+
+	public double percentileSeconds(double quantile) {
+		return percentileNanos(quantile) / (double) TimeUnit.SECONDS.toNanos(1);
+	}
+
+	static int indexOf(long value) {
+		if (value < 2 * SUB_BUCKETS) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int shift = exponent - SUB_BUCKET_BITS;
+		return shift * SUB_BUCKETS + (int) (value >>> shift);
+	}
+
+	static long highestValueIn(int index) {
+		if (index < 2 * SUB_BUCKETS) {
+			return index;
+		}
+		int shift = index / SUB_BUCKETS - 1;
+		long lowest = (long) (index % SUB_BUCKETS + SUB_BUCKETS) << shift;
+		return lowest + (1L << shift) - 1;
+	}
+}
@@ -0,0 +1,162 @@
+package com.salih.chapter2.metrics;
+
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * The process-wide registry of counters, gauges and latency histograms.
+ * <p>
+ * <b>Hot Path vs. Registration:</b>
+ * Looking a metric up by name goes through a concurrent map, so callers on the request path look each metric up
+ * <b>once</b> (typically into a {@code static final} field) and then only touch the {@link LongAdder} or
+ * {@link LatencyHistogram} directly. Those are lock-free, so recording never serializes requests the way
+ * {@code System.out.println} inside {@code synchronized(this)} does.
+ * </p>
+ * <p>
+ * <b>Naming:</b>
+ * A series is identified by its name plus an optional, pre-formatted label string such as {@code stage="parse"}.
+ * {@link #writeText} renders every series in the Prometheus text exposition format. A histogram is a
+ * {@code summary} of quantiles, {@code _count} and {@code _sum}; its maximum is not part of that type, so it follows
+ * as a gauge family of its own, {@code <name>_max}.
+ * </p>
+ */
+public enum Metrics {
+	;
+
+	private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+	private static final ConcurrentNavigableMap<String, Series> SERIES = new ConcurrentSkipListMap<>();
+
+	public static LongAdder counter(String name, String labels) {
+		return ((CounterSeries) SERIES.computeIfAbsent(id(name, labels), id -> new CounterSeries(name, labels))).adder;
+	}
+
+	public static LatencyHistogram histogram(String name, String labels) {
+		return ((HistogramSeries) SERIES.computeIfAbsent(id(name, labels),
+				id -> new HistogramSeries(name, labels))).histogram;
+	}
+
+	/** Registers (or replaces) a value that is read only when the metrics are rendered. */
+	public static void gauge(String name, String labels, LongSupplier value) {
+		SERIES.put(id(name, labels), new GaugeSeries(name, labels, value));
+	}
+
+	public static void writeText(StringBuilder out) {
+		String lastName = null;
+		StringBuilder maxima = new StringBuilder();
+		for (Series series : SERIES.values()) {
+			if (!series.name.equals(lastName)) {
+				writeMaxima(out, lastName, maxima);
+				out.append("# TYPE ").append(series.name).append(' ').append(series.type()).append('\n');
+				lastName = series.name;
+			}
+			series.writeTo(out);
+			if (series instanceof HistogramSeries) {
+				((HistogramSeries) series).writeMaxTo(maxima);
+			}
+		}
+		writeMaxima(out, lastName, maxima);
+	}
+
+	/** Ends a histogram family with the {@code <name>_max} gauge family collected from its series. */
+	private static void writeMaxima(StringBuilder out, String name, StringBuilder maxima) {
+		if (maxima.length() > 0) {
+			out.append("# TYPE ").append(name).append("_max gauge\n").append(maxima);
+			maxima.setLength(0);
+		}
+	}
+
+	private static String id(String name, String labels) {
+		return labels == null || labels.isEmpty() ? name : name + '{' + labels + '}';
+	}
+
+	private abstract static class Series {
+		final String name;
+		final String labels;
+
+		Series(String name, String labels) {
+			this.name = name;
+			this.labels = labels == null ? "" : labels;
+		}
+
+		abstract String type();
+
+		abstract void writeTo(StringBuilder out);
+
+		void line(StringBuilder out, String suffix, String extraLabel, Object value) {
+			out.append(name).append(suffix);
+			if (!labels.isEmpty() || extraLabel != null) {
+				out.append('{').append(labels);
+				if (extraLabel != null) {
+					out.append(labels.isEmpty() ? "" : ",").append(extraLabel);
+				}
+				out.append('}');
+			}
+			out.append(' ').append(value).append('\n');
+		}
+	}
+
+	private static final class CounterSeries extends Series {
+		final LongAdder adder = new LongAdder();
+
+		CounterSeries(String name, String labels) {
+			super(name, labels);
+		}
+
+		@Override
+		String type() {
+			return "counter";
+		}
+
+		@Override
+		void writeTo(StringBuilder out) {
+			line(out, "", null, adder.sum());
+		}
+	}
+
+	private static final class GaugeSeries extends Series {
+		final LongSupplier value;
+
+		GaugeSeries(String name, String labels, LongSupplier value) {
+			super(name, labels);
+			this.value = value;
+		}
+
+		@Override
+		String type() {
+			return "gauge";
+		}
+
+		@Override
+		void writeTo(StringBuilder out) {
+			line(out, "", null, value.getAsLong());
+		}
+	}
+
+	private static final class HistogramSeries extends Series {
+		final LatencyHistogram histogram = new LatencyHistogram();
+
+		HistogramSeries(String name, String labels) {
+			super(name, labels);
+		}
+
+		@Override
+		String type() {
+			return "summary";
+		}
+
+		@Override
+		void writeTo(StringBuilder out) {
+			for (double q : QUANTILES) {
+				line(out, "", "quantile=\"" + q + "\"", histogram.percentileSeconds(q));
+			}
+			line(out, "_count", null, histogram.count());
+			line(out, "_sum", null, histogram.sumNanos() / 1e9);
+		}
+
+		void writeMaxTo(StringBuilder out) {
+			line(out, "_max", null, histogram.maxNanos() / 1e9);
+		}
+	}
+}
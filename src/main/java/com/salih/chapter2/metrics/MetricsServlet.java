@@ -0,0 +1,27 @@
+package com.salih.chapter2.metrics;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Exposes the {@link Metrics} registry in the Prometheus text format, for the scraper.
+ */
+@WebServlet("/metrics")
+public class MetricsServlet extends HttpServlet {
+
+	@Override
+	protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+		StringBuilder out = new StringBuilder(4096);
+		Metrics.writeText(out);
+		byte[] body = out.toString().getBytes(StandardCharsets.UTF_8);
+
+		resp.setContentType("text/plain; version=0.0.4; charset=utf-8");
+		resp.setContentLength(body.length);
+		resp.getOutputStream().write(body);
+	}
+}
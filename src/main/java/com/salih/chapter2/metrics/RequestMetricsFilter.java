@@ -0,0 +1,132 @@
+package com.salih.chapter2.metrics;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.HttpServletMapping;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.MappingMatch;
+
+/**
+ * Records a request count and an end-to-end latency histogram for every factorizer endpoint.
+ * <p>
+ * Endpoints are keyed by the servlet mapping the request matched, not by its path. A path no servlet claims (which
+ * falls through to the container's default servlet) is passed on unmeasured: otherwise every made-up
+ * {@code /factor/...} URL would create a counter and a histogram, and nothing would ever remove them.
+ * </p>
+ * <p>
+ * For asynchronous servlets the filter returns as soon as the request thread is released, long before the response
+ * is written, so their latency is recorded from an {@link AsyncListener} when the async context completes instead.
+ * As in {@link com.salih.chapter2.limit.ConcurrencyLimitFilter}, the listener is attached inside
+ * {@code startAsync()} itself, because a compute thread may complete the request before the servlet returns here.
+ * </p>
+ */
+@WebFilter(urlPatterns = "/factor/*", asyncSupported = true)
+public class RequestMetricsFilter implements Filter {
+	private final ConcurrentMap<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+	@Override
+	public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+			throws IOException, ServletException {
+		HttpServletRequest req = (HttpServletRequest) request;
+		HttpServletMapping mapping = req.getHttpServletMapping();
+		if (mapping == null || mapping.getMappingMatch() == null || mapping.getMappingMatch() == MappingMatch.DEFAULT) {
+			chain.doFilter(request, response);
+			return;
+		}
+		Timing timing = new Timing(endpoints.computeIfAbsent(mapping.getPattern(), Endpoint::new));
+		try {
+			chain.doFilter(new TimedRequest(req, timing), response);
+		} finally {
+			if (!timing.async) {
+				timing.record();
+			}
+		}
+	}
+
+	/** Tells the timing it will end asynchronously the moment the servlet calls {@code startAsync()}. */
+	private static final class TimedRequest extends HttpServletRequestWrapper {
+		private final Timing timing;
+
+		TimedRequest(HttpServletRequest request, Timing timing) {
+			super(request);
+			this.timing = timing;
+		}
+
+		@Override
+		public AsyncContext startAsync() {
+			return timing.watch(super.startAsync());
+		}
+
+		@Override
+		public AsyncContext startAsync(ServletRequest request, ServletResponse response) {
+			return timing.watch(super.startAsync(request, response));
+		}
+	}
+
+	/** One measured request; recorded when its response is done. */
+	private static final class Timing implements AsyncListener {
+		private final Endpoint endpoint;
+		private final long start = System.nanoTime();
+		private volatile boolean async;
+
+		Timing(Endpoint endpoint) {
+			this.endpoint = endpoint;
+		}
+
+		AsyncContext watch(AsyncContext context) {
+			if (!async) {
+				async = true;
+				context.addListener(this);
+			}
+			return context;
+		}
+
+		void record() {
+			endpoint.requests.increment();
+			endpoint.latency.recordSince(start);
+		}
+
+		@Override
+		public void onComplete(AsyncEvent event) {
+			record();
+		}
+
+		@Override
+		public void onTimeout(AsyncEvent event) {
+		}
+
+		@Override
+		public void onError(AsyncEvent event) {
+		}
+
+		@Override
+		public void onStartAsync(AsyncEvent event) {
+			// startAsync() again (a re-dispatch) clears the listeners; stay registered for the new cycle.
+			event.getAsyncContext().addListener(this);
+		}
+	}
+
+	private static final class Endpoint {
+		final LongAdder requests;
+		final LatencyHistogram latency;
+
+		Endpoint(String path) {
+			String labels = "path=\"" + path + "\"";
+			this.requests = Metrics.counter("factor_requests_total", labels);
+			this.latency = Metrics.histogram("factor_request_latency_seconds", labels);
+		}
+	}
+}
@@ -0,0 +1,30 @@
+package com.salih.chapter2.metrics;
+
+/**
+ * The stages every factorizer request passes through, each with its own latency histogram.
+ * <p>
+ * The histograms are resolved once, when this enum is initialized, so recording a stage is just
+ * {@code System.nanoTime()} plus a lock-free histogram update.
+ * </p>
+ */
+public enum Stage {
+	PARSE("parse"),
+	CACHE_LOOKUP("cache_lookup"),
+	FACTOR("factor"),
+	ENCODE("encode");
+
+	private final LatencyHistogram latency;
+
+	Stage(String label) {
+		this.latency = Metrics.histogram("factor_stage_latency_seconds", "stage=\"" + label + "\"");
+	}
+
+	/** Records the time elapsed since {@code startNanos}, a value previously read from {@link System#nanoTime()}. */
+	public void recordSince(long startNanos) {
+		latency.recordSince(startNanos);
+	}
+
+	public LatencyHistogram latency() {
+		return latency;
+	}
+}
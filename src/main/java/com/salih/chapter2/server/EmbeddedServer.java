@@ -0,0 +1,201 @@
+package com.salih.chapter2.server;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.math.BigInteger;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.eclipse.jetty.annotations.AnnotationConfiguration;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.util.resource.Resource;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.webapp.Configuration;
+import org.eclipse.jetty.webapp.WebAppContext;
+
+import com.salih.chapter2.FactorizerUtil;
+import com.salih.chapter2.cache.FactorCache;
+import com.salih.chapter2.metrics.Metrics;
+
+/**
+ * Runs the application in an embedded Jetty, and only reports it ready once it has been warmed up.
+ * <p>
+ * <b>The Problem:</b>
+ * Straight after a start, {@code factor()} and the encoders run interpreted, the cache is empty and the pools have
+ * no threads. The first few thousand requests pay for all of that, and a load balancer that routes to the instance
+ * as soon as its port opens hands that cost to real users.
+ * </p>
+ * <p>
+ * <b>How it works:</b>
+ * <ol>
+ * <li>{@link Readiness} is set to starting, then Jetty starts: the {@code @WebServlet}, {@code @WebFilter} and
+ * {@code @WebListener} classes are found by annotation scanning, exactly as in a servlet container.</li>
+ * <li>{@link Warmup} sends a synthetic workload through the loopback connector until throughput stops
+ * improving. Meanwhile {@link ReadinessFilter} turns other factor requests away with 503. Its numbers are
+ * synthetic, so nothing it computes is written to the {@link com.salih.chapter2.store.FactorStore}, and the shared
+ * cache is emptied once it is done: the compiled code stays, the made-up entries do not.</li>
+ * <li>If {@code factor.warmup.hotKeys} names a file (one number per line), those numbers are factored into the
+ * shared cache.</li>
+ * <li>Only then is the instance marked ready, and {@code /ready} starts answering 200.</li>
+ * </ol>
+ * Each phase is timed. The breakdown is printed, and exported as {@code factor_startup_millis} gauges, so
+ * time-to-full-throughput can be tracked from release to release.
+ * </p>
+ * <p>
+ * <b>Configuration (system properties):</b> {@code factor.server.port} (8080), {@code factor.server.host} (all
+ * interfaces), {@code factor.server.minThreads} (8), {@code factor.server.maxThreads} (200),
+ * {@code factor.server.idleTimeoutMillis} (30000), {@code factor.server.acceptQueueSize} (the OS default),
+ * {@code factor.server.acceptors} and {@code factor.server.selectors} (Jetty's defaults), plus the
+ * {@code factor.warmup.*} settings of {@link Warmup}. {@code factor.warmup.enabled=false} skips the warm-up.
+ * </p>
+ * <p>
+ * Run with {@code mvn -Pserve compile exec:exec}; JVM options go in {@code -Dserve.jvmArgs="..."}.
+ * </p>
+ */
+public final class EmbeddedServer implements AutoCloseable {
+	private final Server server;
+	private final ServerConnector connector;
+	private final Map<String, Long> phases = new LinkedHashMap<>();
+	private List<Double> warmupRounds = List.of();
+
+	private EmbeddedServer(int port) throws IOException {
+		QueuedThreadPool threads = new QueuedThreadPool(
+				Integer.getInteger("factor.server.maxThreads", 200),
+				Integer.getInteger("factor.server.minThreads", 8),
+				Integer.getInteger("factor.server.idleTimeoutMillis", 30_000));
+		threads.setName("factor-http");
+		this.server = new Server(threads);
+
+		this.connector = new ServerConnector(server,
+				Integer.getInteger("factor.server.acceptors", -1),
+				Integer.getInteger("factor.server.selectors", -1));
+		connector.setPort(port);
+		connector.setHost(System.getProperty("factor.server.host"));
+		connector.setIdleTimeout(Long.getLong("factor.server.idleTimeoutMillis", 30_000));
+		connector.setAcceptQueueSize(Integer.getInteger("factor.server.acceptQueueSize", 0));
+		server.addConnector(connector);
+
+		Resource classes = Resource.newResource(
+				EmbeddedServer.class.getProtectionDomain().getCodeSource().getLocation());
+		WebAppContext context = new WebAppContext();
+		context.setContextPath("/");
+		context.setBaseResource(classes);
+		// One class loader for launcher and application, so both see the same Readiness and FactorCache.
+		context.setParentLoaderPriority(true);
+		// Annotation scanning only: no webdefault.xml, so no default servlet publishing the class files.
+		context.setConfigurations(new Configuration[] { new AnnotationConfiguration() });
+		context.getMetaData().setWebInfClassesResources(List.of(classes));
+		server.setHandler(context);
+	}
+
+	public static void main(String[] args) throws Exception {
+		EmbeddedServer server = start(Integer.getInteger("factor.server.port", 8080));
+		long jvmStart = ManagementFactory.getRuntimeMXBean().getStartTime();
+		System.out.println(server.describeStartup(System.currentTimeMillis() - jvmStart));
+		Runtime.getRuntime().addShutdownHook(new Thread(server::close, "factor-server-shutdown"));
+		server.server.join();
+	}
+
+	/** Starts Jetty on {@code port} (0 picks a free one), warms it up and returns once it is ready. */
+	public static EmbeddedServer start(int port) throws Exception {
+		long start = System.nanoTime();
+		Readiness.markStarting();
+		EmbeddedServer server = new EmbeddedServer(port);
+		try {
+			server.server.start();
+			server.phase("jetty", start);
+
+			long phase = System.nanoTime();
+			if (!"false".equals(System.getProperty("factor.warmup.enabled"))) {
+				FactorCache cache = FactorCache.shared();
+				cache.setPersisting(false);
+				try {
+					Warmup warmup = new Warmup(URI.create("http://127.0.0.1:" + server.connector.getLocalPort()));
+					server.warmupRounds = warmup.run();
+					if (warmup.failureCount() > 0) {
+						System.err.println("Warm-up: " + warmup.failureCount() + " requests failed");
+					}
+				} finally {
+					// Only warm-up traffic has been let in so far, so everything cached is synthetic.
+					cache.invalidateAll();
+					cache.setPersisting(true);
+				}
+			}
+			server.phase("warmup", phase);
+
+			phase = System.nanoTime();
+			String hotKeys = System.getProperty("factor.warmup.hotKeys");
+			if (hotKeys != null) {
+				long preloaded = preload(Path.of(hotKeys));
+				Metrics.gauge("factor_startup_hot_keys", "", () -> preloaded);
+			}
+			server.phase("preload", phase);
+			server.phase("total", start);
+		} catch (Exception | Error e) {
+			server.close();
+			throw e;
+		}
+		Readiness.markReady();
+		return server;
+	}
+
+	public URI uri() {
+		return URI.create("http://localhost:" + connector.getLocalPort());
+	}
+
+	/** Milliseconds spent in each startup phase, in order, ending with {@code total}. */
+	public Map<String, Long> startupMillis() {
+		return phases;
+	}
+
+	/** Requests per second of each warm-up round. */
+	public List<Double> warmupRounds() {
+		return warmupRounds;
+	}
+
+	@Override
+	public void close() {
+		try {
+			server.stop();
+		} catch (Exception e) {
+			// Shutting down anyway; nothing useful to do with it.
+		}
+	}
+
+	private void phase(String name, long startNanos) {
+		long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+		phases.put(name, millis);
+		Metrics.gauge("factor_startup_millis", "phase=\"" + name + "\"", () -> millis);
+	}
+
+	private String describeStartup(long sinceJvmStartMillis) {
+		StringBuilder out = new StringBuilder("Ready on ").append(uri()).append(" after ")
+				.append(sinceJvmStartMillis).append(" ms since JVM start\n");
+		phases.forEach((name, millis) -> out.append(String.format("  %-8s %7d ms%n", name, millis)));
+		out.append("  warm-up rounds (req/s): ")
+				.append(warmupRounds.stream().map(r -> String.format("%.0f", r)).collect(Collectors.joining(" ")));
+		return out.toString();
+	}
+
+	/** Factors every number in {@code hotKeys} into the shared cache and returns how many there were. */
+	private static long preload(Path hotKeys) throws IOException {
+		FactorCache cache = FactorCache.shared();
+		List<BigInteger> numbers;
+		try (Stream<String> lines = Files.lines(hotKeys)) {
+			numbers = lines.map(String::trim)
+					.filter(line -> !line.isEmpty() && !line.startsWith("#"))
+					.map(FactorizerUtil::parseNumber)
+					.collect(Collectors.toList());
+		}
+		numbers.parallelStream().forEach(n -> cache.get(n, FactorizerUtil::factor));
+		return numbers.size();
+	}
+}
@@ -0,0 +1,68 @@
+package com.salih.chapter2.server;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.HexFormat;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Whether this instance should be sent traffic yet.
+ * <p>
+ * In a plain servlet container nothing ever marks the application as starting, so it is ready from the first
+ * request on. {@link EmbeddedServer} marks it as starting before it opens the port and ready once the warm-up is
+ * done; until then {@link ReadinessFilter} turns real traffic away and {@code /ready} answers 503, which is what a
+ * load balancer's health check looks at.
+ * </p>
+ */
+public enum Readiness {
+	;
+
+	/**
+	 * Marks the warm-up's own requests, which are let through while starting and are not admission-limited. Its value
+	 * must be this process's {@linkplain #warmupToken() token}, and it is honoured only until the instance is ready.
+	 * A fixed value, or a check on the remote address, would not do: behind a reverse proxy or sidecar on the same
+	 * host every request comes from loopback, and anyone could skip both the readiness check and the concurrency
+	 * limit.
+	 */
+	public static final String WARMUP_HEADER = "X-Factor-Warmup";
+
+	private static final byte[] WARMUP_TOKEN = newToken();
+
+	private static volatile boolean ready = true;
+
+	public static boolean isReady() {
+		return ready;
+	}
+
+	/** Whether {@code req} is one of the warm-up's requests: still starting, and carrying the right token. */
+	public static boolean isWarmup(HttpServletRequest req) {
+		return isWarmup(req.getHeader(WARMUP_HEADER), ready);
+	}
+
+	static boolean isWarmup(String header, boolean ready) {
+		// Constant-time, so the response time says nothing about how much of a guess was right.
+		return !ready && header != null
+				&& MessageDigest.isEqual(header.getBytes(StandardCharsets.US_ASCII), WARMUP_TOKEN);
+	}
+
+	/** The value {@link Warmup} sends in {@link #WARMUP_HEADER}: random, and new in every process. */
+	static String warmupToken() {
+		return new String(WARMUP_TOKEN, StandardCharsets.US_ASCII);
+	}
+
+	private static byte[] newToken() {
+		byte[] random = new byte[16];
+		new SecureRandom().nextBytes(random);
+		return HexFormat.of().formatHex(random).getBytes(StandardCharsets.US_ASCII);
+	}
+
+	static void markStarting() {
+		ready = false;
+	}
+
+	static void markReady() {
+		ready = true;
+	}
+}
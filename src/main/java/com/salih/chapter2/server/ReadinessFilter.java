@@ -0,0 +1,33 @@
+package com.salih.chapter2.server;
+
+import java.io.IOException;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Answers 503 with {@code Retry-After} to factor requests that arrive before the instance is {@link Readiness ready},
+ * so a client that ignores the health check is bounced rather than served by interpreted code and cold caches.
+ * Warm-up requests ({@link Readiness#isWarmup}) pass.
+ */
+@WebFilter(urlPatterns = "/factor/*", asyncSupported = true)
+public class ReadinessFilter implements Filter {
+
+	@Override
+	public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+			throws IOException, ServletException {
+		if (!Readiness.isReady() && !Readiness.isWarmup((HttpServletRequest) request)) {
+			HttpServletResponse resp = (HttpServletResponse) response;
+			resp.setHeader("Retry-After", "1");
+			resp.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Warming up");
+			return;
+		}
+		chain.doFilter(request, response);
+	}
+}
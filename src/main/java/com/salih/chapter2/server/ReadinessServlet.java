@@ -0,0 +1,26 @@
+package com.salih.chapter2.server;
+
+import java.io.IOException;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * The readiness probe: 200 once the instance should get traffic, 503 while it is still warming up.
+ */
+@WebServlet("/ready")
+public class ReadinessServlet extends HttpServlet {
+
+	@Override
+	protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+		boolean ready = Readiness.isReady();
+		byte[] body = (ready ? "ready\n" : "starting\n").getBytes();
+		resp.setStatus(ready ? HttpServletResponse.SC_OK : HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+		resp.setHeader("Cache-Control", "no-store");
+		resp.setContentType("text/plain");
+		resp.setContentLength(body.length);
+		resp.getOutputStream().write(body);
+	}
+}
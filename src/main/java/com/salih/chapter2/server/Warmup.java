@@ -0,0 +1,102 @@
+package com.salih.chapter2.server;
+
+import java.math.BigInteger;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.salih.chapter2.encoding.Format;
+
+/**
+ * A synthetic workload sent through the real HTTP stack until throughput stops improving.
+ * <p>
+ * <b>Why over HTTP?</b>
+ * Calling {@code factor()} in a loop would compile the factoring code, but not the connector, the filters, the
+ * cache lookup or the encoders, which are just as hot in production. Going through the loopback connector compiles
+ * exactly the code real requests run, and fills the connection and thread pools on the way.
+ * </p>
+ * <p>
+ * <b>How it works:</b>
+ * Rounds of {@code factor.warmup.roundRequests} requests, {@code factor.warmup.concurrency} at a time, cycle
+ * through {@code factor.warmup.paths} and every response {@link Format}. The numbers repeat (so both cache hits
+ * and misses are exercised) and a tenth of them do not fit in a {@code long} (so the {@link BigInteger} engine is
+ * compiled too). Warm-up ends once a round is less than {@value #TOLERANCE_PERCENT}% faster than the best so far,
+ * or after {@code factor.warmup.maxRounds}.
+ * </p>
+ */
+final class Warmup {
+	private static final int ROUND_REQUESTS = Integer.getInteger("factor.warmup.roundRequests", 2_000);
+	private static final int MAX_ROUNDS = Integer.getInteger("factor.warmup.maxRounds", 10);
+	private static final int CONCURRENCY = Integer.getInteger("factor.warmup.concurrency",
+			2 * Runtime.getRuntime().availableProcessors());
+	private static final String[] PATHS = System.getProperty("factor.warmup.paths", "/factor/boundedCache,/factor/async")
+			.split(",");
+	private static final int TOLERANCE_PERCENT = 5;
+	private static final int DISTINCT_NUMBERS = 500;
+	private static final Format[] FORMATS = Format.values();
+
+	private final URI base;
+	private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+	private final String[] numbers = new String[DISTINCT_NUMBERS];
+	private final LongAdder failures = new LongAdder();
+
+	Warmup(URI base) {
+		this.base = base;
+		Random random = new Random(42);
+		for (int k = 0; k < numbers.length; k++) {
+			numbers[k] = k % 10 == 0
+					? new BigInteger(70, random).setBit(69).toString()
+					: Long.toString(2 + random.nextInt(1_000_000));
+		}
+	}
+
+	/** Runs rounds until throughput settles; returns each round's requests per second. */
+	List<Double> run() throws InterruptedException {
+		List<Double> rounds = new ArrayList<>();
+		double best = 0;
+		for (int round = 0; round < MAX_ROUNDS; round++) {
+			double throughput = round(round);
+			rounds.add(throughput);
+			if (failures.sum() == (long) ROUND_REQUESTS * (round + 1)) {
+				break; // Nothing succeeds; more rounds will not help.
+			}
+			if (round > 0 && throughput < best * (100 + TOLERANCE_PERCENT) / 100) {
+				break;
+			}
+			best = Math.max(best, throughput);
+		}
+		return rounds;
+	}
+
+	long failureCount() {
+		return failures.sum();
+	}
+
+	private double round(int round) throws InterruptedException {
+		Semaphore permits = new Semaphore(CONCURRENCY);
+		long start = System.nanoTime();
+		for (int k = 0; k < ROUND_REQUESTS; k++) {
+			int n = round * ROUND_REQUESTS + k;
+			HttpRequest request = HttpRequest.newBuilder(
+					base.resolve(PATHS[n % PATHS.length] + "?number=" + numbers[n % numbers.length]))
+					.header(Readiness.WARMUP_HEADER, Readiness.warmupToken())
+					.header("Accept", FORMATS[n % FORMATS.length].contentType())
+					.build();
+			permits.acquire();
+			client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+				if (error != null || response.statusCode() != 200) {
+					failures.increment();
+				}
+				permits.release();
+			});
+		}
+		permits.acquire(CONCURRENCY);
+		return ROUND_REQUESTS / ((System.nanoTime() - start) / 1e9);
+	}
+}
@@ -0,0 +1,344 @@
+package com.salih.chapter2.store;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+
+import com.salih.chapter2.metrics.Metrics;
+
+/**
+ * A persistent, append-only store of factorizations, so a restarted server does not have to recompute its hot set.
+ * <p>
+ * <b>File layout:</b>
+ * An 8-byte magic header followed by records of the form
+ * {@code [int payloadLength][int crc32(payload)][payload]}, where the payload is
+ * {@code [int keyLength][key][int count]} followed by {@code count} times {@code [int length][factor]}, all numbers
+ * as {@link BigInteger#toByteArray()}.
+ * </p>
+ * <p>
+ * <b>How it works:</b>
+ * <ul>
+ * <li>On open, the file is <b>memory-mapped</b> and scanned once to build an in-heap index from number to record
+ * offset. Nothing is deserialized up front; factors are decoded from the mapping when they are asked for.</li>
+ * <li>The scan stops at the first record that is incomplete or fails its checksum, and the file is truncated
+ * there. A crash in the middle of a write can therefore cost the last batch, but never corrupts what came
+ * before it.</li>
+ * <li>{@link #append} only enqueues. A single daemon writer drains the queue in batches, writes each batch with one
+ * positional {@code write}, forces it to disk and only then publishes the new offsets in the index. A reader
+ * can never find an offset whose bytes are not on disk yet.</li>
+ * <li>When the queue is full, the entry is dropped (and counted): the store is a cache and must not slow the
+ * request thread down.</li>
+ * <li>A {@link FileLock} keeps a second process from appending to the same file.</li>
+ * </ul>
+ * </p>
+ * <p>
+ * A single mapping is limited to 2 GiB, so the store stops growing (and drops new entries) at that size.
+ * </p>
+ */
+public final class FactorStore implements AutoCloseable {
+	private static final long MAGIC = 0x4641435453544F31L; // "FACTSTO1"
+	private static final int HEADER = Long.BYTES;
+	private static final int RECORD_HEADER = 2 * Integer.BYTES;
+	private static final int MAX_PAYLOAD = 1 << 20;
+	private static final int BATCH = 512;
+	private static final long LINGER_MILLIS = 10;
+
+	private final FileChannel channel;
+	private final FileLock lock;
+	private final Map<BigInteger, Integer> index = new ConcurrentHashMap<>();
+	private final BlockingQueue<Entry> pending;
+	private final AtomicInteger unwritten = new AtomicInteger();
+	private final LongAdder dropped = new LongAdder();
+	private final Thread writer;
+	private volatile MappedByteBuffer mapped;
+	private volatile boolean running = true;
+	private volatile long writePosition;
+
+	private FactorStore(FileChannel channel, FileLock lock, int queueCapacity) throws IOException {
+		this.channel = channel;
+		this.lock = lock;
+		this.pending = new LinkedBlockingQueue<>(queueCapacity);
+		this.writePosition = recover();
+		this.mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, writePosition);
+		this.writer = new Thread(this::drain, "factor-store-writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * Opens (or creates) the store at {@code path}, recovering its index from whatever was durably written before.
+	 *
+	 * @throws IOException if the file cannot be opened, is not a factor store, or is in use by another process
+	 */
+	public static FactorStore open(Path path, int queueCapacity) throws IOException {
+		FileChannel channel = FileChannel.open(path,
+				StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			FileLock lock = channel.tryLock();
+			if (lock == null) {
+				throw new IOException(path + " is in use by another process");
+			}
+			return new FactorStore(channel, lock, queueCapacity);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/** Returns the stored factors of {@code number}, or {@code null} if they have not been persisted. */
+	public BigInteger[] get(BigInteger number) {
+		Integer offset = index.get(number);
+		if (offset == null) {
+			return null;
+		}
+		ByteBuffer buffer = covering(offset);
+		int position = offset + RECORD_HEADER;
+		int keyLength = buffer.getInt(position);
+		position += Integer.BYTES + keyLength;
+		BigInteger[] factors = new BigInteger[buffer.getInt(position)];
+		position += Integer.BYTES;
+		for (int k = 0; k < factors.length; k++) {
+			byte[] bytes = new byte[buffer.getInt(position)];
+			buffer.get(position + Integer.BYTES, bytes);
+			position += Integer.BYTES + bytes.length;
+			factors[k] = new BigInteger(bytes);
+		}
+		return factors;
+	}
+
+	/** Queues {@code factors} to be persisted in the background. Never blocks; dropped once the store is closed. */
+	public void append(BigInteger number, BigInteger[] factors) {
+		if (index.containsKey(number)) {
+			return;
+		}
+		if (!running) {
+			dropped.increment();
+			return;
+		}
+		unwritten.incrementAndGet();
+		if (!pending.offer(new Entry(number, factors))) {
+			unwritten.decrementAndGet();
+			dropped.increment();
+		}
+	}
+
+	public int size() {
+		return index.size();
+	}
+
+	public long droppedCount() {
+		return dropped.sum();
+	}
+
+	/** Bytes durably written, including the header. */
+	public long sizeInBytes() {
+		return writePosition;
+	}
+
+	public void registerMetrics(String name) {
+		String labels = "store=\"" + name + "\"";
+		Metrics.gauge("factor_store_entries", labels, this::size);
+		Metrics.gauge("factor_store_bytes", labels, this::sizeInBytes);
+		Metrics.gauge("factor_store_dropped_total", labels, this::droppedCount);
+	}
+
+	/**
+	 * Blocks until every entry queued before this call has been written and indexed, or the writer has stopped. For
+	 * tests and shutdown.
+	 */
+	public void flush() throws InterruptedException {
+		// An append racing with close() can still slip into the queue after the writer's last look at it.
+		while (unwritten.get() > 0 && writer.isAlive()) {
+			Thread.sleep(1);
+		}
+	}
+
+	/** Writes out everything still queued, then releases the file. */
+	@Override
+	public void close() throws IOException {
+		// No interrupt: it would close the channel under a write in progress. The writer notices within one linger.
+		running = false;
+		try {
+			writer.join(TimeUnit.SECONDS.toMillis(5));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		lock.release();
+		channel.close();
+	}
+
+	private void drain() {
+		List<Entry> batch = new ArrayList<>(BATCH);
+		while (running || !pending.isEmpty()) {
+			try {
+				Entry first = pending.poll(LINGER_MILLIS, TimeUnit.MILLISECONDS);
+				if (first == null) {
+					continue;
+				}
+				batch.add(first);
+			} catch (InterruptedException e) {
+				return;
+			}
+			pending.drainTo(batch, BATCH - 1);
+			try {
+				write(batch);
+			} catch (IOException e) {
+				dropped.add(batch.size());
+			} finally {
+				unwritten.addAndGet(-batch.size());
+				batch.clear();
+			}
+		}
+	}
+
+	private void write(List<Entry> batch) throws IOException {
+		List<byte[]> payloads = new ArrayList<>(batch.size());
+		int total = 0;
+		for (Entry entry : batch) {
+			byte[] payload = entry.encode();
+			if (payload.length > MAX_PAYLOAD) {
+				// Recovery would read an oversized record as corruption and truncate everything after it.
+				payload = null;
+				dropped.increment();
+			} else {
+				total += RECORD_HEADER + payload.length;
+			}
+			payloads.add(payload);
+		}
+		if (writePosition + total > Integer.MAX_VALUE) {
+			dropped.add(batch.size());
+			return;
+		}
+
+		ByteBuffer buffer = ByteBuffer.allocate(total);
+		int[] offsets = new int[batch.size()];
+		CRC32 crc = new CRC32();
+		for (int k = 0; k < payloads.size(); k++) {
+			byte[] payload = payloads.get(k);
+			if (payload == null) {
+				offsets[k] = -1;
+				continue;
+			}
+			offsets[k] = (int) writePosition + buffer.position();
+			crc.reset();
+			crc.update(payload);
+			buffer.putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+		}
+		buffer.flip();
+		long position = writePosition;
+		while (buffer.hasRemaining()) {
+			position += channel.write(buffer, position);
+		}
+		channel.force(false);
+		writePosition = position;
+
+		for (int k = 0; k < offsets.length; k++) {
+			if (offsets[k] >= 0) {
+				index.putIfAbsent(batch.get(k).number, offsets[k]);
+			}
+		}
+	}
+
+	/** Builds the index from the valid prefix of the file and cuts off anything after it. */
+	private long recover() throws IOException {
+		long size = channel.size();
+		if (size < HEADER) {
+			channel.truncate(0);
+			channel.write(ByteBuffer.allocate(HEADER).putLong(0, MAGIC), 0);
+			channel.force(true);
+			return HEADER;
+		}
+		MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, Integer.MAX_VALUE));
+		if (buffer.getLong(0) != MAGIC) {
+			throw new IOException("Not a factor store");
+		}
+
+		CRC32 crc = new CRC32();
+		int position = HEADER;
+		while (position + RECORD_HEADER <= buffer.capacity()) {
+			int length = buffer.getInt(position);
+			int end = position + RECORD_HEADER + length;
+			if (length <= 0 || length > MAX_PAYLOAD || end > buffer.capacity() || end < 0) {
+				break;
+			}
+			crc.reset();
+			crc.update(buffer.slice(position + RECORD_HEADER, length));
+			if ((int) crc.getValue() != buffer.getInt(position + Integer.BYTES)) {
+				break;
+			}
+			byte[] key = new byte[buffer.getInt(position + RECORD_HEADER)];
+			buffer.get(position + RECORD_HEADER + Integer.BYTES, key);
+			index.putIfAbsent(new BigInteger(key), position);
+			position = end;
+		}
+		if (position < size) {
+			channel.truncate(position);
+			channel.force(true);
+		}
+		return position;
+	}
+
+	/** The current mapping, remapped first if {@code offset} was written after it was taken. */
+	private ByteBuffer covering(int offset) {
+		MappedByteBuffer current = mapped;
+		if (offset + RECORD_HEADER <= current.capacity()
+				&& offset + RECORD_HEADER + current.getInt(offset) <= current.capacity()) {
+			return current;
+		}
+		synchronized (this) {
+			current = mapped;
+			try {
+				long size = channel.size();
+				if (size > current.capacity()) {
+					current = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+					mapped = current;
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			return current;
+		}
+	}
+
+	private static final class Entry {
+		final BigInteger number;
+		final BigInteger[] factors;
+
+		Entry(BigInteger number, BigInteger[] factors) {
+			this.number = number;
+			this.factors = factors;
+		}
+
+		byte[] encode() {
+			byte[] key = number.toByteArray();
+			byte[][] values = new byte[factors.length][];
+			int length = 2 * Integer.BYTES + key.length;
+			for (int k = 0; k < factors.length; k++) {
+				values[k] = factors[k].toByteArray();
+				length += Integer.BYTES + values[k].length;
+			}
+			ByteBuffer buffer = ByteBuffer.allocate(length);
+			buffer.putInt(key.length).put(key).putInt(values.length);
+			for (byte[] value : values) {
+				buffer.putInt(value.length).put(value);
+			}
+			return buffer.array();
+		}
+	}
+}
@@ -0,0 +1,112 @@
+package com.salih.bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.salih.chapter2.ex1.StatelessFactorizer;
+import com.salih.chapter2.ex4.CountingFactorizer;
+import com.salih.chapter2.ex5.UnsafeCachingFactorizer;
+import com.salih.chapter2.ex6.SynchronizedFactorizer;
+import com.salih.chapter2.ex7.CachedFactorizer;
+import com.salih.chapter2.ex8.BoundedCachingFactorizer;
+
+/**
+ * Drives each factorizer's {@code service} method directly (no HTTP, no Jetty), so the numbers reflect the
+ * synchronization strategy rather than the network stack.
+ * <p>
+ * Run one thread count at a time and compare the curves, with allocation rates:
+ * <pre>
+ * for t in 1 2 4 8 16; do
+ *   mvn -q -Pbench test-compile exec:exec -Dbench.args="FactorizerContention -t $t -prof gc -rf json -rff contention-$t.json"
+ * done
+ * </pre>
+ * Narrow the matrix with e.g. {@code -p strategy=CACHED,BOUNDED_CACHE -p keys=ZIPF}.
+ * </p>
+ */
+@BenchmarkMode(Mode.Throughput)
+// RequestLog would otherwise format and queue a line per request, which is not what this measures.
+@Fork(jvmArgsAppend = "-Dfactor.log.sampleRate=0")
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class FactorizerContentionBenchmark {
+
+	public enum Strategy {
+		/** No shared state: the upper bound. */
+		STATELESS(StatelessFactorizer::new),
+		/** An AtomicLong counter. */
+		COUNTING(CountingFactorizer::new),
+		/** Two AtomicReferences (racy, but lock-free). */
+		UNSAFE_CACHING(UnsafeCachingFactorizer::new),
+		/** One ProbedLock around the whole method. */
+		SYNCHRONIZED(SynchronizedFactorizer::new),
+		/** Two short sections under one ProbedLock around a one-entry cache. */
+		CACHED(CachedFactorizer::new),
+		/** The bounded W-TinyLFU cache. */
+		BOUNDED_CACHE(BoundedCachingFactorizer::new);
+
+		private final Supplier<HttpServlet> factory;
+
+		Strategy(Supplier<HttpServlet> factory) {
+			this.factory = factory;
+		}
+	}
+
+	private static final int KEYS_PER_THREAD = 1 << 12;
+	private static final AtomicInteger THREAD_SEEDS = new AtomicInteger();
+
+	@Param
+	public Strategy strategy;
+
+	@Param
+	public KeyDistribution keys;
+
+	@Param("1000000")
+	public long range;
+
+	private HttpServlet servlet;
+
+	@Setup(Level.Trial)
+	public void createServlet() {
+		servlet = strategy.factory.get();
+	}
+
+	@State(Scope.Thread)
+	public static class Client {
+		String[] sample;
+		final String[] current = new String[1];
+		HttpServletRequest request;
+		HttpServletResponse response;
+		int next;
+
+		@Setup(Level.Trial)
+		public void setUp(FactorizerContentionBenchmark benchmark) {
+			sample = benchmark.keys.sample(THREAD_SEEDS.incrementAndGet(), KEYS_PER_THREAD, benchmark.range);
+			request = new StubRequest(current);
+			response = new StubResponse();
+		}
+	}
+
+	@Benchmark
+	public void service(Client client) throws ServletException, IOException {
+		client.current[0] = client.sample[client.next++ & (KEYS_PER_THREAD - 1)];
+		servlet.service(client.request, client.response);
+	}
+}
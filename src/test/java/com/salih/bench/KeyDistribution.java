@@ -0,0 +1,86 @@
+package com.salih.bench;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * How the benchmarks pick the {@code number} parameter for each simulated request.
+ */
+public enum KeyDistribution {
+	/** Every number in {@code [2, range)} equally likely: almost every request is a cache miss. */
+	UNIFORM {
+		@Override
+		long next(Random random, long range, Zipf zipf) {
+			return 2 + (long) (random.nextDouble() * (range - 2));
+		}
+	},
+	/**
+	 * A Zipf(1.0) hot set: a few numbers take most of the traffic, like real users. The set has up to 10,000
+	 * numbers from {@code [2, range)}, the same for every thread.
+	 */
+	ZIPF {
+		@Override
+		long next(Random random, long range, Zipf zipf) {
+			int rank = Arrays.binarySearch(zipf.cdf, random.nextDouble());
+			return zipf.keys[Math.min(rank < 0 ? -rank - 1 : rank, zipf.keys.length - 1)];
+		}
+	},
+	/** One number for everyone, like the JMeter plan's {@code number=100}. */
+	SINGLE_HOT_KEY {
+		@Override
+		long next(Random random, long range, Zipf zipf) {
+			return 100;
+		}
+	};
+
+	private static final int ZIPF_RANKS = 10_000;
+	/** Fixed, so that every thread draws from the same hot set. */
+	private static final long ZIPF_SEED = 0x5A1F;
+
+	abstract long next(Random random, long range, Zipf zipf);
+
+	/**
+	 * Pre-generates {@code size} keys so that drawing them costs nothing during measurement.
+	 *
+	 * @throws IllegalArgumentException if {@code [2, range)} is empty and the distribution draws from it
+	 */
+	public String[] sample(long seed, int size, long range) {
+		if (this != SINGLE_HOT_KEY && range <= 2) {
+			throw new IllegalArgumentException("range must be above 2: " + range);
+		}
+		Random random = new Random(seed);
+		Zipf zipf = this == ZIPF ? new Zipf((int) Math.min(ZIPF_RANKS, range - 2), range) : null;
+		String[] keys = new String[size];
+		for (int k = 0; k < size; k++) {
+			keys[k] = Long.toString(next(random, range, zipf));
+		}
+		return keys;
+	}
+
+	/** The hot set, most popular first, and the cumulative probability of each rank. */
+	private static final class Zipf {
+		final double[] cdf;
+		final long[] keys;
+
+		Zipf(int ranks, long range) {
+			cdf = new double[ranks];
+			double total = 0;
+			for (int r = 0; r < ranks; r++) {
+				total += 1.0 / (r + 1);
+				cdf[r] = total;
+			}
+			for (int r = 0; r < ranks; r++) {
+				cdf[r] /= total;
+			}
+
+			Random random = new Random(ZIPF_SEED);
+			Set<Long> distinct = new LinkedHashSet<>();
+			while (distinct.size() < ranks) {
+				distinct.add(2 + (long) (random.nextDouble() * (range - 2)));
+			}
+			keys = distinct.stream().mapToLong(Long::longValue).toArray();
+		}
+	}
+}
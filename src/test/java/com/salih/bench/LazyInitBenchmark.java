@@ -0,0 +1,133 @@
+package com.salih.bench;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.salih.chapter2.lazy.LazyRegistry;
+
+/**
+ * Compares keyed lazy initialization strategies.
+ * <ul>
+ * <li>{@code read}: every key already built; measures the steady-state read path under contention.</li>
+ * <li>{@code coldStart}: a fresh container per iteration; all threads race to build {@code keys} values that each
+ * burn {@code constructionTokens} of CPU. This is where holding a lock during construction hurts.</li>
+ * </ul>
+ * Run with e.g. {@code mvn -q -Pbench test-compile exec:exec -Dbench.args="LazyInit -t 8"}.
+ */
+@State(Scope.Benchmark)
+public class LazyInitBenchmark {
+
+	public enum Strategy {
+		/** One monitor around a HashMap, taken on every call. */
+		SYNCHRONIZED {
+			@Override
+			IntFunction<Object> create(IntFunction<Object> factory) {
+				Map<Integer, Object> map = new HashMap<>();
+				return key -> {
+					synchronized (map) {
+						return map.computeIfAbsent(key, factory::apply);
+					}
+				};
+			}
+		},
+		/** One volatile slot per key, initialized with double-checked locking on the slot. */
+		DOUBLE_CHECKED {
+			@Override
+			IntFunction<Object> create(IntFunction<Object> factory) {
+				Slot[] slots = new Slot[MAX_KEYS];
+				for (int k = 0; k < MAX_KEYS; k++) {
+					slots[k] = new Slot();
+				}
+				return key -> slots[key].get(key, factory);
+			}
+		},
+		/** ConcurrentHashMap.computeIfAbsent, which builds under the bin lock. */
+		COMPUTE_IF_ABSENT {
+			@Override
+			IntFunction<Object> create(IntFunction<Object> factory) {
+				ConcurrentHashMap<Integer, Object> map = new ConcurrentHashMap<>();
+				return key -> map.computeIfAbsent(key, factory::apply);
+			}
+		},
+		REGISTRY {
+			@Override
+			IntFunction<Object> create(IntFunction<Object> factory) {
+				LazyRegistry<Integer, Object> registry = new LazyRegistry<>(factory::apply);
+				return registry::get;
+			}
+		};
+
+		abstract IntFunction<Object> create(IntFunction<Object> factory);
+	}
+
+	static final int MAX_KEYS = 1 << 12;
+
+	@Param
+	public Strategy strategy;
+
+	@Param("256")
+	public int keys;
+
+	@Param("10000")
+	public long constructionTokens;
+
+	private IntFunction<Object> lookup;
+
+	@Setup(Level.Iteration)
+	public void setUp() {
+		lookup = strategy.create(key -> {
+			Blackhole.consumeCPU(constructionTokens);
+			return new Object();
+		});
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public Object read() {
+		return lookup.apply(ThreadLocalRandom.current().nextInt(keys));
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public void coldStart(Blackhole blackhole) {
+		int offset = ThreadLocalRandom.current().nextInt(keys);
+		for (int k = 0; k < keys; k++) {
+			blackhole.consume(lookup.apply((offset + k) % keys));
+		}
+	}
+
+	static final class Slot {
+		private volatile Object value;
+
+		Object get(int key, IntFunction<Object> factory) {
+			Object v = value;
+			if (v == null) {
+				synchronized (this) {
+					v = value;
+					if (v == null) {
+						v = factory.apply(key);
+						value = v;
+					}
+				}
+			}
+			return v;
+		}
+	}
+}
@@ -0,0 +1,209 @@
+package com.salih.bench;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.Collection;
+import java.util.Locale;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * A response that discards everything written to it and remembers only its status. Like {@link StubRequest}, a plain
+ * class so that calling it allocates nothing.
+ */
+public final class StubResponse implements HttpServletResponse {
+	private final PrintWriter writer = new PrintWriter(Writer.nullWriter());
+	private final ServletOutputStream stream = new ServletOutputStream() {
+		@Override
+		public void write(int b) {
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+		}
+
+		@Override
+		public boolean isReady() {
+			return true;
+		}
+
+		@Override
+		public void setWriteListener(WriteListener writeListener) {
+		}
+	};
+	private int status = SC_OK;
+
+@Override
+	public void addCookie(Cookie cookie) {
+	}
+
+	@Override
+	public void addDateHeader(String name, long value) {
+	}
+
+	@Override
+	public void addHeader(String name, String value) {
+	}
+
+	@Override
+	public void addIntHeader(String name, int value) {
+	}
+
+	@Override
+	public boolean containsHeader(String name) {
+		return false;
+	}
+
+	@Override
+	public String encodeRedirectURL(String url) {
+		return null;
+	}
+
+	@Deprecated
+	@Override
+	public String encodeRedirectUrl(String url) {
+		return null;
+	}
+
+	@Override
+	public String encodeURL(String url) {
+		return null;
+	}
+
+	@Deprecated
+	@Override
+	public String encodeUrl(String url) {
+		return null;
+	}
+
+	@Override
+	public void flushBuffer() throws IOException {
+	}
+
+	@Override
+	public int getBufferSize() {
+		return 0;
+	}
+
+	@Override
+	public String getCharacterEncoding() {
+		return null;
+	}
+
+	@Override
+	public String getContentType() {
+		return null;
+	}
+
+	@Override
+	public String getHeader(String name) {
+		return null;
+	}
+
+	@Override
+	public Collection<String> getHeaderNames() {
+		return null;
+	}
+
+	@Override
+	public Collection<String> getHeaders(String name) {
+		return null;
+	}
+
+	@Override
+	public Locale getLocale() {
+		return null;
+	}
+
+	@Override
+	public ServletOutputStream getOutputStream() throws IOException {
+		return stream;
+	}
+
+	@Override
+	public int getStatus() {
+		return status;
+	}
+
+	@Override
+	public PrintWriter getWriter() throws IOException {
+		return writer;
+	}
+
+	@Override
+	public boolean isCommitted() {
+		return false;
+	}
+
+	@Override
+	public void reset() {
+	}
+
+	@Override
+	public void resetBuffer() {
+	}
+
+	@Override
+	public void sendError(int sc) throws IOException {
+		status = sc;
+	}
+
+	@Override
+	public void sendError(int sc, String msg) throws IOException {
+		status = sc;
+	}
+
+	@Override
+	public void sendRedirect(String location) throws IOException {
+	}
+
+	@Override
+	public void setBufferSize(int size) {
+	}
+
+	@Override
+	public void setCharacterEncoding(String env) {
+	}
+
+	@Override
+	public void setContentLength(int len) {
+	}
+
+	@Override
+	public void setContentLengthLong(long len) {
+	}
+
+	@Override
+	public void setContentType(String type) {
+	}
+
+	@Override
+	public void setDateHeader(String name, long value) {
+	}
+
+	@Override
+	public void setHeader(String name, String value) {
+	}
+
+	@Override
+	public void setIntHeader(String name, int value) {
+	}
+
+	@Override
+	public void setLocale(Locale locale) {
+	}
+
+	@Override
+	public void setStatus(int sc) {
+		status = sc;
+	}
+
+	@Deprecated
+	@Override
+	public void setStatus(int sc, String sm) {
+	}
+}
@@ -0,0 +1,53 @@
+package com.salih.chapter1.ex3;
+
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+public class SharedCounterTest extends TestCase {
+	private static final int THREADS = 8;
+	private static final int PER_THREAD = 100_000;
+
+	public void testCasCounterLosesNoUpdates() throws InterruptedException {
+		assertEquals(THREADS * (long) PER_THREAD, hammer(new CasCounter()).get());
+	}
+
+	public void testLongAdderCounterLosesNoUpdates() throws InterruptedException {
+		assertEquals(THREADS * (long) PER_THREAD, hammer(new LongAdderCounter()).get());
+	}
+
+	public void testPaddedCellCounterKeepsCellsOfFinishedThreads() throws InterruptedException {
+		assertEquals(THREADS * (long) PER_THREAD, hammer(new PaddedCellCounter()).get());
+	}
+
+	public void testShardedCounterExactReadLosesNoUpdates() throws InterruptedException {
+		ShardedCounter counter = new ShardedCounter(3, TimeUnit.HOURS.toNanos(1));
+		hammer(counter);
+		assertEquals(THREADS * (long) PER_THREAD, counter.exact());
+	}
+
+	public void testShardedCounterServesStaleReadsWithinRefreshInterval() {
+		ShardedCounter counter = new ShardedCounter(4, TimeUnit.HOURS.toNanos(1));
+		counter.increment();
+		assertEquals(1, counter.get());
+		counter.increment();
+		assertEquals(1, counter.get());
+		assertEquals(2, counter.exact());
+	}
+
+	private static SharedCounter hammer(SharedCounter counter) throws InterruptedException {
+		Thread[] threads = new Thread[THREADS];
+		for (int t = 0; t < THREADS; t++) {
+			threads[t] = new Thread(() -> {
+				for (int k = 0; k < PER_THREAD; k++) {
+					counter.increment();
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		return counter;
+	}
+}
@@ -0,0 +1,69 @@
+package com.salih.chapter2;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+/**
+ * Compares {@link FactorizerUtil#factor} against plain trial division on 40- to 64-bit semiprimes.
+ * <p>
+ * The original implementation looped up to {@code n} itself, so for a 40-bit semiprime it would run for roughly
+ * 10<sup>12</sup> iterations; it is not even worth timing. The baseline here is the best case for trial division,
+ * stopping at {@code sqrt(n)}, and it is only run up to 52 bits because beyond that it takes seconds per number.
+ * </p>
+ * <p>
+ * Run with {@code mvn test-compile exec:java -Dexec.mainClass=com.salih.chapter2.FactorizerBenchmark
+ * -Dexec.classpathScope=test}.
+ * </p>
+ */
+public class FactorizerBenchmark {
+	private static final int SAMPLES = 20;
+	private static final int BASELINE_MAX_BITS = 52;
+
+	public static void main(String[] args) {
+		Random random = new Random(7);
+		System.out.printf("%5s %18s %18s%n", "bits", "engine (us/op)", "trial div (us/op)");
+
+		for (int bits = 40; bits <= 64; bits += 4) {
+			BigInteger[] inputs = new BigInteger[SAMPLES];
+			for (int k = 0; k < SAMPLES; k++) {
+				inputs[k] = BigInteger.probablePrime(bits / 2, random)
+						.multiply(BigInteger.probablePrime(bits - bits / 2, random));
+			}
+
+			// Warm up the JIT so the first row does not measure the interpreter.
+			for (int round = 0; round < 50; round++) {
+				for (BigInteger n : inputs) {
+					FactorizerUtil.factor(n);
+				}
+			}
+
+			long start = System.nanoTime();
+			for (BigInteger n : inputs) {
+				FactorizerUtil.factor(n);
+			}
+			double engine = (System.nanoTime() - start) / 1_000.0 / SAMPLES;
+
+			String baseline = "-";
+			if (bits <= BASELINE_MAX_BITS) {
+				start = System.nanoTime();
+				for (BigInteger n : inputs) {
+					trialDivision(n.longValue());
+				}
+				baseline = String.format("%.1f", (System.nanoTime() - start) / 1_000.0 / SAMPLES);
+			}
+
+			System.out.printf("%5d %18.1f %18s%n", bits, engine, baseline);
+		}
+	}
+
+	private static long trialDivision(long n) {
+		long largest = 1;
+		for (long j = 2; j * j <= n; j++) {
+			while (n % j == 0) {
+				largest = j;
+				n /= j;
+			}
+		}
+		return Math.max(largest, n);
+	}
+}
@@ -0,0 +1,186 @@
+package com.salih.chapter2;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import junit.framework.TestCase;
+
+public class FactorizerUtilTest extends TestCase {
+
+	public void testNumbersBelowTwoHaveNoFactors() {
+		assertEquals(0, FactorizerUtil.factor(BigInteger.ONE).length);
+		assertEquals(0, FactorizerUtil.factor(BigInteger.ZERO).length);
+		assertEquals(0, FactorizerUtil.factor(BigInteger.valueOf(-12)).length);
+	}
+
+	public void testSmallNumbersMatchNaiveTrialDivision() {
+		for (long n = 2; n < 20_000; n++) {
+			assertEquals("n=" + n, naive(n), Arrays.asList(FactorizerUtil.factor(BigInteger.valueOf(n))));
+		}
+	}
+
+	public void testLongEdgeCases() {
+		assertFactors("9223372036854775807", "7", "7", "73", "127", "337", "92737", "649657");
+		assertFactors("4611686018427387904", repeat("2", 62));
+		assertFactors("9223372036854775783", "9223372036854775783");
+		assertFactors("1000000016000000063", "1000000007", "1000000009");
+	}
+
+	public void testExpiredDeadlineReturnsFactorsFoundSoFarAndCofactor() {
+		Deadline expired = Deadline.after(0, TimeUnit.NANOSECONDS);
+
+		Factorization partial = FactorizerUtil.factor(new BigInteger("16000000256000001008"), expired);
+		assertFalse(partial.isComplete());
+		assertEquals(Arrays.asList(repeat("2", 4)), Arrays.stream(partial.factors()).map(String::valueOf).collect(Collectors.toList()));
+		assertEquals(new BigInteger("1000000016000000063"), partial.cofactor());
+
+		BigInteger big = new BigInteger("23058430274673049930000");
+		partial = FactorizerUtil.factor(big, expired);
+		assertFalse(partial.isComplete());
+		BigInteger product = partial.cofactor();
+		for (BigInteger factor : partial.factors()) {
+			product = product.multiply(factor);
+		}
+		assertEquals(big, product);
+
+		try {
+			FactorizerUtil.factorWithin(big, expired);
+			fail();
+		} catch (DeadlineExceededException expected) {
+		}
+	}
+
+	public void testGenerousDeadlineCompletes() {
+		Factorization result = FactorizerUtil.factor(new BigInteger("23058430274673049930000"),
+				Deadline.after(1, TimeUnit.MINUTES));
+		assertTrue(result.isComplete());
+		assertTrue(Arrays.equals(FactorizerUtil.factor(new BigInteger("23058430274673049930000")), result.factors()));
+	}
+
+	public void testIncrementalFactoringReportsEveryFactorAsItIsFound() {
+		BigInteger big = new BigInteger("23058430274673049930000");
+		List<BigInteger> reported = new ArrayList<>();
+		Factorization result = FactorizerUtil.factor(big, Deadline.after(1, TimeUnit.MINUTES), reported::add);
+		assertTrue(result.isComplete());
+		reported.sort(null);
+		assertEquals(Arrays.asList(result.factors()), reported);
+	}
+
+	public void testCancellingStopsIncrementalFactoring() {
+		BigInteger big = new BigInteger("23058430274673049930000");
+		Deadline deadline = Deadline.after(1, TimeUnit.MINUTES);
+		Factorization partial = FactorizerUtil.factor(big, deadline, factor -> deadline.cancel());
+		assertFalse(partial.isComplete());
+		BigInteger product = partial.cofactor();
+		for (BigInteger factor : partial.factors()) {
+			product = product.multiply(factor);
+		}
+		assertEquals(big, product);
+
+		try {
+			Deadline.NONE.cancel();
+			fail();
+		} catch (UnsupportedOperationException expected) {
+		}
+	}
+
+	public void testLongInputsReportFactorsBeforeTheWholeNumberIsDone() {
+		// 2^4 * 1000000007 * 1000000009 fits a long: cancelling on the first 2 must stop the rho walk that follows.
+		Deadline deadline = Deadline.after(1, TimeUnit.MINUTES);
+		Factorization partial = FactorizerUtil.factor(new BigInteger("16000000256000001008"), deadline,
+				factor -> deadline.cancel());
+		assertFalse(partial.isComplete());
+		assertEquals(Arrays.asList(repeat("2", 4)), Arrays.stream(partial.factors()).map(String::valueOf).collect(Collectors.toList()));
+		assertEquals(new BigInteger("1000000016000000063"), partial.cofactor());
+	}
+
+	public void testCofactorsHandedToTheLongEngineReportAsTheyGo() {
+		// 2^10 * 1000000007 * 1000000009 is too wide for a long until seven 2s are divided out; the rest, three more
+		// 2s included, is finished by the long engine, which must report them before starting its rho walk.
+		BigInteger big = new BigInteger("1000000016000000063").shiftLeft(10);
+		Deadline deadline = Deadline.after(1, TimeUnit.MINUTES);
+		int[] reported = { 0 };
+		Factorization partial = FactorizerUtil.factor(big, deadline, factor -> {
+			if (++reported[0] == 10) {
+				deadline.cancel();
+			}
+		});
+		assertFalse(partial.isComplete());
+		assertEquals(10, partial.factors().length);
+		assertEquals(new BigInteger("1000000016000000063"), partial.cofactor());
+	}
+
+	public void testInputsWiderThanALongAreNotTruncated() {
+		assertFactors("9223372036854775808", repeat("2", 63));
+		assertFactors("18446744073709551557", "18446744073709551557");
+		assertFactors("18446744073709551615", "3", "5", "17", "257", "641", "65537", "6700417");
+		assertFactors("170141183460469231731687303715884105727", "170141183460469231731687303715884105727");
+		assertFactors("18446744073709551617", "274177", "67280421310721");
+		assertFactors("23058430274673049930000",
+				"2", "2", "2", "2", "5", "5", "5", "5", "1073741827", "2147483659");
+		assertFactors("618970029546210490727715547682472435322412993",
+				"1000000007", "1000000009", "618970019642690137449562111");
+	}
+
+	public void testRandomSemiprimesAndMixedProducts() {
+		Random random = new Random(42);
+		for (int bits = 20; bits <= 40; bits += 4) {
+			BigInteger p = BigInteger.probablePrime(bits, random);
+			BigInteger q = BigInteger.probablePrime(bits + 3, random);
+			BigInteger n = p.multiply(q).multiply(BigInteger.valueOf(360));
+
+			BigInteger[] factors = FactorizerUtil.factor(n);
+			BigInteger product = BigInteger.ONE;
+			for (int k = 0; k < factors.length; k++) {
+				assertTrue(factors[k].isProbablePrime(50));
+				assertTrue(k == 0 || factors[k - 1].compareTo(factors[k]) <= 0);
+				product = product.multiply(factors[k]);
+			}
+			assertEquals(n, product);
+		}
+	}
+
+	public void testParallelModeGivesTheSameResult() {
+		BigInteger n = new BigInteger("618970019642690137449562111")
+				.multiply(BigInteger.valueOf(1_000_000_007L))
+				.multiply(BigInteger.valueOf(1_000_000_009L))
+				.multiply(BigInteger.valueOf(4_294_967_311L));
+		assertTrue(n.bitLength() >= FactorizerUtil.PARALLEL_THRESHOLD_BITS);
+
+		assertEquals(Arrays.asList(FactorizerUtil.factor(n)), Arrays.asList(FactorizerUtil.factorInParallel(n)));
+	}
+
+	private static void assertFactors(String n, String... expected) {
+		BigInteger[] factors = FactorizerUtil.factor(new BigInteger(n));
+		List<String> actual = new ArrayList<>();
+		for (BigInteger factor : factors) {
+			actual.add(factor.toString());
+		}
+		assertEquals(Arrays.asList(expected), actual);
+	}
+
+	private static String[] repeat(String value, int times) {
+		String[] values = new String[times];
+		Arrays.fill(values, value);
+		return values;
+	}
+
+	private static List<BigInteger> naive(long n) {
+		List<BigInteger> factors = new ArrayList<>();
+		for (long j = 2; j * j <= n; j++) {
+			while (n % j == 0) {
+				factors.add(BigInteger.valueOf(j));
+				n /= j;
+			}
+		}
+		if (n > 1) {
+			factors.add(BigInteger.valueOf(n));
+		}
+		return factors;
+	}
+}
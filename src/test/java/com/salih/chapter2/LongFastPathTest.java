@@ -0,0 +1,59 @@
+package com.salih.chapter2;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+
+import junit.framework.TestCase;
+
+public class LongFastPathTest extends TestCase {
+
+	public void testParsesOnlyPlainNonNegativeLongs() {
+		assertEquals(0, LongFastPath.parseNonNegative("0"));
+		assertEquals(100, LongFastPath.parseNonNegative("100"));
+		assertEquals(Long.MAX_VALUE, LongFastPath.parseNonNegative("9223372036854775807"));
+		assertEquals(-1, LongFastPath.parseNonNegative("9223372036854775808"));
+		assertEquals(-1, LongFastPath.parseNonNegative("-5"));
+		assertEquals(-1, LongFastPath.parseNonNegative("+5"));
+		assertEquals(-1, LongFastPath.parseNonNegative("12a"));
+		assertEquals(-1, LongFastPath.parseNonNegative(""));
+		assertEquals(-1, LongFastPath.parseNonNegative(null));
+	}
+
+	public void testEncodesTheSameTextAsTheBigIntegerPath() {
+		LongFastPath buffers = LongFastPath.current();
+		long[] inputs = { 0, 1, 2, 100, 1_000_000_007L, 600_851_475_143L, Long.MAX_VALUE };
+		for (long n : inputs) {
+			int length = factorAndEncode(buffers, n);
+			String expected = FactorizerUtil.getFactorsArrString(FactorizerUtil.factor(BigInteger.valueOf(n))) + "\n";
+			assertEquals(expected, new String(buffers.bytes(), 0, length, StandardCharsets.US_ASCII));
+		}
+	}
+
+	public void testCommonPathDoesNotAllocate() {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		if (!threads.isThreadAllocatedMemorySupported()) {
+			return;
+		}
+		long thread = Thread.currentThread().getId();
+		LongFastPath buffers = LongFastPath.current();
+
+		for (int k = 0; k < 20_000; k++) {
+			factorAndEncode(buffers, LongFastPath.parseNonNegative("600851475143"));
+		}
+
+		long before = threads.getThreadAllocatedBytes(thread);
+		for (int k = 0; k < 10_000; k++) {
+			factorAndEncode(buffers, LongFastPath.parseNonNegative("600851475143"));
+		}
+		long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+		// A single BigInteger per call would already be ~400 KB here; allow a little noise from the measurement itself.
+		assertTrue("allocated " + allocated + " bytes", allocated < 16 * 1024);
+	}
+
+	private static int factorAndEncode(LongFastPath buffers, long n) {
+		buffers.factor(n);
+		return buffers.encode();
+	}
+}
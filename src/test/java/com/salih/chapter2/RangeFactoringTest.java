@@ -0,0 +1,98 @@
+package com.salih.chapter2;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+public class RangeFactoringTest extends TestCase {
+	private final ForkJoinPool pool = new ForkJoinPool(4);
+
+	@Override
+	protected void tearDown() {
+		pool.shutdownNow();
+	}
+
+	public void testMatchesFactorForSmallNumbers() throws IOException {
+		assertMatchesFactor(0, 5_000, 256);
+	}
+
+	public void testMatchesFactorAcrossManySegmentsOfLargeNumbers() throws IOException {
+		long from = 1_000_000_000_000L - 1_500;
+		assertMatchesFactor(from, from + 3_000, 100);
+	}
+
+	public void testKeptPrimesServeSmallerRangesAfterLargerOnes() throws IOException {
+		long from = 10_000_000_000_000L;
+		assertMatchesFactor(from, from + 1_000, 256);
+		assertMatchesFactor(0, 2_000, 256);
+		assertMatchesFactor(1_000_000, 1_002_000, 256);
+	}
+
+	public void testEmptyRangeReportsNothing() throws IOException {
+		RangeFactoring.factor(7, 7, 16, pool, Deadline.NONE, (n, factors, count) -> fail("reported " + n));
+	}
+
+	public void testSinkFailureStopsTheRange() {
+		long[] last = { -1 };
+		try {
+			RangeFactoring.factor(0, 1_000_000, 100, pool, Deadline.NONE, (n, factors, count) -> {
+				last[0] = n;
+				if (n == 250) {
+					throw new IOException("client went away");
+				}
+			});
+			fail();
+		} catch (IOException expected) {
+			assertEquals(250, last[0]);
+		}
+	}
+
+	public void testExpiredDeadlineStops() throws IOException {
+		Deadline deadline = Deadline.after(1, TimeUnit.MINUTES);
+		deadline.cancel();
+		try {
+			RangeFactoring.factor(0, 1_000, 100, pool, deadline, (n, factors, count) -> fail());
+			fail();
+		} catch (DeadlineExceededException expected) {
+		}
+	}
+
+	public void testRejectsBadRanges() throws IOException {
+		for (long[] range : new long[][] { { -1, 5 }, { 5, 4 }, { 0, RangeFactoring.MAX_TO + 1 } }) {
+			try {
+				RangeFactoring.factor(range[0], range[1], pool, Deadline.NONE, (n, factors, count) -> {
+				});
+				fail(Arrays.toString(range));
+			} catch (IllegalArgumentException expected) {
+			}
+		}
+	}
+
+	public void testRejectsNonPositiveSegmentSizes() throws IOException {
+		for (int segmentSize : new int[] { 0, -1 }) {
+			try {
+				RangeFactoring.factor(0, 10, segmentSize, pool, Deadline.NONE, (n, factors, count) -> {
+				});
+				fail("segment size " + segmentSize);
+			} catch (IllegalArgumentException expected) {
+			}
+		}
+	}
+
+	private void assertMatchesFactor(long from, long to, int segmentSize) throws IOException {
+		long[] expectedNext = { from };
+		RangeFactoring.factor(from, to, segmentSize, pool, Deadline.NONE, (n, factors, count) -> {
+			assertEquals(expectedNext[0]++, n);
+			BigInteger[] expected = FactorizerUtil.factor(BigInteger.valueOf(n));
+			assertEquals("factors of " + n, expected.length, count);
+			for (int k = 0; k < count; k++) {
+				assertEquals("factors of " + n, expected[k].longValueExact(), factors[k]);
+			}
+		});
+		assertEquals(to, expectedNext[0]);
+	}
+}
@@ -0,0 +1,48 @@
+package com.salih.chapter2;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Reports the build time and off-heap footprint of a full {@link SpfTable} for increasing pool sizes.
+ * <p>
+ * Run with {@code mvn test-compile exec:java -Dexec.mainClass=com.salih.chapter2.SpfTableBenchmark
+ * -Dexec.classpathScope=test -Dspf.bound=100000000}. Give the JVM enough direct memory
+ * ({@code -XX:MaxDirectMemorySize}) for one byte per number covered.
+ * </p>
+ */
+public class SpfTableBenchmark {
+
+	public static void main(String[] args) {
+		long bound = Long.getLong("spf.bound", 100_000_000L);
+		int cores = Runtime.getRuntime().availableProcessors();
+		System.out.printf("bound %,d%n%8s %12s %12s %14s%n", bound, "threads", "build (ms)", "speed-up", "footprint (MB)");
+
+		double single = 0;
+		for (int threads = 1; threads <= cores; threads <<= 1) {
+			ForkJoinPool pool = new ForkJoinPool(threads);
+			try {
+				// One throwaway build so the first row does not measure the interpreter.
+				SpfTable.eager(Math.min(bound, 1 << 24), pool);
+
+				long start = System.nanoTime();
+				SpfTable table = SpfTable.eager(bound, pool);
+				double millis = (System.nanoTime() - start) / 1e6;
+				if (threads == 1) {
+					single = millis;
+				}
+				System.out.printf("%8d %12.1f %12.2f %14d%n", threads, millis, single / millis, table.footprintBytes() >> 20);
+			} finally {
+				pool.shutdown();
+			}
+		}
+
+		SpfTable table = SpfTable.lazy(bound);
+		long[] out = new long[LongFactoring.MAX_FACTORS];
+		long start = System.nanoTime();
+		for (long n = bound - 1_000_000; n < bound; n++) {
+			table.factor(n, out);
+		}
+		System.out.printf("lazy: last 10^6 numbers factored in %.1f ms, %d of %d segments built (%d MB)%n",
+				(System.nanoTime() - start) / 1e6, table.builtSegments(), table.segmentCount(), table.footprintBytes() >> 20);
+	}
+}
@@ -0,0 +1,51 @@
+package com.salih.chapter2;
+
+import java.util.concurrent.ForkJoinPool;
+
+import junit.framework.TestCase;
+
+public class SpfTableTest extends TestCase {
+	private static final int BOUND = 300_001;
+
+	public void testEagerTableAgreesWithTheEngine() {
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			SpfTable table = SpfTable.eager(BOUND, pool);
+			assertEquals(table.segmentCount(), table.builtSegments());
+			assertAgreesWithEngine(table);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	public void testLazyTableBuildsOnlyTheSegmentsItTouches() {
+		SpfTable table = SpfTable.lazy(SpfTable.MAX_BOUND);
+		assertEquals(0, table.builtSegments());
+
+		long[] out = new long[LongFactoring.MAX_FACTORS];
+		long n = 4_294_967_291L; // the largest prime below 2^32
+		assertEquals(1, table.factor(n, out));
+		assertEquals(n, out[0]);
+
+		n = 65_521L * 65_537L; // both prime
+		assertEquals(2, table.factor(n, out));
+		assertEquals(65_521L, out[0]);
+		assertEquals(65_537L, out[1]);
+
+		// One segment per odd number looked up: 2^32 - 5, 65521 * 65537 and 65537.
+		assertEquals(3, table.builtSegments());
+		assertEquals(3L * 128 * 1024, table.footprintBytes());
+	}
+
+	private static void assertAgreesWithEngine(SpfTable table) {
+		long[] expected = new long[LongFactoring.MAX_FACTORS];
+		long[] actual = new long[LongFactoring.MAX_FACTORS];
+		for (long n = 2; n < BOUND; n++) {
+			int count = LongFactoring.factor(n, expected);
+			assertEquals(n + "", count, table.factor(n, actual));
+			for (int k = 0; k < count; k++) {
+				assertEquals(n + "", expected[k], actual[k]);
+			}
+		}
+	}
+}
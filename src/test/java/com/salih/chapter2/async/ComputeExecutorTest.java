@@ -0,0 +1,57 @@
+package com.salih.chapter2.async;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+public class ComputeExecutorTest extends TestCase {
+
+	public void testRejectsOnceThreadsAndQueueAreFull() throws Exception {
+		ThreadPoolExecutor pool = ComputeExecutor.newBounded("test", 1, 2);
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch started = new CountDownLatch(1);
+		try {
+			pool.execute(() -> {
+				started.countDown();
+				await(release);
+			});
+			assertTrue(started.await(5, TimeUnit.SECONDS));
+			pool.execute(() -> await(release));
+			pool.execute(() -> await(release));
+			try {
+				pool.execute(() -> fail("ran past a full queue"));
+				fail();
+			} catch (RejectedExecutionException expected) {
+			}
+			assertEquals(2, pool.getQueue().size());
+		} finally {
+			release.countDown();
+			pool.shutdown();
+		}
+		assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+		assertEquals(3, pool.getCompletedTaskCount());
+	}
+
+	public void testWorkersAreNamedDaemons() throws Exception {
+		ThreadPoolExecutor pool = ComputeExecutor.newBounded("test", 1, 1);
+		try {
+			Thread[] worker = new Thread[1];
+			pool.submit(() -> worker[0] = Thread.currentThread()).get(5, TimeUnit.SECONDS);
+			assertTrue(worker[0].isDaemon());
+			assertEquals("test-1", worker[0].getName());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
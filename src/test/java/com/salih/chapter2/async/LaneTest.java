@@ -0,0 +1,40 @@
+package com.salih.chapter2.async;
+
+import java.math.BigInteger;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+public class LaneTest extends TestCase {
+
+	public void testRoutesBySize() {
+		assertSame(Lane.FAST, Lane.of(BigInteger.TWO));
+		assertSame(Lane.FAST, Lane.of(BigInteger.ONE.shiftLeft(63)));
+		assertSame(Lane.SLOW, Lane.of(BigInteger.ONE.shiftLeft(64)));
+	}
+
+	public void testFastLaneRunsWhileSlowLaneIsBusy() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch slowStarted = new CountDownLatch(1);
+		CountDownLatch fastDone = new CountDownLatch(1);
+		long waitsBefore = Lane.FAST.waitTimes().count();
+		try {
+			Lane.SLOW.executor().execute(() -> {
+				slowStarted.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			});
+			assertTrue(slowStarted.await(5, TimeUnit.SECONDS));
+
+			Lane.FAST.executor().execute(fastDone::countDown);
+			assertTrue(fastDone.await(5, TimeUnit.SECONDS));
+			assertEquals(waitsBefore + 1, Lane.FAST.waitTimes().count());
+		} finally {
+			release.countDown();
+		}
+	}
+}
@@ -0,0 +1,129 @@
+package com.salih.chapter2.cache;
+
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.salih.chapter2.Deadline;
+import com.salih.chapter2.DeadlineExceededException;
+import com.salih.chapter2.FactorizerUtil;
+import com.salih.chapter2.encoding.FactorResult;
+import com.salih.chapter2.store.FactorStore;
+
+import junit.framework.TestCase;
+
+public class FactorCacheTest extends TestCase {
+
+	public void testCountsHitsAndMisses() {
+		FactorCache cache = new FactorCache(100);
+		AtomicInteger loads = new AtomicInteger();
+
+		for (int round = 0; round < 3; round++) {
+			cache.get(BigInteger.valueOf(12), n -> {
+				loads.incrementAndGet();
+				return new BigInteger[] { BigInteger.TWO, BigInteger.TWO, BigInteger.valueOf(3) };
+			});
+		}
+
+		assertEquals(1, loads.get());
+		assertEquals(1, cache.missCount());
+		assertEquals(2, cache.hitCount());
+	}
+
+	public void testSizeIsBounded() {
+		FactorCache cache = new FactorCache(50);
+		for (int n = 0; n < 1_000; n++) {
+			cache.put(BigInteger.valueOf(n), new BigInteger[0]);
+		}
+		cache.cleanUp();
+
+		assertTrue(cache.estimatedSize() <= 50);
+		assertTrue(cache.evictionCount() >= 950);
+	}
+
+	/** Two 30-bit primes: nothing below the rho stage finds either, so an expired deadline always stops it. */
+	private static final BigInteger SEMIPRIME = BigInteger.valueOf(1_000_000_007L * 998_244_353L);
+
+	public void testWaiterDoesNotInheritTheLeadersDeadline() throws Exception {
+		FactorCache cache = new FactorCache(100);
+		CountDownLatch leading = new CountDownLatch(1);
+		CompletableFuture<Throwable> leader = CompletableFuture.supplyAsync(() -> {
+			try {
+				cache.get(SEMIPRIME, n -> {
+					leading.countDown();
+					while (cache.coalescedCount() == 0) {
+						Thread.onSpinWait();
+					}
+					return FactorizerUtil.factorWithin(n, Deadline.after(0, TimeUnit.MILLISECONDS));
+				});
+				return null;
+			} catch (RuntimeException e) {
+				return e;
+			}
+		});
+		assertTrue(leading.await(5, TimeUnit.SECONDS));
+
+		FactorResult result = cache.get(SEMIPRIME, FactorizerUtil::factor);
+
+		assertTrue(leader.get(5, TimeUnit.SECONDS) instanceof DeadlineExceededException);
+		assertEquals(1, cache.coalescedCount());
+		assertEquals(BigInteger.valueOf(998_244_353L), result.factors()[0]);
+		assertEquals(BigInteger.valueOf(1_000_000_007L), result.factors()[1]);
+		assertSame(result, cache.getIfPresent(SEMIPRIME));
+	}
+
+	public void testExpiredLoadLeavesCacheAndStoreUntouched() throws Exception {
+		Path path = Files.createTempFile("factor-cache", ".log");
+		Files.delete(path);
+		try (FactorStore store = FactorStore.open(path, 100)) {
+			for (FactorCache cache : new FactorCache[] { new FactorCache(100, store),
+					FactorCache.offHeap(1 << 20, store) }) {
+				try {
+					cache.get(SEMIPRIME, n -> FactorizerUtil.factorWithin(n, Deadline.after(0, TimeUnit.MILLISECONDS)));
+					fail();
+				} catch (DeadlineExceededException expected) {
+				}
+				store.flush();
+
+				assertNull(cache.getIfPresent(SEMIPRIME));
+				assertEquals(0, cache.estimatedSize());
+				assertNull(store.get(SEMIPRIME));
+				assertEquals(0, store.size());
+			}
+		} finally {
+			Files.deleteIfExists(path);
+		}
+	}
+
+	public void testWarmupModeNeitherPersistsNorOutlivesInvalidateAll() throws Exception {
+		for (boolean offHeap : new boolean[] { false, true }) {
+			Path path = Files.createTempFile("factor-cache", ".log");
+			Files.delete(path);
+			try (FactorStore store = FactorStore.open(path, 100)) {
+				FactorCache cache = offHeap ? FactorCache.offHeap(1 << 20, store) : new FactorCache(100, store);
+				cache.setPersisting(false);
+				for (long n = 2; n < 50; n++) {
+					cache.get(BigInteger.valueOf(n), FactorizerUtil::factor);
+				}
+				cache.invalidateAll();
+				cache.cleanUp();
+				cache.setPersisting(true);
+				store.flush();
+
+				assertEquals(0, cache.estimatedSize());
+				assertNull(cache.getIfPresent(BigInteger.valueOf(12)));
+				assertEquals(0, store.size());
+
+				assertEquals(3, cache.get(BigInteger.valueOf(12), FactorizerUtil::factor).factors().length);
+				store.flush();
+				assertEquals(1, store.size());
+			} finally {
+				Files.deleteIfExists(path);
+			}
+		}
+	}
+}
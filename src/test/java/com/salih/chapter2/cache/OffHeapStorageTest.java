@@ -0,0 +1,81 @@
+package com.salih.chapter2.cache;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.salih.chapter2.FactorizerUtil;
+import com.salih.chapter2.encoding.FactorResult;
+import com.salih.chapter2.encoding.Format;
+
+import junit.framework.TestCase;
+
+public class OffHeapStorageTest extends TestCase {
+
+	public void testRoundTripKeepsFactorsAndEncodedBody() {
+		OffHeapStorage storage = new OffHeapStorage(1 << 20);
+		BigInteger n = new BigInteger("618970029546210490727715547682472435322412993");
+		storage.put(n, new FactorResult(n, FactorizerUtil.factor(n)));
+
+		FactorResult result = storage.getIfPresent(n);
+		assertTrue(Arrays.equals(FactorizerUtil.factor(n), result.factors()));
+		assertTrue(Arrays.equals(new FactorResult(n, result.factors()).body(Format.TEXT), result.body(Format.TEXT)));
+		assertNull(storage.getIfPresent(n.add(BigInteger.ONE)));
+		assertEquals(1, storage.hitCount());
+		assertEquals(1, storage.missCount());
+	}
+
+	public void testOldestSlabsAreRecycledWhenFull() {
+		OffHeapStorage storage = new OffHeapStorage(1 << 20);
+		int count = 200_000;
+		for (int k = 0; k < count; k++) {
+			BigInteger n = BigInteger.valueOf(k);
+			storage.put(n, new FactorResult(n, new BigInteger[] { n }));
+		}
+
+		assertTrue(storage.estimatedSize() < count);
+		assertEquals(count, storage.estimatedSize() + storage.evictionCount());
+		// The newest entries survive; the oldest went with their slabs.
+		assertNotNull(storage.peek(BigInteger.valueOf(count - 1)));
+		assertNull(storage.peek(BigInteger.ZERO));
+	}
+
+	public void testConcurrentReadersNeverSeeAnotherKeysRecord() throws InterruptedException {
+		OffHeapStorage storage = new OffHeapStorage(256 << 10);
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread(() -> {
+				try {
+					for (int k = 0; k < 50_000; k++) {
+						BigInteger n = BigInteger.valueOf(ThreadLocalRandom.current().nextInt(20_000));
+						FactorResult found = storage.getIfPresent(n);
+						if (found == null) {
+							storage.put(n, new FactorResult(n, new BigInteger[] { n, n }));
+						} else if (!found.factors()[1].equals(n)) {
+							throw new AssertionError(n + " -> " + Arrays.toString(found.factors()));
+						}
+					}
+				} catch (Throwable e) {
+					failure.compareAndSet(null, e);
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertNull(failure.get());
+	}
+
+	public void testFactorCacheCanRunOffHeap() {
+		FactorCache cache = FactorCache.offHeap(1 << 20, null);
+		cache.get(BigInteger.valueOf(360), FactorizerUtil::factor);
+		FactorResult result = cache.get(BigInteger.valueOf(360), n -> {
+			throw new AssertionError("should be cached");
+		});
+		assertEquals(6, result.factors().length);
+		assertEquals(1, cache.hitCount());
+	}
+}
@@ -0,0 +1,115 @@
+package com.salih.chapter2.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.salih.chapter2.Deadline;
+import com.salih.chapter2.DeadlineExceededException;
+
+import junit.framework.TestCase;
+
+public class SingleFlightTest extends TestCase {
+	private static final int THREADS = 8;
+
+	public void testConcurrentCallersShareOneComputation() throws Exception {
+		SingleFlight<String, Integer> flight = new SingleFlight<>();
+		AtomicInteger runs = new AtomicInteger();
+		CountDownLatch release = new CountDownLatch(1);
+
+		List<Future<Integer>> results = runConcurrently(() -> flight.execute("key", k -> {
+			runs.incrementAndGet();
+			await(release);
+			return 42;
+		}), flight, release);
+
+		for (Future<Integer> result : results) {
+			assertEquals(Integer.valueOf(42), result.get(5, TimeUnit.SECONDS));
+		}
+		assertEquals(1, runs.get());
+		assertEquals(THREADS - 1, flight.coalescedCount());
+	}
+
+	public void testFailureReachesEveryWaiterAndIsNotRemembered() throws Exception {
+		SingleFlight<String, Integer> flight = new SingleFlight<>();
+		CountDownLatch release = new CountDownLatch(1);
+
+		List<Future<Integer>> results = runConcurrently(() -> flight.execute("key", k -> {
+			await(release);
+			throw new IllegalStateException("boom");
+		}), flight, release);
+
+		for (Future<Integer> result : results) {
+			try {
+				result.get(5, TimeUnit.SECONDS);
+				fail("expected the loader's exception");
+			} catch (ExecutionException e) {
+				assertTrue(e.getCause() instanceof IllegalStateException);
+			}
+		}
+		assertEquals(Integer.valueOf(7), flight.execute("key", k -> 7));
+	}
+
+	public void testWaiterGivesUpAtItsOwnDeadlineWhileTheLeaderCarriesOn() throws Exception {
+		SingleFlight<String, Integer> flight = new SingleFlight<>();
+		CountDownLatch entered = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		ExecutorService pool = Executors.newSingleThreadExecutor();
+		try {
+			Future<Integer> leader = pool.submit(() -> flight.execute("key", k -> {
+				entered.countDown();
+				await(release);
+				return 42;
+			}));
+			assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+			long start = System.nanoTime();
+			try {
+				flight.execute("key", k -> 0, Deadline.after(100, TimeUnit.MILLISECONDS));
+				fail("waited past its deadline");
+			} catch (DeadlineExceededException expected) {
+			}
+			long waitedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+			assertTrue(waitedMillis + " ms", waitedMillis >= 90 && waitedMillis < 2_000);
+			assertFalse(leader.isDone());
+
+			release.countDown();
+			assertEquals(Integer.valueOf(42), leader.get(5, TimeUnit.SECONDS));
+			assertEquals(1, flight.executionCount());
+		} finally {
+			release.countDown();
+			pool.shutdown();
+		}
+	}
+
+	private static List<Future<Integer>> runConcurrently(Callable<Integer> call,
+			SingleFlight<String, Integer> flight, CountDownLatch release) throws InterruptedException {
+		ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+		List<Future<Integer>> results = new ArrayList<>();
+		for (int t = 0; t < THREADS; t++) {
+			results.add(pool.submit(call));
+		}
+		// Let every caller either start the computation or join it before the leader is allowed to finish.
+		while (flight.executionCount() + flight.coalescedCount() < THREADS) {
+			Thread.sleep(1);
+		}
+		release.countDown();
+		pool.shutdown();
+		return results;
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,143 @@
+package com.salih.chapter2.cluster;
+
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+import com.salih.chapter2.FactorizerUtil;
+import com.salih.chapter2.cache.FactorCache;
+import com.salih.chapter2.encoding.FactorResult;
+import com.salih.chapter2.encoding.Format;
+import com.sun.net.httpserver.HttpServer;
+
+import junit.framework.TestCase;
+
+public class ClusterCacheTest extends TestCase {
+
+	public void testEachNumberIsComputedOnceClusterWide() throws Exception {
+		try (LocalCluster cluster = new LocalCluster(3, 1_000, 100)) {
+			for (int round = 0; round < 3; round++) {
+				for (int n = 2; n < 200; n++) {
+					BigInteger number = BigInteger.valueOf(n * 1_000_003L);
+					ClusterCache node = cluster.nodes.get((n + round) % 3);
+					assertTrue(Arrays.equals(FactorizerUtil.factor(number), node.get(number).factors()));
+				}
+			}
+			assertEquals(198, cluster.computations());
+			assertEquals(0, cluster.nodes.stream().mapToLong(ClusterCache::fallbackCount).sum());
+		}
+	}
+
+	public void testNearCacheAvoidsRepeatedFetches() throws Exception {
+		try (LocalCluster cluster = new LocalCluster(2, 1_000, 100)) {
+			ClusterCache node = cluster.nodes.get(0);
+			BigInteger remote = BigInteger.valueOf(2);
+			while (node.ownerOf(remote).equals(cluster.urls.get(0))) {
+				remote = remote.add(BigInteger.ONE);
+			}
+			for (int k = 0; k < 10; k++) {
+				node.get(remote);
+			}
+			assertEquals(1, node.fetchCount());
+			assertEquals(0, node.computationCount());
+		}
+	}
+
+	public void testDeadOwnerFallsBackToComputingLocally() throws Exception {
+		try (LocalCluster cluster = new LocalCluster(2, 1_000, 100)) {
+			cluster.kill(1);
+			ClusterCache node = cluster.nodes.get(0);
+			BigInteger remote = BigInteger.valueOf(2);
+			while (!node.ownerOf(remote).equals(cluster.urls.get(1))) {
+				remote = remote.add(BigInteger.ONE);
+			}
+			assertTrue(Arrays.equals(FactorizerUtil.factor(remote), node.get(remote).factors()));
+			assertEquals(1, node.fallbackCount());
+			assertEquals(1, node.computationCount());
+		}
+	}
+
+	public void testSlowOwnerIsWaitedForInsteadOfRecomputed() throws Exception {
+		try (LocalCluster cluster = new LocalCluster(2, 1_000, 100, Duration.ofMillis(200), n -> {
+			try {
+				Thread.sleep(600);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return FactorizerUtil.factor(n);
+		})) {
+			ClusterCache node = cluster.nodes.get(0);
+			BigInteger remote = ownedBy(node, cluster.urls.get(1));
+			assertTrue(Arrays.equals(FactorizerUtil.factor(remote), node.get(remote).factors()));
+			assertEquals(0, node.fallbackCount());
+			assertEquals(1, cluster.computations());
+		}
+	}
+
+	public void testGarbledOwnerFallsBackToComputingLocally() throws Exception {
+		byte[][] body = new byte[1][];
+		HttpServer garbled = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		garbled.createContext(ClusterCache.OWNER_PATH, exchange -> {
+			exchange.sendResponseHeaders(200, body[0].length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body[0]);
+			}
+		});
+		garbled.start();
+		try {
+			String peer = "http://127.0.0.1:" + garbled.getAddress().getPort();
+			ClusterCache node = new ClusterCache("self", new HashRing(List.of("self", peer), 128), new FactorCache(100),
+					100, Duration.ofSeconds(2), Duration.ofSeconds(2));
+			byte[][] bodies = { { (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x7F },
+					new FactorResult(BigInteger.valueOf(6), new BigInteger[] { BigInteger.TWO, BigInteger.valueOf(3) })
+							.body(Format.VARINT) };
+			BigInteger remote = BigInteger.valueOf(1_000);
+			for (byte[] garbage : bodies) {
+				body[0] = garbage;
+				remote = ownedBy(node, peer, remote.add(BigInteger.ONE));
+				assertTrue(Arrays.equals(FactorizerUtil.factor(remote), node.get(remote).factors()));
+			}
+			assertEquals(2, node.fallbackCount());
+		} finally {
+			garbled.stop(0);
+		}
+	}
+
+	public void testClusteredEndpointAnswersFromTheOwner() throws Exception {
+		try (LocalCluster cluster = new LocalCluster(2, 1_000, 100)) {
+			BigInteger remote = ownedBy(cluster.nodes.get(0), cluster.urls.get(1));
+			HttpResponse<String> response = HttpClient.newHttpClient().send(
+					HttpRequest.newBuilder(URI.create(cluster.urls.get(0) + LocalCluster.CLUSTERED_PATH + "?number=" + remote))
+							.build(),
+					HttpResponse.BodyHandlers.ofString());
+
+			assertEquals(200, response.statusCode());
+			assertEquals(new String(new FactorResult(remote, FactorizerUtil.factor(remote)).body(Format.TEXT),
+					StandardCharsets.US_ASCII),
+					response.body());
+			assertEquals(1, cluster.nodes.get(0).fetchCount());
+			assertEquals(0, cluster.nodes.get(0).computationCount());
+			assertEquals(1, cluster.nodes.get(1).computationCount());
+		}
+	}
+
+	private static BigInteger ownedBy(ClusterCache node, String owner) {
+		return ownedBy(node, owner, BigInteger.valueOf(1_000_003));
+	}
+
+	private static BigInteger ownedBy(ClusterCache node, String owner, BigInteger from) {
+		BigInteger number = from;
+		while (!node.ownerOf(number).equals(owner)) {
+			number = number.add(BigInteger.ONE);
+		}
+		return number;
+	}
+}
@@ -0,0 +1,67 @@
+package com.salih.chapter2.cluster;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.salih.chapter2.FactorizerUtil;
+import com.salih.chapter2.cache.FactorCache;
+import com.salih.loadgen.NumberDistribution;
+
+/**
+ * Shows how the cluster-wide hit rate grows as nodes are added: the same Zipf workload, spread round-robin over
+ * {@code 1..cluster.maxNodes} localhost nodes, once with a {@link ClusterCache} and once with independent
+ * per-node caches of the same size.
+ * <p>
+ * Run with {@code mvn test-compile exec:java -Dexec.mainClass=com.salih.chapter2.cluster.ClusterSimulation
+ * -Dexec.classpathScope=test}. With independent caches, every node sees the whole hot set and the capacity per
+ * node is all the cluster has; sharded, the capacity adds up and each number is computed once.
+ * </p>
+ */
+public class ClusterSimulation {
+
+	public static void main(String[] args) throws Exception {
+		int maxNodes = Integer.getInteger("cluster.maxNodes", 6);
+		int requests = Integer.getInteger("cluster.requests", 20_000);
+		long cacheSize = Long.getLong("cluster.cacheSize", 1_000);
+		long nearSize = Long.getLong("cluster.nearSize", 100);
+		String[] numbers = NumberDistribution.ZIPF.sample(7, requests, 1_000_000_000L, 0, 0);
+
+		System.out.printf("%d requests, Zipf hot set, %d entries per node, near cache %d%n", requests, cacheSize,
+				nearSize);
+		System.out.printf("%6s %18s %18s %14s %12s%n", "nodes", "independent (hit%)", "sharded (hit%)", "computed",
+				"saved");
+		for (int size = 1; size <= maxNodes; size++) {
+			long independent = independent(numbers, size, cacheSize);
+			long sharded;
+			try (LocalCluster cluster = new LocalCluster(size, cacheSize, nearSize)) {
+				for (int k = 0; k < numbers.length; k++) {
+					cluster.nodes.get(k % size).get(new BigInteger(numbers[k]));
+				}
+				sharded = cluster.computations();
+			}
+			System.out.printf("%6d %18.1f %18.1f %14d %11.1f%%%n", size, hitRate(independent, requests),
+					hitRate(sharded, requests), sharded, 100.0 * (independent - sharded) / independent);
+		}
+	}
+
+	/** Computations needed when every node has its own cache and nobody shares. */
+	private static long independent(String[] numbers, int size, long cacheSize) {
+		List<FactorCache> caches = new ArrayList<>();
+		for (int k = 0; k < size; k++) {
+			caches.add(new FactorCache(cacheSize));
+		}
+		long[] computed = new long[1];
+		for (int k = 0; k < numbers.length; k++) {
+			caches.get(k % size).get(new BigInteger(numbers[k]), n -> {
+				computed[0]++;
+				return FactorizerUtil.factor(n);
+			});
+		}
+		return computed[0];
+	}
+
+	private static double hitRate(long computed, int requests) {
+		return 100.0 * (requests - computed) / requests;
+	}
+}
@@ -0,0 +1,47 @@
+package com.salih.chapter2.cluster;
+
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+public class HashRingTest extends TestCase {
+	private static final int KEYS = 100_000;
+
+	public void testVirtualNodesSpreadKeysEvenly() {
+		HashRing ring = new HashRing(List.of("a", "b", "c", "d"), 128);
+		Map<String, Integer> counts = new HashMap<>();
+		for (int k = 0; k < KEYS; k++) {
+			counts.merge(ring.ownerOf(BigInteger.valueOf(k)), 1, Integer::sum);
+		}
+		for (int count : counts.values()) {
+			assertTrue("share " + count, Math.abs(count - KEYS / 4) < KEYS / 20);
+		}
+	}
+
+	public void testAddingANodeOnlyMovesKeysToIt() {
+		HashRing before = new HashRing(List.of("a", "b", "c", "d"), 128);
+		HashRing after = new HashRing(List.of("a", "b", "c", "d", "e"), 128);
+		int moved = 0;
+		for (int k = 0; k < KEYS; k++) {
+			BigInteger key = BigInteger.valueOf(k);
+			String owner = after.ownerOf(key);
+			if (!owner.equals(before.ownerOf(key))) {
+				assertEquals("e", owner);
+				moved++;
+			}
+		}
+		assertTrue("moved " + moved, Math.abs(moved - KEYS / 5) < KEYS / 20);
+	}
+
+	public void testEveryNodeBuildsTheSameRing() {
+		HashRing one = new HashRing(List.of("a", "b", "c"), 16);
+		HashRing other = new HashRing(List.of("a", "b", "c"), 16);
+		for (int k = 0; k < 1_000; k++) {
+			BigInteger key = BigInteger.valueOf(k).shiftLeft(70);
+			assertEquals(one.ownerOf(key), other.ownerOf(key));
+		}
+	}
+}
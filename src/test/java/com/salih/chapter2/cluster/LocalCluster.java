@@ -0,0 +1,96 @@
+package com.salih.chapter2.cluster;
+
+import java.math.BigInteger;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+
+import com.salih.chapter2.FactorizerUtil;
+import com.salih.chapter2.cache.FactorCache;
+import com.salih.chapter2.ex13.ClusteredFactorizer;
+
+/**
+ * Several {@link ClusterCache} nodes in one JVM, each with its own cache and its own Jetty on a localhost port,
+ * serving the real {@link ClusterServlet} and {@link ClusteredFactorizer} and talking to each other exactly as
+ * separate instances would.
+ */
+final class LocalCluster implements AutoCloseable {
+	static final String CLUSTERED_PATH = "/factor/clustered";
+
+	final List<ClusterCache> nodes = new ArrayList<>();
+	final List<String> urls = new ArrayList<>();
+	private final List<Server> servers = new ArrayList<>();
+
+	LocalCluster(int size, long cacheSize, long nearSize) throws Exception {
+		this(size, cacheSize, nearSize, Duration.ofSeconds(2), FactorizerUtil::factor);
+	}
+
+	/**
+	 * @param timeout    each node's connect and first-byte timeout; the whole fetch may take ten times as long
+	 * @param factorizer what a node runs when it has to compute a number itself
+	 */
+	LocalCluster(int size, long cacheSize, long nearSize, Duration timeout,
+			Function<BigInteger, BigInteger[]> factorizer) throws Exception {
+		try {
+			for (int k = 0; k < size; k++) {
+				Server server = new Server();
+				ServerConnector connector = new ServerConnector(server);
+				connector.setHost("127.0.0.1");
+				connector.setPort(0);
+				server.addConnector(connector);
+				// Bound now, started later: the ring needs every node's port before any node can serve.
+				connector.open();
+				servers.add(server);
+				urls.add("http://127.0.0.1:" + connector.getLocalPort());
+			}
+			HashRing ring = new HashRing(urls, 128);
+			for (int k = 0; k < size; k++) {
+				ClusterCache node = new ClusterCache(urls.get(k), ring, new FactorCache(cacheSize), nearSize, timeout,
+						timeout.multipliedBy(10), factorizer);
+				nodes.add(node);
+				ServletContextHandler context = new ServletContextHandler();
+				context.addServlet(new ServletHolder(new ClusterServlet(node)), ClusterCache.OWNER_PATH);
+				context.addServlet(new ServletHolder(new ClusteredFactorizer(node)), CLUSTERED_PATH);
+				servers.get(k).setHandler(context);
+				servers.get(k).start();
+			}
+		} catch (Exception e) {
+			close();
+			throw e;
+		}
+	}
+
+	/** Takes node {@code k} off the network, as if its process had died. */
+	void kill(int k) throws Exception {
+		servers.get(k).stop();
+	}
+
+	long computations() {
+		return nodes.stream().mapToLong(ClusterCache::computationCount).sum();
+	}
+
+	/** Stops every node, even if stopping one of them fails. */
+	@Override
+	public void close() {
+		IllegalStateException failure = null;
+		for (Server server : servers) {
+			try {
+				server.stop();
+			} catch (Exception e) {
+				if (failure == null) {
+					failure = new IllegalStateException("could not stop every node");
+				}
+				failure.addSuppressed(e);
+			}
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+}
@@ -0,0 +1,77 @@
+package com.salih.chapter2.encoding;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+public class FormatTest extends TestCase {
+	private static final BigInteger[] TWELVE = { BigInteger.TWO, BigInteger.TWO, BigInteger.valueOf(3) };
+
+	public void testTextMatchesTheClassicOutput() {
+		FactorResult result = new FactorResult(BigInteger.valueOf(12), TWELVE);
+		assertEquals("Factors: 2 2 3 \n\n", new String(result.body(Format.TEXT), StandardCharsets.US_ASCII));
+	}
+
+	public void testJson() {
+		FactorResult result = new FactorResult(BigInteger.valueOf(12), TWELVE);
+		assertEquals("{\"factors\":[2,2,3]}", new String(result.body(Format.JSON), StandardCharsets.US_ASCII));
+		assertEquals("{\"factors\":[]}", new String(Format.JSON.encode(new BigInteger[0]), StandardCharsets.US_ASCII));
+	}
+
+	public void testVarintIsCountThenGaps() {
+		assertTrue(Arrays.equals(new byte[] { 3, 2, 0, 1 }, Format.VARINT.encode(TWELVE)));
+
+		BigInteger big = BigInteger.ONE.shiftLeft(70).add(BigInteger.valueOf(5));
+		byte[] encoded = Format.VARINT.encode(new BigInteger[] { BigInteger.valueOf(300), big });
+		assertEquals(1 + 2 + 10, encoded.length);
+		assertEquals((byte) 0xAC, encoded[1]);
+		assertEquals(0x02, encoded[2]);
+		assertEquals(big.subtract(BigInteger.valueOf(300)), decode(encoded, 3));
+	}
+
+	public void testVarintRoundTrips() {
+		BigInteger[] factors = { BigInteger.TWO, BigInteger.TWO, BigInteger.valueOf(300),
+				BigInteger.ONE.shiftLeft(70).add(BigInteger.valueOf(5)) };
+		assertTrue(Arrays.equals(factors, Format.decodeVarint(Format.VARINT.encode(factors))));
+		assertEquals(0, Format.decodeVarint(Format.VARINT.encode(new BigInteger[0])).length);
+		byte[][] garbled = { { 2, 5 }, { 1, 5, 7 }, { (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x7F },
+				{ (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x7F, 1 } };
+		for (byte[] body : garbled) {
+			try {
+				Format.decodeVarint(body);
+				fail(Arrays.toString(body));
+			} catch (IllegalArgumentException expected) {
+			}
+		}
+	}
+
+	public void testNegotiation() {
+		assertEquals(Format.TEXT, Format.negotiate(null));
+		assertEquals(Format.TEXT, Format.negotiate("*/*"));
+		assertEquals(Format.TEXT, Format.negotiate("image/png"));
+		assertEquals(Format.JSON, Format.negotiate("application/json"));
+		assertEquals(Format.JSON, Format.negotiate("text/plain;q=0.5, application/json"));
+		assertEquals(Format.VARINT, Format.negotiate("application/json;q=0.2, application/x-factors-varint;q=0.9"));
+		assertEquals(Format.TEXT, Format.negotiate("text/plain, application/json"));
+	}
+
+	public void testEtagDependsOnNumberAndFormat() {
+		BigInteger n = BigInteger.valueOf(12);
+		assertEquals(Format.TEXT.etag(n), new FactorResult(n, TWELVE).etag(Format.TEXT));
+		assertFalse(Format.TEXT.etag(n).equals(Format.JSON.etag(n)));
+		assertFalse(Format.TEXT.etag(n).equals(Format.TEXT.etag(BigInteger.valueOf(13))));
+	}
+
+	private static BigInteger decode(byte[] bytes, int offset) {
+		BigInteger value = BigInteger.ZERO;
+		for (int shift = 0;; shift += 7) {
+			byte b = bytes[offset++];
+			value = value.or(BigInteger.valueOf(b & 0x7F).shiftLeft(shift));
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+	}
+}
@@ -0,0 +1,122 @@
+package com.salih.chapter2.ex10;
+
+import java.math.BigInteger;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+
+import com.salih.chapter2.FactorizerUtil;
+import com.salih.chapter2.async.Lane;
+
+import junit.framework.TestCase;
+
+public class AsyncFactorizerTest extends TestCase {
+	private static final BigInteger BEYOND_LONG = BigInteger.ONE.shiftLeft(64);
+
+	private final HttpClient client = HttpClient.newHttpClient();
+	private Server server;
+
+	@Override
+	protected void tearDown() throws Exception {
+		if (server != null) {
+			server.stop();
+		}
+	}
+
+	public void testAnswersFromTheComputeLane() throws Exception {
+		HttpResponse<String> resp = get(deploy(5_000), BigInteger.valueOf(360));
+		assertEquals(200, resp.statusCode());
+	}
+
+	public void testTimeoutAnswers503() throws Exception {
+		// Two primes of about 50 bits: rho needs tens of millions of steps, far more than the budget.
+		BigInteger p = BigInteger.ONE.shiftLeft(50).nextProbablePrime();
+		BigInteger q = BigInteger.ONE.shiftLeft(52).nextProbablePrime();
+		HttpResponse<String> resp = get(deploy(100), p.multiply(q));
+		assertEquals(503, resp.statusCode());
+		assertTrue(resp.body(), resp.body().contains("timed out"));
+	}
+
+	public void testSaturatedLaneAnswers503() throws Exception {
+		URI uri = deploy(5_000);
+		CountDownLatch release = new CountDownLatch(1);
+		try {
+			// Work left over from other tests may still be finishing and freeing slots, so top up until a pass after a
+			// pause finds the lane still full.
+			while (fill(Lane.SLOW, release) > 0) {
+				Thread.sleep(200);
+			}
+			HttpResponse<String> resp = get(uri, BEYOND_LONG.add(BigInteger.TWO));
+			assertEquals(503, resp.statusCode());
+			assertTrue(resp.body(), resp.body().contains("saturated"));
+		} finally {
+			release.countDown();
+		}
+		assertEquals(200, get(uri, BEYOND_LONG.add(BigInteger.TWO)).statusCode());
+	}
+
+	public void testExactlyOneResponseWhenTimeoutAndResultRace() throws Exception {
+		// A budget about as long as the hop to the lane and back, so the timeout and the result land at nearly the
+		// same moment and each request is won by one side or the other. The loser must neither write a second
+		// response nor leave the request hanging.
+		URI uri = deploy(1);
+		for (int k = 0; k < 100; k++) {
+			BigInteger n = BigInteger.valueOf(1_000_000_000_000L + k);
+			HttpResponse<String> resp = get(uri, n);
+			if (resp.statusCode() == 200) {
+				String factors = FactorizerUtil.getFactorsArrString(FactorizerUtil.factor(n));
+				assertTrue(resp.body(), resp.body().startsWith(factors));
+			} else {
+				assertEquals(503, resp.statusCode());
+				assertTrue(resp.body(), resp.body().contains("Factorization timed out"));
+			}
+		}
+	}
+
+	/** Queues tasks that wait for {@code release} until {@code lane} rejects one; returns how many were queued. */
+	private static int fill(Lane lane, CountDownLatch release) {
+		int queued = 0;
+		try {
+			while (true) {
+				lane.executor().execute(() -> {
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				});
+				queued++;
+			}
+		} catch (RejectedExecutionException full) {
+			return queued;
+		}
+	}
+
+	private URI deploy(long timeoutMillis) throws Exception {
+		server = new Server();
+		ServerConnector connector = new ServerConnector(server);
+		connector.setHost("127.0.0.1");
+		connector.setPort(0);
+		server.addConnector(connector);
+		ServletContextHandler context = new ServletContextHandler();
+		ServletHolder holder = new ServletHolder(new AsyncFactorizer(timeoutMillis));
+		holder.setAsyncSupported(true);
+		context.addServlet(holder, "/factor/async");
+		server.setHandler(context);
+		server.start();
+		return URI.create("http://127.0.0.1:" + connector.getLocalPort() + "/factor/async");
+	}
+
+	private HttpResponse<String> get(URI uri, BigInteger number) throws Exception {
+		return client.send(HttpRequest.newBuilder(URI.create(uri + "?number=" + number)).build(),
+				HttpResponse.BodyHandlers.ofString());
+	}
+}
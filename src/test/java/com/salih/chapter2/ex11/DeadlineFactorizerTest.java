@@ -0,0 +1,108 @@
+package com.salih.chapter2.ex11;
+
+import java.math.BigInteger;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+
+import com.salih.chapter2.FactorizerUtil;
+import com.salih.chapter2.cache.FactorCache;
+import com.salih.chapter2.encoding.FactorResult;
+
+import junit.framework.TestCase;
+
+public class DeadlineFactorizerTest extends TestCase {
+	// Two primes of about 50 bits: rho needs tens of millions of steps, far more than any budget used here.
+	private static final BigInteger HARD = BigInteger.ONE.shiftLeft(50).nextProbablePrime()
+			.multiply(BigInteger.ONE.shiftLeft(52).nextProbablePrime());
+
+	private final HttpClient client = HttpClient.newHttpClient();
+	private Server server;
+	private URI uri;
+
+	@Override
+	protected void setUp() throws Exception {
+		server = new Server();
+		ServerConnector connector = new ServerConnector(server);
+		connector.setHost("127.0.0.1");
+		connector.setPort(0);
+		server.addConnector(connector);
+		ServletContextHandler context = new ServletContextHandler();
+		context.addServlet(new ServletHolder(new DeadlineFactorizer()), "/factor/deadline");
+		server.setHandler(context);
+		server.start();
+		uri = URI.create("http://127.0.0.1:" + connector.getLocalPort() + "/factor/deadline");
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		server.stop();
+	}
+
+	public void testCompleteResultWithinBudget() throws Exception {
+		HttpResponse<String> resp = get(BigInteger.valueOf(360), 1_000);
+		assertEquals(200, resp.statusCode());
+		assertFalse(resp.headers().firstValue(DeadlineFactorizer.PARTIAL_HEADER).isPresent());
+		String factors = FactorizerUtil.getFactorsArrString(FactorizerUtil.factor(BigInteger.valueOf(360)));
+		assertTrue(resp.body(), resp.body().startsWith(factors));
+	}
+
+	public void testExpiredBudgetAnswersWithTheFactorsFoundSoFar() throws Exception {
+		BigInteger n = HARD.multiply(BigInteger.valueOf(12));
+		HttpResponse<String> resp = get(n, 100);
+		assertEquals(200, resp.statusCode());
+		assertEquals("true", resp.headers().firstValue(DeadlineFactorizer.PARTIAL_HEADER).orElse(null));
+		assertEquals("Factors: 2 2 3 \nUnfactored: " + HARD + "\n\n", resp.body());
+		assertNull("a partial result was cached", FactorCache.shared().getIfPresent(n));
+	}
+
+	public void testWaiterOnALeaderWithoutDeadlineKeepsItsOwnBudget() throws Exception {
+		BigInteger n = HARD.add(BigInteger.TWO);
+		CountDownLatch entered = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		ExecutorService pool = Executors.newSingleThreadExecutor();
+		try {
+			// A leader with no deadline at all, like /factor/boundedCache or /factor/batch, that takes its time.
+			Future<FactorResult> leader = pool.submit(() -> FactorCache.shared().get(n, number -> {
+				entered.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return new BigInteger[] { number };
+			}));
+			assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+			long start = System.nanoTime();
+			HttpResponse<String> resp = get(n, 200);
+			long tookMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+			assertTrue(tookMillis + " ms", tookMillis < 2_000);
+			assertEquals("true", resp.headers().firstValue(DeadlineFactorizer.PARTIAL_HEADER).orElse(null));
+			assertEquals("Factors: \nUnfactored: " + n + "\n\n", resp.body());
+
+			release.countDown();
+			assertEquals(n, leader.get(5, TimeUnit.SECONDS).factors()[0]);
+		} finally {
+			release.countDown();
+			pool.shutdown();
+		}
+	}
+
+	private HttpResponse<String> get(BigInteger number, long budgetMillis) throws Exception {
+		return client.send(HttpRequest.newBuilder(URI.create(uri + "?number=" + number))
+				.header(DeadlineFactorizer.BUDGET_HEADER, Long.toString(budgetMillis)).build(),
+				HttpResponse.BodyHandlers.ofString());
+	}
+}
@@ -0,0 +1,141 @@
+package com.salih.chapter2.ex12;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigInteger;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+
+import com.salih.chapter2.Factorization;
+
+import junit.framework.TestCase;
+
+public class StreamingFactorizerTest extends TestCase {
+	// Two primes of about 50 bits: rho needs tens of millions of steps, far more than any timeout used here.
+	private static final BigInteger HARD = BigInteger.ONE.shiftLeft(50).nextProbablePrime()
+			.multiply(BigInteger.ONE.shiftLeft(52).nextProbablePrime());
+
+	private final HttpClient client = HttpClient.newHttpClient();
+	private Server server;
+
+	@Override
+	protected void tearDown() throws Exception {
+		if (server != null) {
+			server.stop();
+		}
+	}
+
+	public void testEventsArriveBeforeTheStreamEndsAndExpiryEndsItWithThePartialResult() throws Exception {
+		URI uri = deploy(500, 60_000);
+		HttpResponse<InputStream> resp = get(uri, HARD.multiply(BigInteger.valueOf(12)), true);
+		assertEquals(200, resp.statusCode());
+		assertTrue(resp.headers().firstValue("Content-Type").orElse("").startsWith(StreamingFactorizer.EVENT_STREAM));
+		assertEquals("chunked", resp.headers().firstValue("Transfer-Encoding").orElse(null));
+		assertFalse(resp.headers().firstValue("Content-Length").isPresent());
+
+		List<String> lines = new ArrayList<>();
+		long firstFactorAt = 0;
+		try (BufferedReader body = reader(resp)) {
+			for (String line; (line = body.readLine()) != null;) {
+				if (firstFactorAt == 0 && line.startsWith("data: ")) {
+					firstFactorAt = System.nanoTime();
+				}
+				lines.add(line);
+			}
+		}
+		long endedAt = System.nanoTime();
+		assertTrue("the first factor waited for the whole stream", endedAt - firstFactorAt > 250_000_000L);
+		assertEquals(List.of("data: 2", "", "data: 2", "", "data: 3", "", "event: partial", "data: " + HARD, ""),
+				lines);
+	}
+
+	public void testPlainTextStreamsOneFactorPerLine() throws Exception {
+		URI uri = deploy(60_000, 60_000);
+		// Prime factors beyond the trial-division range, so this is computed rather than served from a table.
+		BigInteger p = BigInteger.valueOf(1_000_003);
+		BigInteger q = BigInteger.valueOf(1_000_033);
+		HttpResponse<InputStream> resp = get(uri, p.multiply(q).multiply(BigInteger.valueOf(6)), false);
+		assertEquals(200, resp.statusCode());
+		assertEquals("chunked", resp.headers().firstValue("Transfer-Encoding").orElse(null));
+		List<String> lines = lines(resp);
+		lines.sort(null);
+		assertEquals(List.of("1000003", "1000033", "2", "3"), lines);
+	}
+
+	public void testHeartbeatsWhileTheComputationIsQuiet() throws Exception {
+		URI uri = deploy(400, 50);
+
+		List<String> events = lines(get(uri, HARD, true));
+		long keepAlives = events.stream().filter(": keep-alive"::equals).count();
+		assertTrue(events.toString(), keepAlives >= 3);
+		assertEquals("event: partial", events.get(events.size() - 3));
+
+		List<String> text = lines(get(uri, HARD, false));
+		assertEquals("Unfactored: " + HARD, text.get(text.size() - 1));
+		assertTrue(text.toString(), text.stream().filter(String::isEmpty).count() >= 3);
+	}
+
+	public void testNoHeartbeatAfterTheStreamFinished() {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		StreamingFactorizer.Stream stream = new StreamingFactorizer.Stream(out, true, null);
+		stream.factor(BigInteger.TWO);
+		stream.finish(new Factorization(new BigInteger[] { BigInteger.TWO }, BigInteger.ONE));
+		int size = out.size();
+		stream.heartbeat();
+		assertEquals(size, out.size());
+
+		StreamingFactorizer.Stream abandoned = new StreamingFactorizer.Stream(out, false, null);
+		abandoned.end();
+		abandoned.heartbeat();
+		assertEquals(size, out.size());
+	}
+
+	private URI deploy(long timeoutMillis, long heartbeatMillis) throws Exception {
+		server = new Server();
+		ServerConnector connector = new ServerConnector(server);
+		connector.setHost("127.0.0.1");
+		connector.setPort(0);
+		server.addConnector(connector);
+		ServletContextHandler context = new ServletContextHandler();
+		ServletHolder holder = new ServletHolder(new StreamingFactorizer(timeoutMillis, heartbeatMillis));
+		holder.setAsyncSupported(true);
+		context.addServlet(holder, "/factor/stream");
+		server.setHandler(context);
+		server.start();
+		return URI.create("http://127.0.0.1:" + connector.getLocalPort() + "/factor/stream");
+	}
+
+	private HttpResponse<InputStream> get(URI uri, BigInteger number, boolean events) throws Exception {
+		HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(uri + "?number=" + number));
+		if (events) {
+			request.header("Accept", StreamingFactorizer.EVENT_STREAM);
+		}
+		return client.send(request.build(), HttpResponse.BodyHandlers.ofInputStream());
+	}
+
+	private static List<String> lines(HttpResponse<InputStream> resp) throws Exception {
+		List<String> lines = new ArrayList<>();
+		try (BufferedReader body = reader(resp)) {
+			for (String line; (line = body.readLine()) != null;) {
+				lines.add(line);
+			}
+		}
+		return lines;
+	}
+
+	private static BufferedReader reader(HttpResponse<InputStream> resp) {
+		return new BufferedReader(new InputStreamReader(resp.body(), StandardCharsets.US_ASCII));
+	}
+}
@@ -0,0 +1,97 @@
+package com.salih.chapter2.ex14;
+
+import java.math.BigInteger;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+
+import com.salih.chapter2.FactorizerUtil;
+import com.salih.chapter2.RangeFactoring;
+
+import junit.framework.TestCase;
+
+public class RangeFactorizerTest extends TestCase {
+	private final HttpClient client = HttpClient.newHttpClient();
+	private Server server;
+
+	@Override
+	protected void tearDown() throws Exception {
+		if (server != null) {
+			server.stop();
+		}
+	}
+
+	public void testRejectsBadParameters() throws Exception {
+		URI uri = deploy(60_000);
+		for (String query : new String[] { "", "from=1", "from=a&to=5", "from=-1&to=5", "from=5&to=4",
+				"from=0&to=" + (RangeFactoring.MAX_TO + 1) }) {
+			assertEquals(query, 400, get(uri, query).statusCode());
+		}
+	}
+
+	public void testStreamsEveryNumberInOrder() throws Exception {
+		URI uri = deploy(60_000);
+		long from = 1_000_000_000L;
+		long to = from + 20_000;
+		HttpResponse<String> resp = get(uri, "from=" + from + "&to=" + to);
+		assertEquals(200, resp.statusCode());
+		// Well over the servlet's buffer, so the body went out in several chunks as it was produced.
+		assertEquals("chunked", resp.headers().firstValue("Transfer-Encoding").orElse(null));
+
+		List<String> lines = resp.body().lines().toList();
+		assertEquals(to - from, lines.size());
+		for (int k = 0; k < lines.size(); k++) {
+			BigInteger n = BigInteger.valueOf(from + k);
+			assertEquals(line(n), lines.get(k));
+		}
+	}
+
+	public void testTimeoutEndsWithWhereToResume() throws Exception {
+		URI uri = deploy(200);
+		long from = 10_000_000_000_000L;
+		HttpResponse<String> resp = get(uri, "from=" + from + "&to=" + (from + 1_000_000_000L));
+		assertEquals(200, resp.statusCode());
+
+		List<String> lines = resp.body().lines().toList();
+		String last = lines.get(lines.size() - 1);
+		assertTrue(last, last.startsWith("Stopped at: "));
+		long resumeAt = Long.parseLong(last.substring("Stopped at: ".length()));
+		assertEquals("every number before the resume point was reported", from + lines.size() - 1, resumeAt);
+		if (lines.size() > 1) {
+			assertEquals(line(BigInteger.valueOf(resumeAt - 1)), lines.get(lines.size() - 2));
+		}
+	}
+
+	private static String line(BigInteger n) {
+		StringBuilder line = new StringBuilder("Number: ").append(n).append(", Factors: ");
+		for (BigInteger factor : FactorizerUtil.factor(n)) {
+			line.append(factor).append(' ');
+		}
+		return line.toString();
+	}
+
+	private URI deploy(long timeoutMillis) throws Exception {
+		server = new Server();
+		ServerConnector connector = new ServerConnector(server);
+		connector.setHost("127.0.0.1");
+		connector.setPort(0);
+		server.addConnector(connector);
+		ServletContextHandler context = new ServletContextHandler();
+		context.addServlet(new ServletHolder(new RangeFactorizer(timeoutMillis)), "/factor/range");
+		server.setHandler(context);
+		server.start();
+		return URI.create("http://127.0.0.1:" + connector.getLocalPort() + "/factor/range");
+	}
+
+	private HttpResponse<String> get(URI uri, String query) throws Exception {
+		return client.send(HttpRequest.newBuilder(URI.create(uri + "?" + query)).build(),
+				HttpResponse.BodyHandlers.ofString());
+	}
+}
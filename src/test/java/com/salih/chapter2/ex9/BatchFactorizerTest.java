@@ -0,0 +1,80 @@
+package com.salih.chapter2.ex9;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+
+import com.salih.chapter2.cache.FactorCache;
+
+import junit.framework.TestCase;
+
+public class BatchFactorizerTest extends TestCase {
+	private final HttpClient client = HttpClient.newHttpClient();
+	private Server server;
+	private URI uri;
+
+	@Override
+	protected void setUp() throws Exception {
+		server = new Server();
+		ServerConnector connector = new ServerConnector(server);
+		connector.setHost("127.0.0.1");
+		connector.setPort(0);
+		server.addConnector(connector);
+		ServletContextHandler context = new ServletContextHandler();
+		context.addServlet(BatchFactorizer.class, "/factor/batch");
+		server.setHandler(context);
+		server.start();
+		uri = URI.create("http://127.0.0.1:" + connector.getLocalPort() + "/factor/batch");
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		server.stop();
+	}
+
+	public void testAnswersInRequestOrderWithDuplicates() throws Exception {
+		HttpResponse<String> resp = post("91 12,91\n\n  7 12");
+		assertEquals(200, resp.statusCode());
+		assertEquals("Number: 91, Factors: 7 13 \n"
+				+ "Number: 12, Factors: 2 2 3 \n"
+				+ "Number: 91, Factors: 7 13 \n"
+				+ "Number: 7, Factors: 7 \n"
+				+ "Number: 12, Factors: 2 2 3 \n", resp.body());
+	}
+
+	public void testLooksUpEachDistinctNumberOnce() throws Exception {
+		FactorCache cache = FactorCache.shared();
+		long before = cache.hitCount() + cache.missCount();
+		assertEquals(200, post("900001 900002 900001 900003 900002 900001").statusCode());
+		assertEquals(3, cache.hitCount() + cache.missCount() - before);
+	}
+
+	public void testMalformedTokensAreAnsweredAsOne() throws Exception {
+		HttpResponse<String> resp = post("6 abc 1e3 -x 10");
+		assertEquals(200, resp.statusCode());
+		assertEquals("Number: 6, Factors: 2 3 \n"
+				+ "Number: 1, Factors: \n"
+				+ "Number: 1, Factors: \n"
+				+ "Number: 1, Factors: \n"
+				+ "Number: 10, Factors: 2 5 \n", resp.body());
+	}
+
+	public void testRejectsTooManyNumbers() throws Exception {
+		assertEquals(200, post("1 ".repeat(10_000)).statusCode());
+		assertEquals(413, post("1 ".repeat(10_001)).statusCode());
+	}
+
+	public void testRejectsAHugeBodyWithoutALineBreak() throws Exception {
+		assertEquals(413, post("7".repeat((1 << 20) + 1)).statusCode());
+	}
+
+	private HttpResponse<String> post(String body) throws Exception {
+		return client.send(HttpRequest.newBuilder(uri).POST(HttpRequest.BodyPublishers.ofString(body)).build(),
+				HttpResponse.BodyHandlers.ofString());
+	}
+}
@@ -0,0 +1,110 @@
+package com.salih.chapter2.lazy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.salih.chapter2.ex3.ExpensiveObject;
+
+import junit.framework.TestCase;
+
+public class LazyRegistryTest extends TestCase {
+	private static final int THREADS = 8;
+
+	public void testEachKeyIsBuiltOnceUnderContention() throws Exception {
+		LazyRegistry<Integer, ExpensiveObject> registry = new LazyRegistry<>(k -> new ExpensiveObject());
+		CountDownLatch start = new CountDownLatch(1);
+		ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+		try {
+			List<Future<List<ExpensiveObject>>> results = new ArrayList<>();
+			for (int t = 0; t < THREADS; t++) {
+				results.add(pool.submit(() -> {
+					start.await();
+					List<ExpensiveObject> seen = new ArrayList<>();
+					for (int key = 0; key < 100; key++) {
+						seen.add(registry.get(key));
+					}
+					return seen;
+				}));
+			}
+			start.countDown();
+
+			List<ExpensiveObject> first = results.get(0).get(10, TimeUnit.SECONDS);
+			for (Future<List<ExpensiveObject>> result : results) {
+				List<ExpensiveObject> seen = result.get(10, TimeUnit.SECONDS);
+				for (int key = 0; key < 100; key++) {
+					assertSame(first.get(key), seen.get(key));
+				}
+			}
+			assertEquals(100, registry.constructionCount());
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	public void testSlowConstructionDoesNotBlockOtherKeys() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		LazyRegistry<String, String> registry = new LazyRegistry<>(k -> {
+			if (k.equals("slow")) {
+				await(release);
+			}
+			return k.toUpperCase();
+		});
+		Thread slow = new Thread(() -> registry.get("slow"));
+		slow.start();
+		try {
+			// Any of these may share a bin with "slow"; none of them may wait for it.
+			for (int k = 0; k < 1_000; k++) {
+				assertEquals("K" + k, registry.get("k" + k));
+			}
+			assertNull(registry.getIfInitialized("slow"));
+		} finally {
+			release.countDown();
+			slow.join();
+		}
+		assertEquals("SLOW", registry.getIfInitialized("slow"));
+	}
+
+	public void testFailedConstructionIsRetried() {
+		AtomicInteger attempts = new AtomicInteger();
+		LazyRegistry<String, String> registry = new LazyRegistry<>(k -> {
+			if (attempts.incrementAndGet() == 1) {
+				throw new IllegalStateException("first attempt fails");
+			}
+			return k;
+		});
+		try {
+			registry.get("x");
+			fail();
+		} catch (IllegalStateException expected) {
+		}
+		assertEquals("x", registry.get("x"));
+		assertEquals(1, registry.constructionCount());
+	}
+
+	public void testPrewarmBuildsAllKeys() throws Exception {
+		LazyRegistry<Integer, ExpensiveObject> registry = new LazyRegistry<>(k -> new ExpensiveObject());
+		ExecutorService pool = Executors.newFixedThreadPool(2);
+		try {
+			registry.prewarm(List.of(1, 2, 3), pool).get(10, TimeUnit.SECONDS);
+			assertNotNull(registry.getIfInitialized(1));
+			assertNotNull(registry.getIfInitialized(3));
+			assertEquals(3, registry.constructionCount());
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,76 @@
+package com.salih.chapter2.limit;
+
+import junit.framework.TestCase;
+
+public class AdaptiveLimitTest extends TestCase {
+	private static final long WINDOW = 100_000_000;
+	private static final long RTT = 10_000_000;
+
+	private final long[] now = { 0 };
+	private final AdaptiveLimit limit = new AdaptiveLimit(20, 4, 200, WINDOW, 1.5, () -> now[0]);
+
+	public void testRejectsAboveTheLimitUntilReleased() {
+		for (int k = 0; k < 20; k++) {
+			assertTrue(limit.tryAcquire());
+		}
+		assertFalse(limit.tryAcquire());
+		assertEquals(20, limit.inFlight());
+
+		limit.release(RTT, false);
+		assertTrue(limit.tryAcquire());
+	}
+
+	public void testGrowsWhileSaturatedAtFlatLatency() {
+		for (int w = 0; w < 20; w++) {
+			saturatedWindow(RTT);
+		}
+		assertTrue("limit " + limit.limit(), limit.limit() > 40);
+	}
+
+	public void testShrinksWhenLatencyClimbs() {
+		for (int w = 0; w < 5; w++) {
+			saturatedWindow(RTT);
+		}
+		int before = limit.limit();
+		for (int w = 0; w < 20; w++) {
+			saturatedWindow(10 * RTT);
+		}
+		assertTrue(before + " -> " + limit.limit(), limit.limit() < before / 2);
+	}
+
+	public void testDoesNotGrowWhenNeverNearTheLimit() {
+		for (int w = 0; w < 20; w++) {
+			window(3, RTT, false);
+		}
+		assertEquals(20, limit.limit());
+	}
+
+	public void testBacksOffOnDropsDownToTheMinimum() {
+		window(1, RTT, true);
+		assertEquals(18, limit.limit());
+		for (int w = 0; w < 50; w++) {
+			window(1, RTT, true);
+		}
+		assertEquals(4, limit.limit());
+	}
+
+	private void saturatedWindow(long rtt) {
+		window(limit.limit(), rtt, false);
+	}
+
+	/** Ten rounds of {@code concurrency} requests at once, the last of them completing after the window ends. */
+	private void window(int concurrency, long rtt, boolean dropped) {
+		for (int round = 0; round < 10; round++) {
+			int admitted = 0;
+			while (admitted < concurrency && limit.tryAcquire()) {
+				admitted++;
+			}
+			if (round == 9) {
+				now[0] += WINDOW;
+			}
+			for (int k = 0; k < admitted; k++) {
+				limit.release(rtt, dropped);
+			}
+		}
+	}
+}
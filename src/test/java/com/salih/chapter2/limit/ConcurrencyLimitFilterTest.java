@@ -0,0 +1,154 @@
+package com.salih.chapter2.limit;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+
+import com.salih.chapter2.metrics.Metrics;
+
+import junit.framework.TestCase;
+
+public class ConcurrencyLimitFilterTest extends TestCase {
+	private final HttpClient client = HttpClient.newHttpClient();
+	private final CountDownLatch release = new CountDownLatch(1);
+	private final Semaphore blockingEntered = new Semaphore(0);
+	private final BlockingQueue<AsyncContext> pending = new LinkedBlockingQueue<>();
+	private Server server;
+	private String base;
+
+	@Override
+	protected void setUp() throws Exception {
+		// A limit of exactly two, read when each endpoint's limit is created.
+		System.setProperty("factor.limit.initial", "2");
+		System.setProperty("factor.limit.min", "2");
+		System.setProperty("factor.limit.max", "2");
+
+		server = new Server();
+		ServerConnector connector = new ServerConnector(server);
+		connector.setHost("127.0.0.1");
+		connector.setPort(0);
+		server.addConnector(connector);
+		ServletContextHandler context = new ServletContextHandler();
+		context.addFilter(ConcurrencyLimitFilter.class, "/factor/*", EnumSet.of(DispatcherType.REQUEST))
+				.setAsyncSupported(true);
+		context.addServlet(new ServletHolder(new HttpServlet() {
+			@Override
+			protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+				blockingEntered.release();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				resp.getWriter().print("blocking");
+			}
+		}), "/factor/blocking");
+		context.addServlet(new ServletHolder(new HttpServlet() {
+			@Override
+			protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+				resp.getWriter().print("quick");
+			}
+		}), "/factor/quick");
+		ServletHolder async = new ServletHolder(new HttpServlet() {
+			@Override
+			protected void doGet(HttpServletRequest req, HttpServletResponse resp) {
+				pending.add(req.startAsync());
+			}
+		});
+		async.setAsyncSupported(true);
+		context.addServlet(async, "/factor/held");
+		server.setHandler(context);
+		server.start();
+		base = "http://127.0.0.1:" + connector.getLocalPort();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		release.countDown();
+		server.stop();
+		System.clearProperty("factor.limit.initial");
+		System.clearProperty("factor.limit.min");
+		System.clearProperty("factor.limit.max");
+	}
+
+	public void testAFullEndpointDoesNotBlockAnother() throws Exception {
+		List<CompletableFuture<HttpResponse<String>>> blocked = new ArrayList<>();
+		for (int k = 0; k < 2; k++) {
+			blocked.add(sendAsync("/factor/blocking"));
+		}
+		assertTrue(blockingEntered.tryAcquire(2, 5, TimeUnit.SECONDS));
+
+		HttpResponse<String> rejected = get("/factor/blocking");
+		assertEquals(503, rejected.statusCode());
+		assertEquals("1", rejected.headers().firstValue("Retry-After").orElse(null));
+		assertEquals(200, get("/factor/quick").statusCode());
+
+		release.countDown();
+		for (CompletableFuture<HttpResponse<String>> response : blocked) {
+			assertEquals(200, response.get(5, TimeUnit.SECONDS).statusCode());
+		}
+		assertEquals(200, get("/factor/blocking").statusCode());
+	}
+
+	public void testAsyncRequestsHoldTheirSlotUntilComplete() throws Exception {
+		List<CompletableFuture<HttpResponse<String>>> held = new ArrayList<>();
+		List<AsyncContext> contexts = new ArrayList<>();
+		for (int k = 0; k < 2; k++) {
+			held.add(sendAsync("/factor/held"));
+			contexts.add(pending.poll(5, TimeUnit.SECONDS));
+		}
+		// The servlets have returned, but their responses are not done yet.
+		assertEquals(503, get("/factor/held").statusCode());
+
+		for (AsyncContext context : contexts) {
+			context.getResponse().getWriter().print("held");
+			context.complete();
+		}
+		for (CompletableFuture<HttpResponse<String>> response : held) {
+			assertEquals("held", response.get(5, TimeUnit.SECONDS).body());
+		}
+		CompletableFuture<HttpResponse<String>> next = sendAsync("/factor/held");
+		pending.poll(5, TimeUnit.SECONDS).complete();
+		assertEquals(200, next.get(5, TimeUnit.SECONDS).statusCode());
+	}
+
+	public void testUnmappedPathsAreNotTracked() throws Exception {
+		for (int k = 0; k < 5; k++) {
+			assertEquals(404, get("/factor/made-up-" + k).statusCode());
+		}
+		StringBuilder metrics = new StringBuilder();
+		Metrics.writeText(metrics);
+		assertFalse(metrics.toString(), metrics.toString().contains("made-up"));
+	}
+
+	private HttpResponse<String> get(String path) throws Exception {
+		return client.send(HttpRequest.newBuilder(URI.create(base + path)).build(), HttpResponse.BodyHandlers.ofString());
+	}
+
+	private CompletableFuture<HttpResponse<String>> sendAsync(String path) {
+		return client.sendAsync(HttpRequest.newBuilder(URI.create(base + path)).build(),
+				HttpResponse.BodyHandlers.ofString());
+	}
+}
@@ -0,0 +1,104 @@
+package com.salih.chapter2.locks;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import junit.framework.TestCase;
+
+public class ProbedLockTest extends TestCase {
+
+	public void testOnlyCountsWhenSamplingIsOff() {
+		ProbedLock lock = new ProbedLock("test.off");
+		lock.probe().setSamplePeriod(0);
+		for (int k = 0; k < 10; k++) {
+			lock.lock();
+			lock.unlock();
+		}
+		assertEquals(10, lock.probe().getAcquisitions());
+		assertEquals(0, lock.probe().getSampledAcquisitions());
+	}
+
+	public void testRecordsWaitHoldAndLongestWaiter() throws Exception {
+		ProbedLock lock = new ProbedLock("test.contended");
+		lock.probe().setSamplePeriod(1);
+		CountDownLatch done = new CountDownLatch(1);
+
+		lock.lock();
+		Thread waiter = new Thread(() -> {
+			lock.lock();
+			lock.unlock();
+			done.countDown();
+		}, "probed-waiter");
+		waiter.start();
+		while (lock.probe().getCurrentWaiters() == 0) {
+			Thread.sleep(1);
+		}
+		assertEquals("probed-waiter", lock.probe().getLongestWaiter());
+		Thread.sleep(20);
+		assertTrue(lock.probe().getLongestCurrentWaitMicros() >= 20_000);
+		lock.unlock();
+
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		LockProbe probe = lock.probe();
+		assertEquals(2, probe.getAcquisitions());
+		assertEquals(1, probe.getContendedAcquisitions());
+		assertEquals(0, probe.getCurrentWaiters());
+		assertNull(probe.getLongestWaiter());
+		assertTrue(probe.getMaxWaitMicros() >= 20_000);
+		assertTrue(probe.getMaxHoldMicros() >= 20_000);
+	}
+
+	public void testReentrantHoldIsTimedOnce() {
+		ProbedLock lock = new ProbedLock("test.reentrant");
+		lock.probe().setSamplePeriod(1);
+		lock.lock();
+		lock.lock();
+		lock.unlock();
+		lock.unlock();
+		assertEquals(2, lock.probe().getAcquisitions());
+		assertEquals(1, lock.probe().getSampledAcquisitions());
+	}
+
+	public void testContentionIsCountedWithSamplingOff() throws Exception {
+		ProbedLock lock = new ProbedLock("test.unsampled");
+		lock.probe().setSamplePeriod(0);
+		CountDownLatch done = new CountDownLatch(1);
+
+		lock.lock();
+		Thread waiter = new Thread(() -> {
+			lock.lock();
+			lock.unlock();
+			done.countDown();
+		});
+		waiter.start();
+		while (lock.probe().getContendedAcquisitions() == 0) {
+			Thread.sleep(1);
+		}
+		lock.unlock();
+
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		assertEquals(2, lock.probe().getAcquisitions());
+		assertEquals(1, lock.probe().getContendedAcquisitions());
+		assertEquals(0, lock.probe().getSampledAcquisitions());
+	}
+
+	public void testRegistrationsAreRemovedAndRestored() throws Exception {
+		new ProbedLock("test.jmx");
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName("com.salih:type=Lock,name=" + ObjectName.quote("test.jmx"));
+		assertTrue(server.isRegistered(name));
+
+		LockProbe.unregisterAll();
+		assertFalse(server.isRegistered(name));
+		LockProbe.registerAll();
+		assertTrue(server.isRegistered(name));
+	}
+
+	public void testLocksWithTheSameNameShareAProbe() {
+		assertSame(new ProbedLock("test.shared").probe(), new ProbedLock("test.shared").probe());
+	}
+}
@@ -0,0 +1,65 @@
+package com.salih.chapter2.logging;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class LogRingBufferTest extends TestCase {
+
+	public void testDropsInsteadOfBlockingWhenFull() {
+		LogRingBuffer ring = new LogRingBuffer(4);
+		for (int k = 0; k < 6; k++) {
+			ring.publish(LogEvent.Kind.COUNT, k, 0, null, null);
+		}
+		assertEquals(2, ring.droppedCount());
+
+		List<Long> seen = new ArrayList<>();
+		assertEquals(4, ring.drain(event -> seen.add(event.a), 100));
+		assertEquals(List.of(0L, 1L, 2L, 3L), seen);
+
+		assertTrue(ring.publish(LogEvent.Kind.COUNT, 9, 0, null, null));
+	}
+
+	public void testHasReadyTracksTheNextEvent() {
+		LogRingBuffer ring = new LogRingBuffer(4);
+		assertFalse(ring.hasReady());
+		ring.publish(LogEvent.Kind.COUNT, 1, 0, null, null);
+		assertTrue(ring.hasReady());
+		ring.drain(event -> {
+		}, 100);
+		assertFalse(ring.hasReady());
+	}
+
+	public void testEveryPublishedEventIsDrainedOnceUnderContention() throws InterruptedException {
+		LogRingBuffer ring = new LogRingBuffer(1 << 10);
+		int producers = 4;
+		int perProducer = 20_000;
+		long[] sums = new long[1];
+		int[] received = new int[1];
+
+		Thread[] threads = new Thread[producers];
+		for (int t = 0; t < producers; t++) {
+			threads[t] = new Thread(() -> {
+				for (int k = 1; k <= perProducer; k++) {
+					while (!ring.publish(LogEvent.Kind.COUNT, k, 0, null, null)) {
+						Thread.onSpinWait();
+					}
+				}
+			});
+			threads[t].start();
+		}
+
+		while (received[0] < producers * perProducer) {
+			ring.drain(event -> {
+				sums[0] += event.a;
+				received[0]++;
+			}, 256);
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		assertEquals((long) producers * perProducer * (perProducer + 1) / 2, sums[0]);
+	}
+}
@@ -0,0 +1,29 @@
+package com.salih.chapter2.metrics;
+
+import junit.framework.TestCase;
+
+public class LatencyHistogramTest extends TestCase {
+
+	public void testBucketsCoverEveryValueWithBoundedError() {
+		long[] values = { 0, 1, 63, 64, 65, 127, 128, 1_000, 123_456_789L, Long.MAX_VALUE };
+		for (long value : values) {
+			int index = LatencyHistogram.indexOf(value);
+			long highest = LatencyHistogram.highestValueIn(index);
+			assertTrue(value + " > " + highest, value <= highest);
+			assertTrue(value + " too coarse", highest - value <= Math.max(1, value / 32));
+		}
+	}
+
+	public void testPercentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (long nanos = 1; nanos <= 10_000; nanos++) {
+			histogram.recordNanos(nanos * 1_000);
+		}
+
+		assertEquals(10_000, histogram.count());
+		assertEquals(10_000_000, histogram.maxNanos());
+		assertEquals(5_000_000, histogram.percentileNanos(0.5), 5_000_000 / 32.0);
+		assertEquals(9_900_000, histogram.percentileNanos(0.99), 9_900_000 / 32.0);
+		assertEquals(10_000_000, histogram.percentileNanos(1.0));
+	}
+}
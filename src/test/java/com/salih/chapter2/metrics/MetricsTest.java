@@ -0,0 +1,30 @@
+package com.salih.chapter2.metrics;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import junit.framework.TestCase;
+
+public class MetricsTest extends TestCase {
+
+	public void testHistogramMaximumIsAGaugeFamilyOfItsOwn() {
+		Metrics.histogram("metrics_test_seconds", "stage=\"a\"").recordNanos(2_000_000_000L);
+		Metrics.histogram("metrics_test_seconds", "stage=\"b\"").recordNanos(500_000_000L);
+
+		StringBuilder text = new StringBuilder();
+		Metrics.writeText(text);
+		List<String> lines = Arrays.stream(text.toString().split("\n"))
+				.filter(line -> line.contains("metrics_test_seconds"))
+				.collect(Collectors.toList());
+
+		assertEquals("# TYPE metrics_test_seconds summary", lines.get(0));
+		int maxType = lines.indexOf("# TYPE metrics_test_seconds_max gauge");
+		assertEquals(lines.toString(), lines.size() - 3, maxType);
+		for (String line : lines.subList(1, maxType)) {
+			assertFalse(line, line.startsWith("metrics_test_seconds_max"));
+		}
+		assertEquals("metrics_test_seconds_max{stage=\"a\"} 2.0", lines.get(maxType + 1));
+		assertEquals("metrics_test_seconds_max{stage=\"b\"} 0.5", lines.get(maxType + 2));
+	}
+}
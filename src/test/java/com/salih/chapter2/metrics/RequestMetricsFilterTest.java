@@ -0,0 +1,92 @@
+package com.salih.chapter2.metrics;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.EnumSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+
+import junit.framework.TestCase;
+
+public class RequestMetricsFilterTest extends TestCase {
+	private final HttpClient client = HttpClient.newHttpClient();
+	private final BlockingQueue<AsyncContext> pending = new LinkedBlockingQueue<>();
+	private Server server;
+	private String base;
+
+	@Override
+	protected void setUp() throws Exception {
+		server = new Server();
+		ServerConnector connector = new ServerConnector(server);
+		connector.setHost("127.0.0.1");
+		connector.setPort(0);
+		server.addConnector(connector);
+		ServletContextHandler context = new ServletContextHandler();
+		context.addFilter(RequestMetricsFilter.class, "/factor/*", EnumSet.of(DispatcherType.REQUEST))
+				.setAsyncSupported(true);
+		ServletHolder async = new ServletHolder(new HttpServlet() {
+			@Override
+			protected void doGet(HttpServletRequest req, HttpServletResponse resp) {
+				pending.add(req.startAsync());
+			}
+		});
+		async.setAsyncSupported(true);
+		context.addServlet(async, "/factor/metrics-held/*");
+		server.setHandler(context);
+		server.start();
+		base = "http://127.0.0.1:" + connector.getLocalPort();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		server.stop();
+	}
+
+	public void testAsyncRequestsAreRecordedUnderTheirMappingWhenComplete() throws Exception {
+		LatencyHistogram latency = Metrics.histogram("factor_request_latency_seconds", "path=\"/factor/metrics-held/*\"");
+		long before = latency.count();
+
+		CompletableFuture<HttpResponse<String>> response = client.sendAsync(
+				HttpRequest.newBuilder(URI.create(base + "/factor/metrics-held/a")).build(),
+				HttpResponse.BodyHandlers.ofString());
+		AsyncContext context = pending.poll(5, TimeUnit.SECONDS);
+		Thread.sleep(50);
+		assertEquals("recorded before the response was done", before, latency.count());
+
+		context.complete();
+		assertEquals(200, response.get(5, TimeUnit.SECONDS).statusCode());
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (latency.count() == before && System.nanoTime() < deadline) {
+			Thread.sleep(1);
+		}
+		assertEquals(before + 1, latency.count());
+		assertTrue(latency.maxNanos() >= TimeUnit.MILLISECONDS.toNanos(50));
+	}
+
+	public void testUnmappedPathsAreNotTracked() throws Exception {
+		for (int k = 0; k < 5; k++) {
+			HttpResponse<String> response = client.send(
+					HttpRequest.newBuilder(URI.create(base + "/factor/invented-" + k)).build(),
+					HttpResponse.BodyHandlers.ofString());
+			assertEquals(404, response.statusCode());
+		}
+		StringBuilder metrics = new StringBuilder();
+		Metrics.writeText(metrics);
+		assertFalse(metrics.toString(), metrics.toString().contains("invented"));
+	}
+}
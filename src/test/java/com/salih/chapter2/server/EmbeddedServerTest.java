@@ -0,0 +1,62 @@
+package com.salih.chapter2.server;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+
+import com.salih.chapter2.cache.FactorCache;
+
+import junit.framework.TestCase;
+
+public class EmbeddedServerTest extends TestCase {
+
+	public void testStartsWarmsUpAndReportsReady() throws Exception {
+		System.setProperty("factor.warmup.roundRequests", "50");
+		System.setProperty("factor.warmup.maxRounds", "2");
+		try (EmbeddedServer server = EmbeddedServer.start(0)) {
+			assertTrue(Readiness.isReady());
+			assertEquals(List.of("jetty", "warmup", "preload", "total"), List.copyOf(server.startupMillis().keySet()));
+			assertFalse(server.warmupRounds().isEmpty());
+			FactorCache.shared().cleanUp();
+			assertEquals("warm-up entries left in the cache", 0, FactorCache.shared().estimatedSize());
+
+			HttpClient client = HttpClient.newHttpClient();
+			HttpResponse<String> ready = client.send(HttpRequest.newBuilder(server.uri().resolve("/ready")).build(),
+					HttpResponse.BodyHandlers.ofString());
+			assertEquals(200, ready.statusCode());
+
+			HttpResponse<String> factors = client.send(
+					HttpRequest.newBuilder(server.uri().resolve("/factor/boundedCache?number=360")).build(),
+					HttpResponse.BodyHandlers.ofString());
+			assertEquals(200, factors.statusCode());
+			assertTrue(factors.body(), factors.body().startsWith("Factors: 2 2 2 3 3 5 \n"));
+
+			Readiness.markStarting();
+			try {
+				HttpResponse<String> bounced = client.send(
+						HttpRequest.newBuilder(server.uri().resolve("/factor/boundedCache?number=360")).build(),
+						HttpResponse.BodyHandlers.ofString());
+				assertEquals(503, bounced.statusCode());
+				assertEquals("1", bounced.headers().firstValue("Retry-After").orElse(null));
+
+				HttpResponse<String> guessed = client.send(
+						HttpRequest.newBuilder(server.uri().resolve("/factor/boundedCache?number=360"))
+								.header(Readiness.WARMUP_HEADER, "true").build(),
+						HttpResponse.BodyHandlers.ofString());
+				assertEquals(503, guessed.statusCode());
+
+				HttpResponse<String> warmup = client.send(
+						HttpRequest.newBuilder(server.uri().resolve("/factor/boundedCache?number=360"))
+								.header(Readiness.WARMUP_HEADER, Readiness.warmupToken()).build(),
+						HttpResponse.BodyHandlers.ofString());
+				assertEquals(200, warmup.statusCode());
+			} finally {
+				Readiness.markReady();
+			}
+		} finally {
+			System.clearProperty("factor.warmup.roundRequests");
+			System.clearProperty("factor.warmup.maxRounds");
+		}
+	}
+}
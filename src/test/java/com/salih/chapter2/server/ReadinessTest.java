@@ -0,0 +1,18 @@
+package com.salih.chapter2.server;
+
+import junit.framework.TestCase;
+
+public class ReadinessTest extends TestCase {
+
+	public void testWarmupHeaderNeedsTheProcessTokenWhileStarting() {
+		String token = Readiness.warmupToken();
+		assertEquals(32, token.length());
+		assertTrue(Readiness.isWarmup(token, false));
+
+		assertFalse("honoured once ready", Readiness.isWarmup(token, true));
+		assertFalse(Readiness.isWarmup("true", false));
+		assertFalse(Readiness.isWarmup(token.substring(1), false));
+		assertFalse(Readiness.isWarmup("", false));
+		assertFalse(Readiness.isWarmup(null, false));
+	}
+}
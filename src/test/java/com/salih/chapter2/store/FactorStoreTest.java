@@ -0,0 +1,111 @@
+package com.salih.chapter2.store;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import com.salih.chapter2.FactorizerUtil;
+import com.salih.chapter2.cache.FactorCache;
+
+import junit.framework.TestCase;
+
+public class FactorStoreTest extends TestCase {
+	private Path path;
+
+	@Override
+	protected void setUp() throws IOException {
+		path = Files.createTempFile("factor-store", ".log");
+		Files.delete(path);
+	}
+
+	@Override
+	protected void tearDown() throws IOException {
+		Files.deleteIfExists(path);
+	}
+
+	public void testEntriesSurviveReopen() throws Exception {
+		try (FactorStore store = FactorStore.open(path, 1_000)) {
+			for (int n = 2; n < 500; n++) {
+				BigInteger number = BigInteger.valueOf(n);
+				store.append(number, FactorizerUtil.factor(number));
+			}
+			store.flush();
+			assertEquals(498, store.size());
+			assertEquals(factors(2, 2, 3), Arrays.asList(store.get(BigInteger.valueOf(12))));
+		}
+
+		try (FactorStore store = FactorStore.open(path, 1_000)) {
+			assertEquals(498, store.size());
+			assertEquals(factors(11, 13), Arrays.asList(store.get(BigInteger.valueOf(143))));
+			assertNull(store.get(BigInteger.valueOf(500)));
+		}
+	}
+
+	public void testTornTailIsTruncatedOnOpen() throws Exception {
+		try (FactorStore store = FactorStore.open(path, 1_000)) {
+			store.append(BigInteger.valueOf(12), FactorizerUtil.factor(BigInteger.valueOf(12)));
+			store.flush();
+		}
+		long valid = Files.size(path);
+
+		// A record header promising more bytes than were written, as if the process died mid-write.
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+			channel.write(ByteBuffer.allocate(12).putInt(0, 100).putInt(4, 0xCAFE));
+		}
+
+		try (FactorStore store = FactorStore.open(path, 1_000)) {
+			assertEquals(valid, Files.size(path));
+			assertEquals(1, store.size());
+			store.append(BigInteger.valueOf(15), FactorizerUtil.factor(BigInteger.valueOf(15)));
+			store.flush();
+			assertEquals(factors(3, 5), Arrays.asList(store.get(BigInteger.valueOf(15))));
+		}
+	}
+
+	public void testCacheMissesAreServedFromTheStore() throws Exception {
+		try (FactorStore store = FactorStore.open(path, 1_000)) {
+			new FactorCache(100, store).get(BigInteger.valueOf(360), FactorizerUtil::factor);
+			store.flush();
+
+			FactorCache restarted = new FactorCache(100, store);
+			BigInteger[] factors = restarted.get(BigInteger.valueOf(360), n -> {
+				throw new AssertionError("should come from the store");
+			}).factors();
+			assertEquals(factors(2, 2, 2, 3, 3, 5), Arrays.asList(factors));
+			assertEquals(1, restarted.storeHitCount());
+		}
+	}
+
+	public void testSecondProcessIsLockedOut() throws Exception {
+		FactorStore store = FactorStore.open(path, 1_000);
+		try {
+			FactorStore.open(path, 1_000).close();
+			fail();
+		} catch (IOException | OverlappingFileLockException expected) {
+		} finally {
+			store.close();
+		}
+	}
+
+	public void testAppendAfterCloseIsDroppedAndFlushReturns() throws Exception {
+		FactorStore store = FactorStore.open(path, 1_000);
+		store.close();
+
+		store.append(BigInteger.valueOf(12), FactorizerUtil.factor(BigInteger.valueOf(12)));
+		store.flush();
+		assertEquals(0, store.size());
+		assertEquals(1, store.droppedCount());
+	}
+
+	private static List<BigInteger> factors(long... values) {
+		return Arrays.stream(values).mapToObj(BigInteger::valueOf).collect(Collectors.toList());
+	}
+}
@@ -0,0 +1,317 @@
+package com.salih.loadgen;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import com.salih.chapter2.metrics.LatencyHistogram;
+import com.salih.chapter2.server.EmbeddedServer;
+
+/**
+ * An <b>open-loop</b> load generator: requests are sent at a fixed arrival rate, whether or not earlier ones have
+ * been answered.
+ * <p>
+ * <b>The Problem (coordinated omission):</b>
+ * The JMeter plan is <i>closed-loop</i>: each of its 100 threads waits for a response before sending the next request.
+ * When the server stalls, the threads stall with it and simply stop sending, so the requests that <i>would</i> have
+ * arrived during the stall, and would have waited the longest, are never made. The load generator has coordinated
+ * with the server to omit exactly the bad measurements, and the reported p99 can be orders of magnitude too good.
+ * </p>
+ * <p>
+ * <b>How it works:</b>
+ * <ul>
+ * <li>Request {@code k} has an <b>intended start time</b> of {@code start + k / rate}. A single dispatcher thread
+ * sleeps until that time and sends the request asynchronously, so a slow response never delays the next send.</li>
+ * <li>Latency is measured from the intended start, not from the moment the request actually left. If the
+ * dispatcher itself fell behind (a GC pause, a busy client), that delay is charged to the request instead of
+ * silently vanishing. The time from actual send to response is reported separately as the service time; a gap
+ * between the two means the generator could not keep up, and the run should be repeated at a lower rate or with a
+ * bigger client.</li>
+ * <li>Every response counts, including errors and timeouts, since a server that fails fast must not look
+ * faster than one that succeeds. Requests beyond {@code --maxInFlight} outstanding are not sent at all and
+ * are reported as skipped; they enter the latency histogram at {@code --timeout}, the least a client would have
+ * waited for them. Requests still unanswered when the run gives up on stragglers are recorded as timeouts, at
+ * their latency so far. Otherwise the histogram would again omit the slowest requests of all.</li>
+ * <li>The first {@code --warmup} seconds run the same schedule but are not recorded.</li>
+ * <li>The report is a single JSON object on standard output (and in {@code --output}, if given), so runs can be
+ * compared across builds; {@code --label} tags it with, say, a commit id.</li>
+ * </ul>
+ * </p>
+ * <p>
+ * Run against a started server with
+ * {@code mvn -Ploadgen test-compile exec:exec -Dloadgen.args="--url http://localhost:8080/factor/async --rate 500"}.
+ * A {@code --url} that is only a path, such as {@code /factor/async}, starts an {@link EmbeddedServer} on a free
+ * port first, warmed up and ready, and stops it afterwards.
+ * </p>
+ */
+public final class LoadGenerator {
+	private static final int SAMPLE_SIZE = 1 << 16;
+
+	private final Options options;
+	private final HttpClient client;
+	private final LatencyHistogram latency = new LatencyHistogram();
+	private final LatencyHistogram serviceTime = new LatencyHistogram();
+	private final LongAdder sent = new LongAdder();
+	private final LongAdder succeeded = new LongAdder();
+	private final LongAdder clientErrors = new LongAdder();
+	private final LongAdder serverErrors = new LongAdder();
+	private final LongAdder timeouts = new LongAdder();
+	private final LongAdder ioErrors = new LongAdder();
+	private final LongAdder skipped = new LongAdder();
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final AtomicLong lastCompletion = new AtomicLong();
+	/** Intended start of every measured request not yet recorded, by sequence number. */
+	private final ConcurrentMap<Long, Long> outstanding = new ConcurrentHashMap<>();
+
+	public LoadGenerator(Options options) {
+		this.options = options;
+		this.client = HttpClient.newBuilder()
+				.version(HttpClient.Version.HTTP_1_1)
+				.connectTimeout(options.timeout)
+				.build();
+	}
+
+	public static void main(String[] args) throws Exception {
+		Options options = Options.parse(args);
+		String json;
+		if (options.url.startsWith("/")) {
+			try (EmbeddedServer server = EmbeddedServer.start(0)) {
+				options.url = server.uri().resolve(options.url).toString();
+				json = new LoadGenerator(options).run().toJson();
+			}
+		} else {
+			json = new LoadGenerator(options).run().toJson();
+		}
+		System.out.println(json);
+		if (options.output != null) {
+			Files.writeString(Path.of(options.output), json + System.lineSeparator());
+		}
+	}
+
+	/** Runs the warm-up and the measured period, waits for the stragglers and reports on the measured period. */
+	public Report run() throws InterruptedException {
+		String[] numbers = options.distribution.sample(options.seed, SAMPLE_SIZE, options.range,
+				options.largeFraction, options.largeBits);
+		double nanosPerRequest = TimeUnit.SECONDS.toNanos(1) / options.rate;
+		long start = System.nanoTime();
+		long measureFrom = start + options.warmup.toNanos();
+		long end = measureFrom + options.duration.toNanos();
+
+		for (long k = 0;; k++) {
+			long intended = start + (long) (k * nanosPerRequest);
+			if (intended - end >= 0) {
+				break;
+			}
+			long wait;
+			while ((wait = intended - System.nanoTime()) > 0) {
+				LockSupport.parkNanos(wait);
+			}
+			send(k, numbers[(int) (k % numbers.length)], intended, intended - measureFrom >= 0);
+		}
+
+		long giveUpAt = System.nanoTime() + options.timeout.toNanos() + TimeUnit.SECONDS.toNanos(1);
+		while (inFlight.get() > 0 && System.nanoTime() - giveUpAt < 0) {
+			Thread.sleep(10);
+		}
+		long now = System.nanoTime();
+		for (Long k : outstanding.keySet()) {
+			Long intended = outstanding.remove(k);
+			if (intended != null) {
+				latency.recordNanos(now - intended);
+				timeouts.increment();
+				lastCompletion.accumulateAndGet(now, (a, b) -> b - a > 0 ? b : a);
+			}
+		}
+		long elapsed = Math.max(end, lastCompletion.get()) - measureFrom;
+		return new Report(options, elapsed, this);
+	}
+
+	private void send(long k, String number, long intended, boolean measured) {
+		if (inFlight.get() >= options.maxInFlight) {
+			if (measured) {
+				skipped.increment();
+				latency.recordNanos(options.timeout.toNanos());
+			}
+			return;
+		}
+		HttpRequest request = HttpRequest.newBuilder(URI.create(options.url + "?number=" + number))
+				.timeout(options.timeout)
+				.build();
+		inFlight.incrementAndGet();
+		if (measured) {
+			sent.increment();
+			outstanding.put(k, intended);
+		}
+		long sentAt = System.nanoTime();
+		client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+			long now = System.nanoTime();
+			// Not outstanding any more if the run already gave up on it and recorded it as a timeout.
+			if (measured && outstanding.remove(k) != null) {
+				latency.recordNanos(now - intended);
+				serviceTime.recordNanos(now - sentAt);
+				classify(response, error);
+				lastCompletion.accumulateAndGet(now, (a, b) -> b - a > 0 ? b : a);
+			}
+			inFlight.decrementAndGet();
+		});
+	}
+
+	private void classify(HttpResponse<?> response, Throwable error) {
+		if (error != null) {
+			Throwable cause = error.getCause() != null ? error.getCause() : error;
+			(cause instanceof HttpTimeoutException ? timeouts : ioErrors).increment();
+		} else if (response.statusCode() >= 500) {
+			serverErrors.increment();
+		} else if (response.statusCode() >= 400) {
+			clientErrors.increment();
+		} else {
+			succeeded.increment();
+		}
+	}
+
+	/** Command-line options, each given as {@code --name value}. */
+	public static final class Options {
+		String url = "http://localhost:8080/factor/boundedCache";
+		double rate = 200;
+		Duration duration = Duration.ofSeconds(30);
+		Duration warmup = Duration.ofSeconds(5);
+		Duration timeout = Duration.ofSeconds(10);
+		int maxInFlight = 10_000;
+		NumberDistribution distribution = NumberDistribution.ZIPF;
+		long range = 1_000_000_000L;
+		double largeFraction = 0.05;
+		int largeBits = 80;
+		long seed = 42;
+		String label = "";
+		String output;
+
+		public static Options parse(String... args) {
+			Options options = new Options();
+			for (int k = 0; k < args.length; k += 2) {
+				if (!args[k].startsWith("--") || k + 1 >= args.length) {
+					throw new IllegalArgumentException("Expected --name value, got: " + args[k]);
+				}
+				String value = args[k + 1];
+				switch (args[k].substring(2)) {
+					case "url" -> options.url = value;
+					case "rate" -> options.rate = Double.parseDouble(value);
+					case "duration" -> options.duration = seconds(value);
+					case "warmup" -> options.warmup = seconds(value);
+					case "timeout" -> options.timeout = seconds(value);
+					case "maxInFlight" -> options.maxInFlight = Integer.parseInt(value);
+					case "distribution" -> options.distribution = NumberDistribution.valueOf(value.toUpperCase(Locale.ROOT));
+					case "range" -> options.range = Long.parseLong(value);
+					case "largeFraction" -> options.largeFraction = Double.parseDouble(value);
+					case "largeBits" -> options.largeBits = Integer.parseInt(value);
+					case "seed" -> options.seed = Long.parseLong(value);
+					case "label" -> options.label = value;
+					case "output" -> options.output = value;
+					default -> throw new IllegalArgumentException("Unknown option: " + args[k]);
+				}
+			}
+			if (options.rate <= 0 || options.range <= 2) {
+				throw new IllegalArgumentException("--rate must be positive and --range above 2");
+			}
+			return options;
+		}
+
+		private static Duration seconds(String value) {
+			return Duration.ofMillis((long) (Double.parseDouble(value) * 1000));
+		}
+	}
+
+	/** The outcome of one run, restricted to the measured period. */
+	public static final class Report {
+		private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+		private static final String[] QUANTILE_NAMES = { "p50", "p90", "p99", "p999" };
+
+		final Options options;
+		final long elapsedNanos;
+		final long sent;
+		final long succeeded;
+		final long clientErrors;
+		final long serverErrors;
+		final long timeouts;
+		final long ioErrors;
+		final long skipped;
+		final LatencyHistogram latency;
+		final LatencyHistogram serviceTime;
+
+		Report(Options options, long elapsedNanos, LoadGenerator run) {
+			this.options = options;
+			this.elapsedNanos = elapsedNanos;
+			this.sent = run.sent.sum();
+			this.succeeded = run.succeeded.sum();
+			this.clientErrors = run.clientErrors.sum();
+			this.serverErrors = run.serverErrors.sum();
+			this.timeouts = run.timeouts.sum();
+			this.ioErrors = run.ioErrors.sum();
+			this.skipped = run.skipped.sum();
+			this.latency = run.latency;
+			this.serviceTime = run.serviceTime;
+		}
+
+		long errors() {
+			return clientErrors + serverErrors + timeouts + ioErrors + skipped;
+		}
+
+		public String toJson() {
+			double seconds = elapsedNanos / 1e9;
+			long attempted = sent + skipped;
+			StringBuilder json = new StringBuilder("{");
+			field(json, "label", '"' + options.label.replace("\\", "\\\\").replace("\"", "\\\"") + '"').append(',');
+			field(json, "url", '"' + options.url.replace("\"", "\\\"") + '"').append(',');
+			field(json, "distribution", '"' + options.distribution.name() + '"').append(',');
+			field(json, "targetRate", format(options.rate)).append(',');
+			field(json, "durationSeconds", format(options.duration.toMillis() / 1000.0)).append(',');
+			field(json, "sent", Long.toString(sent)).append(',');
+			field(json, "succeeded", Long.toString(succeeded)).append(',');
+			field(json, "throughput", format(seconds > 0 ? succeeded / seconds : 0)).append(',');
+			json.append("\"errors\":{");
+			field(json, "status4xx", Long.toString(clientErrors)).append(',');
+			field(json, "status5xx", Long.toString(serverErrors)).append(',');
+			field(json, "timeout", Long.toString(timeouts)).append(',');
+			field(json, "io", Long.toString(ioErrors)).append(',');
+			field(json, "skipped", Long.toString(skipped)).append("},");
+			field(json, "errorRate", format(attempted > 0 ? errors() / (double) attempted : 0)).append(',');
+			json.append("\"latencyMillis\":");
+			percentiles(json, latency).append(',');
+			json.append("\"serviceTimeMillis\":");
+			percentiles(json, serviceTime);
+			return json.append('}').toString();
+		}
+
+		private static StringBuilder percentiles(StringBuilder json, LatencyHistogram histogram) {
+			json.append('{');
+			for (int q = 0; q < QUANTILES.length; q++) {
+				field(json, QUANTILE_NAMES[q], millis(histogram.percentileNanos(QUANTILES[q]))).append(',');
+			}
+			return field(json, "max", millis(histogram.maxNanos())).append('}');
+		}
+
+		private static StringBuilder field(StringBuilder json, String name, String value) {
+			return json.append('"').append(name).append("\":").append(value);
+		}
+
+		private static String millis(long nanos) {
+			return format(nanos / 1e6);
+		}
+
+		private static String format(double value) {
+			return String.format(Locale.ROOT, "%.3f", value);
+		}
+	}
+}
@@ -0,0 +1,111 @@
+package com.salih.loadgen;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.HttpServer;
+
+import junit.framework.TestCase;
+
+public class LoadGeneratorTest extends TestCase {
+	private HttpServer server;
+	private ExecutorService handlers;
+
+	@Override
+	protected void setUp() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		handlers = Executors.newFixedThreadPool(8);
+		server.setExecutor(handlers);
+		server.createContext("/factor", exchange -> {
+			boolean fail = exchange.getRequestURI().getQuery().endsWith("=13");
+			try {
+				Thread.sleep(5);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			byte[] body = "Factors: \n".getBytes();
+			exchange.sendResponseHeaders(fail ? 503 : 200, body.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		});
+		server.createContext("/stall", exchange -> {
+			// Headers at once, then a body that takes longer than the generator is willing to wait for.
+			exchange.sendResponseHeaders(200, 0);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write("Factors: ".getBytes());
+				out.flush();
+				Thread.sleep(3_000);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		server.start();
+	}
+
+	@Override
+	protected void tearDown() {
+		server.stop(0);
+		handlers.shutdownNow();
+	}
+
+	public void testSendsAtTheTargetRateAndReportsEveryResponse() throws Exception {
+		LoadGenerator.Options options = LoadGenerator.Options.parse(
+				"--url", "http://127.0.0.1:" + server.getAddress().getPort() + "/factor",
+				"--rate", "200", "--duration", "0.5", "--warmup", "0.1", "--timeout", "5",
+				"--distribution", "uniform", "--range", "20", "--label", "test");
+
+		LoadGenerator.Report report = new LoadGenerator(options).run();
+
+		assertTrue("sent " + report.sent, report.sent >= 90 && report.sent <= 101);
+		assertEquals(report.sent, report.succeeded + report.serverErrors);
+		assertTrue(report.serverErrors > 0);
+		assertEquals(report.sent, report.latency.count());
+		assertTrue(report.latency.percentileNanos(0.5) >= TimeUnit.MILLISECONDS.toNanos(5));
+
+		String json = report.toJson();
+		assertTrue(json, json.startsWith("{\"label\":\"test\","));
+		assertTrue(json, json.contains("\"distribution\":\"UNIFORM\""));
+		assertTrue(json, json.contains("\"latencyMillis\":{\"p50\":"));
+		assertTrue(json, json.endsWith("}}"));
+	}
+
+	public void testSkippedAndAbandonedRequestsStillCountAsLatency() throws Exception {
+		LoadGenerator.Options options = LoadGenerator.Options.parse(
+				"--url", "http://127.0.0.1:" + server.getAddress().getPort() + "/stall",
+				"--rate", "40", "--duration", "0.5", "--warmup", "0", "--timeout", "0.2", "--maxInFlight", "4");
+
+		LoadGenerator.Report report = new LoadGenerator(options).run();
+
+		assertTrue("skipped " + report.skipped, report.skipped > 0);
+		assertEquals(4, report.sent);
+		assertEquals(4, report.timeouts);
+		assertEquals(report.sent + report.skipped, report.latency.count());
+		// The four sent requests were abandoned 1.2 s after the schedule ended, well past the 0.2 s timeout.
+		assertTrue(report.latency.maxNanos() >= TimeUnit.MILLISECONDS.toNanos(1_200));
+		assertTrue(report.latency.percentileNanos(0.5) >= TimeUnit.MILLISECONDS.toNanos(200));
+	}
+
+	public void testLargePrimeMixDrawsTheConfiguredShareOfLargeNumbers() {
+		String[] numbers = NumberDistribution.LARGE_PRIME_MIX.sample(1, 10_000, 1_000, 0.25, 64);
+		int large = 0;
+		for (String number : numbers) {
+			if (number.length() > 4) {
+				large++;
+			}
+		}
+		assertTrue("large " + large, large > 2_000 && large < 3_000);
+	}
+
+	public void testRejectsUnknownOptions() {
+		try {
+			LoadGenerator.Options.parse("--rte", "10");
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+}
@@ -0,0 +1,115 @@
+package com.salih.loadgen;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * How the load generator picks the {@code number} parameter for each request.
+ */
+public enum NumberDistribution {
+	/** Every number in {@code [2, range)} equally likely: almost every request is a cache miss. */
+	UNIFORM {
+		@Override
+		String next(Random random, long range, Sampler sampler) {
+			return Long.toString(uniform(random, range));
+		}
+	},
+	/**
+	 * A Zipf(1.0) hot set of {@value #HOT_SET} numbers scattered over the range: a few of them take most of the
+	 * traffic, like real users, and the rest keep the cache busy evicting.
+	 */
+	ZIPF {
+		@Override
+		String next(Random random, long range, Sampler sampler) {
+			int rank = Arrays.binarySearch(sampler.zipfCdf, random.nextDouble());
+			return sampler.hotSet[rank < 0 ? -rank - 1 : rank];
+		}
+	},
+	/**
+	 * Mostly {@link #UNIFORM}, with a fraction of large primes and semiprimes of a given size mixed in: the
+	 * expensive requests that fill the compute pool and make the cheap ones wait behind them.
+	 */
+	LARGE_PRIME_MIX {
+		@Override
+		String next(Random random, long range, Sampler sampler) {
+			if (random.nextDouble() < sampler.largeFraction) {
+				return sampler.large[random.nextInt(sampler.large.length)];
+			}
+			return Long.toString(uniform(random, range));
+		}
+	};
+
+	private static final int HOT_SET = 10_000;
+	private static final int LARGE_POOL = 256;
+
+	abstract String next(Random random, long range, Sampler sampler);
+
+	/**
+	 * Pre-generates {@code size} numbers so that drawing them costs nothing while the load runs.
+	 *
+	 * @param largeFraction share of {@link #LARGE_PRIME_MIX} requests that are large
+	 * @param largeBits     bit length of those large numbers
+	 */
+	public String[] sample(long seed, int size, long range, double largeFraction, int largeBits) {
+		Random random = new Random(seed);
+		Sampler sampler = new Sampler(this, random, range, largeFraction, largeBits);
+		String[] numbers = new String[size];
+		for (int k = 0; k < size; k++) {
+			numbers[k] = next(random, range, sampler);
+		}
+		return numbers;
+	}
+
+	private static long uniform(Random random, long range) {
+		return 2 + (long) (random.nextDouble() * (range - 2));
+	}
+
+	/** Per-sample state, built only for the distribution that needs it. */
+	static final class Sampler {
+		final double[] zipfCdf;
+		final String[] hotSet;
+		final String[] large;
+		final double largeFraction;
+
+		Sampler(NumberDistribution distribution, Random random, long range, double largeFraction, int largeBits) {
+			this.largeFraction = largeFraction;
+			if (distribution == ZIPF) {
+				zipfCdf = zipfCdf(HOT_SET);
+				hotSet = new String[HOT_SET];
+				for (int r = 0; r < HOT_SET; r++) {
+					hotSet[r] = Long.toString(uniform(random, range));
+				}
+			} else {
+				zipfCdf = null;
+				hotSet = null;
+			}
+			if (distribution == LARGE_PRIME_MIX) {
+				large = new String[LARGE_POOL];
+				for (int k = 0; k < LARGE_POOL; k++) {
+					// Half primes (one Miller-Rabin pass each), half semiprimes (a full rho split each).
+					BigInteger value = (k & 1) == 0
+							? BigInteger.probablePrime(largeBits, random)
+							: BigInteger.probablePrime(largeBits / 2, random)
+									.multiply(BigInteger.probablePrime(largeBits - largeBits / 2, random));
+					large[k] = value.toString();
+				}
+			} else {
+				large = null;
+			}
+		}
+
+		private static double[] zipfCdf(int ranks) {
+			double[] cdf = new double[ranks];
+			double total = 0;
+			for (int r = 0; r < ranks; r++) {
+				total += 1.0 / (r + 1);
+				cdf[r] = total;
+			}
+			for (int r = 0; r < ranks; r++) {
+				cdf[r] /= total;
+			}
+			return cdf;
+		}
+	}
+}